@@ -0,0 +1,137 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hiddentao.kai.geometry.Angles3D;
+import com.hiddentao.kai.geometry.builders.SceneGenerator;
+import com.hiddentao.kai.nodes.Node;
+import com.hiddentao.kai.renderer.Camera;
+import com.hiddentao.kai.renderer.OffscreenRenderTarget;
+import com.hiddentao.kai.renderer.Renderer;
+import com.hiddentao.kai.renderer.RenderingSystemManager;
+
+
+/**
+ * Benchmarks rendering whole frames of a generated scene offscreen, at 
+ * several resolutions and for several kinds of scene.
+ * 
+ * Every frame is redrawn in full, i.e. incremental rendering never gets to 
+ * skip any work.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 5, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FrameBenchmark
+{
+	/** Image size, as WIDTHxHEIGHT. */
+	@Param({"320x240", "640x480", "1280x960"})
+	public String resolution;
+	
+	/**
+	 * The kind of scene to render: "wide" and "deep" are 1000 cubes in a 
+	 * flat and a chained hierarchy respectively; "tiny" and "large" are 
+	 * made up of tiny and large triangles; "overdraw" is 8 screen-filling 
+	 * layers drawn back to front.
+	 */
+	@Param({"wide", "deep", "tiny", "large", "overdraw"})
+	public String scene;
+	
+	/** No. of threads to transform, cull and light with. */
+	@Param({"1", "4"})
+	public int geometryThreads;
+	
+	private Renderer iRenderer = null;
+	private OffscreenRenderTarget iTarget = null;
+	private Node iScene = null;
+	private Camera iCamera = null;
+	
+	
+	@Setup
+	public void setup()
+	{
+		final int x = resolution.indexOf('x');
+		final int width = Integer.parseInt(resolution.substring(0, x));
+		final int height = Integer.parseInt(resolution.substring(x + 1));
+		
+		iRenderer = RenderingSystemManager.instance().getDefaultRenderSystem().createRenderer();
+		iRenderer.setGeometryThreadCount(geometryThreads);
+		iTarget = new OffscreenRenderTarget(iRenderer, width, height);
+		iScene = SceneGenerator.generate(sceneParams(scene));
+		iCamera = new Camera();
+		iCamera.rotateAroundFocus(new Angles3D(20, 30, 0));
+	}
+	
+	
+	@TearDown
+	public void tearDown()
+	{
+		iRenderer.dispose();
+	}
+	
+	
+	/**
+	 * Get the generator parameters for the given kind of scene.
+	 */
+	private static SceneGenerator.Params sceneParams(String aScene)
+	{
+		if ("tiny".equals(aScene))
+		{
+			return SceneGenerator.tinyTriangles();
+		}
+		if ("large".equals(aScene))
+		{
+			return SceneGenerator.largeTriangles();
+		}
+		if ("overdraw".equals(aScene))
+		{
+			SceneGenerator.Params params = SceneGenerator.screenFilling(8);
+			params.layersBackToFront = true;
+			return params;
+		}
+		
+		SceneGenerator.Params params = new SceneGenerator.Params();
+		params.numMeshes = 1000;
+		params.branching = "deep".equals(aScene) ? 1 : 0;
+		return params;
+	}
+	
+	
+	
+	@Benchmark
+	public Object renderFrame()
+	{
+		iRenderer.invalidate();
+		return iTarget.render(iScene, iCamera);
+	}
+}
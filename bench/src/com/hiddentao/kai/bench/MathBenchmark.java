@@ -0,0 +1,131 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.bench;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hiddentao.kai.geometry.Angles3D;
+import com.hiddentao.kai.geometry.Mat4;
+import com.hiddentao.kai.geometry.Quat;
+import com.hiddentao.kai.geometry.Vec4;
+
+
+/**
+ * Benchmarks for the vector, matrix and quaternion operations used in the 
+ * per-triangle and per-frame paths.
+ * 
+ * Operations which modify their operand start from a copy of the same 
+ * input each time, so that values stay bounded; the copy is included in 
+ * the timings.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MathBenchmark
+{
+	private Mat4 iMatA = new Mat4();
+	private Mat4 iMatB = new Mat4();
+	private Mat4 iResultMat = new Mat4();
+	
+	private Vec4 iVec1 = new Vec4(0.1f, 0.2f, -1.5f, 1);
+	private Vec4 iVec2 = new Vec4(0.7f, 0.3f, -1.2f, 1);
+	private Vec4 iVec3 = new Vec4(0.4f, 0.9f, -1.9f, 1);
+	private Vec4 iResultVec = new Vec4();
+	private Vec4 iTempEdge1 = new Vec4();
+	private Vec4 iTempEdge2 = new Vec4();
+	
+	private Quat iQuatA = new Quat();
+	private Quat iQuatB = new Quat();
+	private Quat iResultQuat = new Quat();
+	
+	
+	@Setup
+	public void setup()
+	{
+		setRotation(iMatA, 0.3f, 1.0f, -2.0f, 0.5f);
+		setRotation(iMatB, -1.1f, 0.0f, 0.5f, -3.0f);
+		
+		Quat.calculateEulerRotationQuat(new Angles3D(20, 30, 0), iQuatA);
+		Quat.calculateEulerRotationQuat(new Angles3D(-5, 10, 45), iQuatB);
+	}
+	
+	
+	/**
+	 * Make a matrix which rotates about the y-axis and then translates.
+	 */
+	private static void setRotation(Mat4 aMat, float aRadians, float aX, float aY, float aZ)
+	{
+		final float cos = (float)Math.cos(aRadians);
+		final float sin = (float)Math.sin(aRadians);
+		aMat.setIdentity();
+		aMat.val[0][0] = cos;
+		aMat.val[0][2] = sin;
+		aMat.val[2][0] = -sin;
+		aMat.val[2][2] = cos;
+		aMat.val[0][3] = aX;
+		aMat.val[1][3] = aY;
+		aMat.val[2][3] = aZ;
+	}
+	
+	
+	
+	@Benchmark
+	public Mat4 mat4MultEq()
+	{
+		iResultMat.set(iMatA);
+		iResultMat.multEq(iMatB);
+		return iResultMat;
+	}
+	
+	
+	@Benchmark
+	public Vec4 mat4TransformVector()
+	{
+		Mat4.transformVector(iMatA, iVec1, iResultVec);
+		return iResultVec;
+	}
+	
+	
+	@Benchmark
+	public Vec4 vec4CalculateSurfaceNormal()
+	{
+		Vec4.calculateSurfaceNormal(iVec1, iVec2, iVec3, iResultVec, iTempEdge1, iTempEdge2);
+		return iResultVec;
+	}
+	
+	
+	@Benchmark
+	public Quat quatMultEq()
+	{
+		iResultQuat.set(iQuatA);
+		iResultQuat.multEq(iQuatB);
+		return iResultQuat;
+	}
+}
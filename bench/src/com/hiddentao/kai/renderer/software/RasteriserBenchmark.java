@@ -0,0 +1,130 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.renderer.software;
+
+import java.awt.Color;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.hiddentao.kai.geometry.Vec4;
+import com.hiddentao.kai.renderer.FrameStats;
+
+
+/**
+ * Benchmarks {@link Rasteriser#drawTriangle} on its own, for triangles of 
+ * different sizes and orientations drawn into a Z-buffered pixel array.
+ * 
+ * This lives in the rasteriser's package since the rasteriser isn't public.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RasteriserBenchmark
+{
+	private static final int WIDTH = 640;
+	private static final int HEIGHT = 480;
+	
+	/** The width and height of the triangle's bounding box, in pixels. */
+	@Param({"2", "16", "64", "256"})
+	public int size;
+	
+	/**
+	 * The triangle's shape: flat top edge, flat bottom edge, no flat edges, 
+	 * or a long thin sliver.
+	 */
+	@Param({"flatTop", "flatBottom", "general", "sliver"})
+	public String orientation;
+	
+	private FrameStats iStats = new FrameStats();
+	private Rasteriser iRasteriser = new Rasteriser(iStats);
+	private RasterSettings iSettings = new RasterSettings();
+	private Color iColor = new Color(200, 100, 50);
+	private Vec4 iNormal = new Vec4(0, 0, 1, 0);
+	private Vec4 iPoint1 = new Vec4();
+	private Vec4 iPoint2 = new Vec4();
+	private Vec4 iPoint3 = new Vec4();
+	
+	
+	@Setup
+	public void setup()
+	{
+		iSettings.iViewportDimensions.width = WIDTH;
+		iSettings.iViewportDimensions.height = HEIGHT;
+		iSettings.iPixels = new int[WIDTH * HEIGHT];
+		iSettings.iZBufferEnabled = true;
+		iSettings.resetClip();
+		iRasteriser.resetForNextFrame(iSettings);
+		
+		final float left = (WIDTH - size) / 2;
+		final float top = (HEIGHT - size) / 2;
+		final float right = left + size;
+		final float bottom = top + size;
+		
+		if ("flatTop".equals(orientation))
+		{
+			iPoint1.set(left, top, -1, 1);
+			iPoint2.set(right, top, -1, 1);
+			iPoint3.set((left + right) / 2, bottom, -1, 1);
+		}
+		else if ("flatBottom".equals(orientation))
+		{
+			iPoint1.set((left + right) / 2, top, -1, 1);
+			iPoint2.set(right, bottom, -1, 1);
+			iPoint3.set(left, bottom, -1, 1);
+		}
+		else if ("general".equals(orientation))
+		{
+			iPoint1.set(left + size / 3, top, -1, 1);
+			iPoint2.set(right, top + size / 2, -2, 1);
+			iPoint3.set(left, bottom, -1.5f, 1);
+		}
+		else
+		{
+			iPoint1.set(left, top, -1, 1);
+			iPoint2.set(left + 2, top, -1, 1);
+			iPoint3.set(right, bottom, -1, 1);
+		}
+	}
+	
+	
+	
+	@Benchmark
+	public long drawTriangle()
+	{
+		// a new frame each time, so that the triangle isn't hidden by 
+		// itself in the Z-buffer
+		iRasteriser.resetForNextFrame(iSettings);
+		iRasteriser.drawTriangle(iSettings, iColor, 
+				iPoint1, iNormal, iColor, 
+				iPoint2, iNormal, iColor, 
+				iPoint3, iNormal, iColor);
+		return iStats.pixelsWritten;
+	}
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+import com.hiddentao.kai.renderer.FrameStats;
+
+
+/**
+ * A frame rendered by the software renderer.
+ */
+@Name("com.hiddentao.kai.Frame")
+@Label("Frame")
+@Description("A frame rendered by the software renderer.")
+@Category({"Kai Engine", "Rendering"})
+final class FrameEvent extends Event
+{
+	@Label("Triangles Submitted")
+	int trianglesSubmitted;
+	
+	@Label("Triangles Frustum-Culled")
+	int trianglesFrustumCulled;
+	
+	@Label("Triangles Backface-Culled")
+	int trianglesBackfaceCulled;
+	
+	@Label("Triangles Rasterised")
+	int trianglesRasterised;
+	
+	@Label("Spans")
+	long spans;
+	
+	@Label("Pixels Written")
+	long pixelsWritten;
+	
+	@Label("Pixels Depth-Rejected")
+	long pixelsDepthRejected;
+	
+	
+	/**
+	 * Fill in the fields from a frame's statistics.
+	 */
+	void set(FrameStats aStats)
+	{
+		trianglesSubmitted = aStats.trianglesSubmitted;
+		trianglesFrustumCulled = aStats.trianglesFrustumCulled;
+		trianglesBackfaceCulled = aStats.trianglesBackfaceCulled;
+		trianglesRasterised = aStats.trianglesRasterised;
+		spans = aStats.spans;
+		pixelsWritten = aStats.pixelsWritten;
+		pixelsDepthRejected = aStats.pixelsDepthRejected;
+	}
+}
@@ -0,0 +1,226 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.jfr;
+
+import jdk.jfr.Event;
+
+import com.hiddentao.kai.nodes.Mesh;
+import com.hiddentao.kai.renderer.FrameStats;
+import com.hiddentao.kai.renderer.FrameTimeMonitor;
+import com.hiddentao.kai.renderer.RenderProbe;
+
+
+/**
+ * A {@link RenderProbe} which emits Java Flight Recorder events, so that 
+ * frame stages and individual meshes show up in a recording alongside 
+ * garbage collections, safepoints and so on.
+ * 
+ * This needs Java 11 or later and is built separately from the engine 
+ * (see the <code>build-jfr</code> Ant target). To use it, put it on the 
+ * classpath and run with e.g.:
+ * 
+ * <pre>
+ * -XX:StartFlightRecording=filename=kai.jfr -Dkai.renderProbe=com.hiddentao.kai.jfr.JfrRenderProbe
+ * </pre>
+ * 
+ * Events are only created while a recording has them enabled.
+ */
+public final class JfrRenderProbe implements RenderProbe
+{
+	private static final FrameTimeMonitor.Stage[] STAGES = FrameTimeMonitor.Stage.values();
+	private static final int MESH_PROCESS_SLOT = STAGES.length;
+	private static final int MESH_RASTER_SLOT = STAGES.length + 1;
+	
+	/** The event in progress for each stage, plus the two mesh events. */
+	private final ThreadLocal<Event[]> iEvents = new ThreadLocal<Event[]>() {
+		@Override
+		protected Event[] initialValue()
+		{
+			return new Event[STAGES.length + 2];
+		}
+	};
+	
+	/* one of each event, just to ask whether they're enabled */
+	private final Event[] iStageTemplates = new Event[STAGES.length];
+	private final Event iMeshProcessTemplate = new MeshProcessEvent();
+	private final Event iMeshRasterTemplate = new MeshRasterEvent();
+	
+	
+	
+	/**
+	 * Constructor.
+	 */
+	public JfrRenderProbe()
+	{
+		for (int i=0; i<STAGES.length; ++i)
+		{
+			iStageTemplates[i] = createStageEvent(STAGES[i]);
+		}
+	}
+	
+	
+	
+	/**
+	 * Create the event for a stage.
+	 */
+	private static Event createStageEvent(FrameTimeMonitor.Stage aStage)
+	{
+		switch (aStage)
+		{
+			case FRAME:
+				return new FrameEvent();
+			case TRAVERSAL:
+				return new TraversalEvent();
+			case TRANSFORM:
+				return new TransformEvent();
+			case RASTER:
+				return new RasterEvent();
+			default:
+				return new PresentEvent();
+		}
+	}
+	
+	
+	
+	@Override
+	public void stageBegin(FrameTimeMonitor.Stage aStage)
+	{
+		final int slot = aStage.ordinal();
+		if (!iStageTemplates[slot].isEnabled())
+			return;
+		
+		Event e = createStageEvent(aStage);
+		e.begin();
+		iEvents.get()[slot] = e;
+	}
+	
+	
+	@Override
+	public void stageEnd(FrameTimeMonitor.Stage aStage, FrameStats aStats)
+	{
+		final Event e = take(aStage.ordinal());
+		if (null == e)
+			return;
+		
+		e.end();
+		if (!e.shouldCommit())
+			return;
+		
+		if (e instanceof FrameEvent)
+		{
+			((FrameEvent)e).set(aStats);
+		}
+		else if (e instanceof TransformEvent)
+		{
+			((TransformEvent)e).set(aStats);
+		}
+		else if (e instanceof RasterEvent)
+		{
+			((RasterEvent)e).set(aStats);
+		}
+		e.commit();
+	}
+	
+	
+	
+	@Override
+	public void meshProcessBegin(Mesh aMesh)
+	{
+		if (!iMeshProcessTemplate.isEnabled())
+			return;
+		
+		Event e = new MeshProcessEvent();
+		e.begin();
+		iEvents.get()[MESH_PROCESS_SLOT] = e;
+	}
+	
+	
+	@Override
+	public void meshProcessEnd(Mesh aMesh, int aNumTriangles, 
+			int aNumFrustumCulled, int aNumBackfaceCulled)
+	{
+		final MeshProcessEvent e = (MeshProcessEvent)take(MESH_PROCESS_SLOT);
+		if (null == e)
+			return;
+		
+		e.end();
+		if (e.shouldCommit())
+		{
+			e.mesh = describe(aMesh);
+			e.triangles = aNumTriangles;
+			e.frustumCulled = aNumFrustumCulled;
+			e.backfaceCulled = aNumBackfaceCulled;
+			e.commit();
+		}
+	}
+	
+	
+	
+	@Override
+	public void meshRasterBegin(Mesh aMesh)
+	{
+		if (!iMeshRasterTemplate.isEnabled())
+			return;
+		
+		Event e = new MeshRasterEvent();
+		e.begin();
+		iEvents.get()[MESH_RASTER_SLOT] = e;
+	}
+	
+	
+	@Override
+	public void meshRasterEnd(Mesh aMesh, int aNumTriangles, long aNumPixels)
+	{
+		final MeshRasterEvent e = (MeshRasterEvent)take(MESH_RASTER_SLOT);
+		if (null == e)
+			return;
+		
+		e.end();
+		if (e.shouldCommit())
+		{
+			e.mesh = describe(aMesh);
+			e.triangles = aNumTriangles;
+			e.pixels = aNumPixels;
+			e.commit();
+		}
+	}
+	
+	
+	
+	/**
+	 * Remove the event in progress from a slot.
+	 * @return the event; null if there isn't one.
+	 */
+	private Event take(int aSlot)
+	{
+		final Event[] events = iEvents.get();
+		final Event e = events[aSlot];
+		events[aSlot] = null;
+		return e;
+	}
+	
+	
+	/**
+	 * Get a string which identifies a mesh.
+	 */
+	private static String describe(Mesh aMesh)
+	{
+		final String name = aMesh.getName();
+		if (null != name)
+			return name;
+		return "Mesh@" + Integer.toHexString(System.identityHashCode(aMesh));
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.jfr;
+
+import jdk.jfr.Category;
+import jdk.jfr.Description;
+import jdk.jfr.Event;
+import jdk.jfr.Label;
+import jdk.jfr.Name;
+
+
+/**
+ * Rasterising a single mesh.
+ */
+@Name("com.hiddentao.kai.MeshRaster")
+@Label("Mesh Rasterised")
+@Description("Rasterising a single mesh.")
+@Category({"Kai Engine", "Rendering"})
+final class MeshRasterEvent extends Event
+{
+	@Label("Mesh")
+	String mesh;
+	
+	@Label("Triangles")
+	int triangles;
+	
+	@Label("Pixels")
+	long pixels;
+}
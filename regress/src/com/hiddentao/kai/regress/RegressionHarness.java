@@ -0,0 +1,723 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.regress;
+
+
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.lang.management.ThreadMXBean;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Properties;
+
+import javax.imageio.ImageIO;
+
+import com.hiddentao.kai.geometry.Angles3D;
+import com.hiddentao.kai.geometry.builders.SceneGenerator;
+import com.hiddentao.kai.nodes.Node;
+import com.hiddentao.kai.renderer.Camera;
+import com.hiddentao.kai.renderer.OffscreenRenderTarget;
+import com.hiddentao.kai.renderer.Renderer;
+import com.hiddentao.kai.renderer.RenderingSystemManager;
+
+
+/**
+ * Headless golden-image and timing regression harness.
+ * 
+ * Renders a fixed set of generated scenes, compares each frame against a 
+ * stored reference image and times full redraws of it. The run 
+ * fails (exit code 1) if any frame differs from its reference or if any 
+ * frame time regresses beyond a threshold compared to the stored timing 
+ * baseline, or if there is no reference image or baseline time for a 
+ * scene.
+ * 
+ * Frame times vary a lot more between JVMs than within one, e.g. with what
+ * the JIT compiler makes of the rasteriser, so scenes get timed in several
+ * separately launched JVMs and the median is taken. Each of these warms up
+ * every scene, then times them in rounds, taking turns, and keeps each
+ * scene's fastest round. Times are of CPU used by the rendering thread,
+ * which does all the work as the renderer gets a single geometry thread,
+ * so they depend neither on the no. of cores nor on other processes
+ * competing for them.
+ * 
+ * Usage: <code>RegressionHarness &lt;golden dir&gt; &lt;output dir&gt; 
+ * [options]</code>, where the options are:
+ * <ul>
+ * <li><code>-updateImages</code> - overwrite the reference images with 
+ * the frames rendered by this run. Only do this once the output is known 
+ * to be correct.</li>
+ * <li><code>-updateTimings</code> - overwrite the timing baseline with 
+ * the frame times of this run. The images are still checked, and the 
+ * baseline is only written if they all match and if the timings are
+ * steady enough to be used as a baseline, i.e. if no scene's median is 
+ * likely to be off by more than a third of the threshold. Noisy machines 
+ * need more <code>-runs</code> for that.</li>
+ * <li><code>-tolerance N</code> - max. difference allowed per colour 
+ * channel before a pixel counts as different. Default is 2.</li>
+ * <li><code>-maxPixels N</code> - max. no. of different pixels allowed 
+ * per frame. Default is 0.</li>
+ * <li><code>-threshold F</code> - max. allowed slow down, as a fraction 
+ * of the baseline time. Default is 0.25.</li>
+ * <li><code>-frames N</code> - no. of frames to time per scene per round. 
+ * Default is 100.</li>
+ * <li><code>-rounds N</code> - no. of rounds of timing per run. Default
+ * is 3.</li>
+ * <li><code>-runs N</code> - no. of JVMs to time the scenes in. Default
+ * is 9.</li>
+ * </ul>
+ * 
+ * Images of frames which don't match are written to the output folder, 
+ * along with a difference image highlighting the pixels which changed.
+ */
+public final class RegressionHarness
+{
+	/**
+	 * A scene and the camera to render it with.
+	 */
+	private static final class Case
+	{
+		String name;
+		SceneGenerator.Params params;
+		Angles3D cameraRotation;
+		boolean wireframe;
+		
+		Case(String aName, SceneGenerator.Params aParams, Angles3D aCameraRotation, boolean aWireframe)
+		{
+			name = aName;
+			params = aParams;
+			cameraRotation = aCameraRotation;
+			wireframe = aWireframe;
+		}
+	}
+	
+	
+	private static final int WIDTH = 320;
+	private static final int HEIGHT = 240;
+	private static final int WARMUP_FRAMES = 100;
+	/** Min. time spent warming up each scene, so that it gets fully compiled. */
+	private static final long WARMUP_MILLIS = 1000;
+	private static final String TIMINGS_FILE = "timings.properties";
+	/** Option which makes a launched JVM only time the scenes. */
+	private static final String TIMING_RUN_OPTION = "-timingRun";
+	
+	private static final ThreadMXBean THREADS = ManagementFactory.getThreadMXBean();
+	
+	private File iGoldenDir = null;
+	private File iOutputDir = null;
+	private boolean iUpdateImages = false;
+	private boolean iUpdateTimings = false;
+	private int iTolerance = 2;
+	private int iMaxPixels = 0;
+	private float iThreshold = 0.25f;
+	private int iFrames = 100;
+	private int iRounds = 3;
+	private int iRuns = 9;
+	/** Where to write the frame times to, if this is a timing run. */
+	private File iTimingRunFile = null;
+	
+	
+	
+	private RegressionHarness() {}
+	
+	
+	
+	/**
+	 * Get the scenes which get checked.
+	 * 
+	 * Changing these invalidates the reference images and the timing 
+	 * baseline, so re-run with <code>-updateImages -updateTimings</code> 
+	 * afterwards.
+	 */
+	private static List<Case> cases()
+	{
+		List<Case> cases = new ArrayList<Case>();
+		
+		SceneGenerator.Params params = new SceneGenerator.Params();
+		cases.add(new Case("cubes", params, new Angles3D(0, 0, 0), false));
+		cases.add(new Case("cubes-rotated", params, new Angles3D(20, 30, 0), false));
+		cases.add(new Case("cubes-wireframe", params, new Angles3D(20, 30, 0), true));
+		
+		params = new SceneGenerator.Params();
+		params.numMeshes = 300;
+		params.branching = 1;
+		cases.add(new Case("deep", params, new Angles3D(-15, 45, 0), false));
+		
+		cases.add(new Case("tiny", SceneGenerator.tinyTriangles(), new Angles3D(10, -20, 0), false));
+		cases.add(new Case("large", SceneGenerator.largeTriangles(), new Angles3D(30, 60, 0), false));
+		
+		params = new SceneGenerator.Params();
+		params.shape = SceneGenerator.Shape.SPHERE;
+		params.trianglesPerMesh = 400;
+		params.numMeshes = 5;
+		params.meshSize = 0.6f;
+		cases.add(new Case("spheres", params, new Angles3D(-30, 0, 0), false));
+		
+		params = SceneGenerator.screenFilling(8);
+		params.layersBackToFront = true;
+		cases.add(new Case("overdraw", params, new Angles3D(0, 0, 0), false));
+		
+		return cases;
+	}
+	
+	
+	
+	public static void main(String[] aArgs) throws Exception
+	{
+		RegressionHarness harness = new RegressionHarness();
+		if (!harness.parseArgs(aArgs))
+		{
+			System.err.println("Usage: RegressionHarness <golden dir> <output dir> " +
+					"[-updateImages] [-updateTimings] [-tolerance N] [-maxPixels N] [-threshold F] " +
+					"[-frames N] [-rounds N] [-runs N]");
+			System.exit(2);
+		}
+		
+		System.exit(harness.run() ? 0 : 1);
+	}
+	
+	
+	
+	/**
+	 * Parse the command-line arguments.
+	 * @return false if they're invalid.
+	 */
+	private boolean parseArgs(String[] aArgs)
+	{
+		if (2 > aArgs.length)
+			return false;
+		
+		iGoldenDir = new File(aArgs[0]);
+		iOutputDir = new File(aArgs[1]);
+		
+		try
+		{
+			for (int i=2; i<aArgs.length; ++i)
+			{
+				final String arg = aArgs[i];
+				if ("-updateImages".equals(arg))
+					iUpdateImages = true;
+				else if ("-updateTimings".equals(arg))
+					iUpdateTimings = true;
+				else if ("-tolerance".equals(arg) && i+1 < aArgs.length)
+					iTolerance = Integer.parseInt(aArgs[++i]);
+				else if ("-maxPixels".equals(arg) && i+1 < aArgs.length)
+					iMaxPixels = Integer.parseInt(aArgs[++i]);
+				else if ("-threshold".equals(arg) && i+1 < aArgs.length)
+					iThreshold = Float.parseFloat(aArgs[++i]);
+				else if ("-frames".equals(arg) && i+1 < aArgs.length)
+					iFrames = Integer.parseInt(aArgs[++i]);
+				else if ("-rounds".equals(arg) && i+1 < aArgs.length)
+					iRounds = Integer.parseInt(aArgs[++i]);
+				else if ("-runs".equals(arg) && i+1 < aArgs.length)
+					iRuns = Integer.parseInt(aArgs[++i]);
+				else if (TIMING_RUN_OPTION.equals(arg) && i+1 < aArgs.length)
+					iTimingRunFile = new File(aArgs[++i]);
+				else if (0 < arg.length())
+					return false;
+			}
+		}
+		catch (NumberFormatException e)
+		{
+			return false;
+		}
+		
+		return 0 < iFrames && 0 < iRounds && 0 < iRuns;
+	}
+	
+	
+	
+	/**
+	 * Check every scene, or just time them if this is a timing run.
+	 * @return true if they all passed.
+	 */
+	private boolean run() throws IOException, InterruptedException
+	{
+		if (null != iTimingRunFile)
+		{
+			store(timeScenes(), iTimingRunFile, "Fastest round's median CPU time per frame in milliseconds");
+			return true;
+		}
+		
+		iGoldenDir.mkdirs();
+		iOutputDir.mkdirs();
+		
+		List<Case> cases = cases();
+		
+		/* output */
+		
+		int imageFailures = 0;
+		Renderer renderer = createRenderer();
+		OffscreenRenderTarget target = new OffscreenRenderTarget(renderer, WIDTH, HEIGHT);
+		try
+		{
+			for (int i=0; i<cases.size(); ++i)
+			{
+				final Case c = cases.get(i);
+				renderer.enableWireframeMode(c.wireframe);
+				renderer.invalidate();
+				BufferedImage image = target.render(SceneGenerator.generate(c.params), camera(c));
+				if (!checkImage(c.name, image))
+					++imageFailures;
+			}
+		}
+		finally
+		{
+			renderer.dispose();
+		}
+		
+		/* timing */
+		
+		double[][] runMillis = new double[cases.size()][iRuns];
+		for (int run=0; run<iRuns; ++run)
+		{
+			System.out.println("Timing run " + (run+1) + " of " + iRuns + "...");
+			Properties runTimings = launchTimingRun(run);
+			for (int i=0; i<cases.size(); ++i)
+			{
+				runMillis[i][run] = Double.parseDouble(runTimings.getProperty(cases.get(i).name));
+			}
+		}
+		
+		File timingsFile = new File(iGoldenDir, TIMINGS_FILE);
+		Properties baseline = load(timingsFile);
+		Properties timings = new Properties();
+		int timingFailures = 0;
+		int noisyTimings = 0;
+		for (int i=0; i<cases.size(); ++i)
+		{
+			final Case c = cases.get(i);
+			Arrays.sort(runMillis[i]);
+			final double millis = runMillis[i][iRuns / 2];
+			// spread of the middle half, so that a single odd run doesn't count
+			final double noise = runMillis[i][(iRuns * 3) / 4] / runMillis[i][iRuns / 4] - 1;
+			
+			timings.setProperty(c.name, String.valueOf(millis));
+			if (!checkTiming(c.name, millis, noise, baseline))
+				++timingFailures;
+			if (medianError(noise) > iThreshold / 3)
+				++noisyTimings;
+		}
+		
+		final String timingsComment = "Median of " + iRuns + " runs of CPU time per frame in milliseconds, "
+				+ WIDTH + "x" + HEIGHT + ", 1 geometry thread";
+		store(timings, new File(iOutputDir, TIMINGS_FILE), timingsComment);
+		if (iUpdateImages)
+		{
+			System.out.println("Updated reference images in " + iGoldenDir);
+		}
+		if (iUpdateTimings)
+		{
+			// don't let a baseline be taken of the wrong output
+			if (0 < imageFailures)
+			{
+				System.out.println("Timing baseline NOT updated since frames don't match their reference images");
+				return false;
+			}
+			// nor one which is noisier than what it's meant to catch
+			if (0 < noisyTimings)
+			{
+				System.out.println("Timing baseline NOT updated since the median of " + noisyTimings 
+						+ " scene(s) may be off by more than " + Math.round(iThreshold * 100 / 3) 
+						+ "%, re-run once the machine is quieter or use more -runs");
+				return false;
+			}
+			store(timings, timingsFile, timingsComment);
+			System.out.println("Updated timing baseline in " + timingsFile);
+			timingFailures = 0;
+		}
+		
+		if (0 < imageFailures + timingFailures)
+		{
+			System.out.println(imageFailures + " image and " + timingFailures 
+					+ " timing check(s) FAILED, see " + iOutputDir);
+			return false;
+		}
+		
+		System.out.println("All scenes passed");
+		return true;
+	}
+	
+	
+	
+	/**
+	 * Create the renderer to check the scenes with.
+	 */
+	private static Renderer createRenderer()
+	{
+		Renderer renderer = RenderingSystemManager.instance().getDefaultRenderSystem().createRenderer();
+		// so that the timings don't depend on the no. of cores, and so that
+		// the rendering thread does all the work
+		renderer.setGeometryThreadCount(1);
+		return renderer;
+	}
+	
+	
+	
+	/**
+	 * Get the camera to render a scene with.
+	 */
+	private static Camera camera(Case aCase)
+	{
+		Camera camera = new Camera();
+		camera.rotateAroundFocus(aCase.cameraRotation);
+		return camera;
+	}
+	
+	
+	
+	/**
+	 * Compare a rendered frame against its reference image.
+	 * @return true if it matches, or if reference images are being updated.
+	 */
+	private boolean checkImage(String aName, BufferedImage aImage) throws IOException
+	{
+		File golden = new File(iGoldenDir, aName + ".png");
+		if (iUpdateImages)
+		{
+			ImageIO.write(aImage, "png", golden);
+			return true;
+		}
+		
+		if (!golden.exists())
+		{
+			System.out.println(aName + ": no reference image, run with -updateImages to create one");
+			ImageIO.write(aImage, "png", new File(iOutputDir, aName + ".png"));
+			return false;
+		}
+		
+		BufferedImage expected = ImageIO.read(golden);
+		if (expected.getWidth() != aImage.getWidth() || expected.getHeight() != aImage.getHeight())
+		{
+			System.out.println(aName + ": reference image is " + expected.getWidth() + "x" 
+					+ expected.getHeight() + " but frame is " + aImage.getWidth() + "x" + aImage.getHeight());
+			return false;
+		}
+		
+		BufferedImage diff = new BufferedImage(aImage.getWidth(), aImage.getHeight(), BufferedImage.TYPE_INT_RGB);
+		int different = 0;
+		int maxDelta = 0;
+		for (int y=0; y<aImage.getHeight(); ++y)
+		{
+			for (int x=0; x<aImage.getWidth(); ++x)
+			{
+				final int actualRGB = aImage.getRGB(x, y);
+				final int delta = maxChannelDelta(expected.getRGB(x, y), actualRGB);
+				maxDelta = Math.max(maxDelta, delta);
+				if (delta > iTolerance)
+				{
+					++different;
+					diff.setRGB(x, y, 0xff0000);
+				}
+				else
+				{
+					// dimmed grey version of the frame, for context
+					diff.setRGB(x, y, 0x010101 * (luminance(actualRGB) / 4));
+				}
+			}
+		}
+		
+		if (different > iMaxPixels)
+		{
+			System.out.println(aName + ": " + different + " pixel(s) differ, by up to " + maxDelta);
+			ImageIO.write(aImage, "png", new File(iOutputDir, aName + ".png"));
+			ImageIO.write(diff, "png", new File(iOutputDir, aName + "-diff.png"));
+			return false;
+		}
+		
+		System.out.println(aName + ": image OK (" + different + " pixel(s) differ, by up to " + maxDelta + ")");
+		return true;
+	}
+	
+	
+	
+	/**
+	 * Estimate how far the median of the runs may be off from what further 
+	 * runs would give. Like the error of a mean, it shrinks with the square 
+	 * root of the no. of runs.
+	 * @param aNoise how much the times of the middle half of the runs
+	 * differed by, as a fraction.
+	 * @return the likely error, as a fraction of the median.
+	 */
+	private double medianError(double aNoise)
+	{
+		return aNoise / Math.sqrt(iRuns);
+	}
+	
+	
+	
+	/**
+	 * Compare a frame time against the baseline.
+	 * @param aNoise how much the times of the middle half of the runs
+	 * differed by, as a fraction.
+	 * @return true if it hasn't regressed; false if it has or if there is 
+	 * no baseline for it.
+	 */
+	private boolean checkTiming(String aName, double aMillis, double aNoise, Properties aBaseline)
+	{
+		final String noise = "noise " + Math.round(aNoise * 100) + "%";
+		final String value = aBaseline.getProperty(aName);
+		if (null == value)
+		{
+			System.out.println(aName + ": " + format(aMillis) + " ms/frame (" + noise
+					+ ") - NO BASELINE, run with -updateTimings to record one");
+			return false;
+		}
+		
+		final double baseline = Double.parseDouble(value);
+		final double change = aMillis / baseline - 1;
+		final String summary = aName + ": " + format(aMillis) + " ms/frame vs. " 
+				+ format(baseline) + " baseline (" + (0 <= change ? "+" : "") 
+				+ Math.round(change * 100) + "%, " + noise + ")";
+		
+		if (change > iThreshold)
+		{
+			System.out.println(summary + " - REGRESSED");
+			return false;
+		}
+		
+		System.out.println(summary);
+		return true;
+	}
+	
+	
+	
+	/**
+	 * Time the scenes in a new JVM.
+	 * @param aRun the no. of the run.
+	 * @return the frame time of each scene, in milliseconds.
+	 */
+	private Properties launchTimingRun(int aRun) throws IOException, InterruptedException
+	{
+		File file = new File(iOutputDir, "timings-run" + (aRun+1) + ".properties");
+		file.delete();
+		
+		List<String> command = new ArrayList<String>();
+		command.add(new File(new File(System.getProperty("java.home"), "bin"), "java").getPath());
+		command.add("-Djava.awt.headless=true");
+		command.add("-cp");
+		command.add(System.getProperty("java.class.path"));
+		command.add(RegressionHarness.class.getName());
+		command.add(iGoldenDir.getPath());
+		command.add(iOutputDir.getPath());
+		command.add("-frames");
+		command.add(String.valueOf(iFrames));
+		command.add("-rounds");
+		command.add(String.valueOf(iRounds));
+		command.add(TIMING_RUN_OPTION);
+		command.add(file.getPath());
+		
+		ProcessBuilder builder = new ProcessBuilder(command);
+		builder.redirectErrorStream(true);
+		Process process = builder.start();
+		
+		// keep its output, to show if it fails
+		ByteArrayOutputStream output = new ByteArrayOutputStream();
+		InputStream in = process.getInputStream();
+		try
+		{
+			byte[] buf = new byte[4096];
+			int len;
+			while (0 <= (len = in.read(buf)))
+			{
+				output.write(buf, 0, len);
+			}
+		}
+		finally
+		{
+			in.close();
+		}
+		
+		if (0 != process.waitFor() || !file.exists())
+		{
+			System.out.print(output.toString());
+			throw new IOException("Timing run " + (aRun+1) + " failed");
+		}
+		return load(file);
+	}
+	
+	
+	
+	/**
+	 * Warm up and time every scene.
+	 * @return the frame time of each scene, in milliseconds.
+	 */
+	private Properties timeScenes()
+	{
+		List<Case> cases = cases();
+		Renderer renderer = createRenderer();
+		OffscreenRenderTarget target = new OffscreenRenderTarget(renderer, WIDTH, HEIGHT);
+		
+		double[][] roundMillis = new double[cases.size()][iRounds];
+		try
+		{
+			Node[] scenes = new Node[cases.size()];
+			Camera[] cameras = new Camera[cases.size()];
+			
+			// warm up every scene before any get timed
+			for (int i=0; i<cases.size(); ++i)
+			{
+				final Case c = cases.get(i);
+				scenes[i] = SceneGenerator.generate(c.params);
+				cameras[i] = camera(c);
+				renderer.enableWireframeMode(c.wireframe);
+				
+				final long warmupEnd = System.currentTimeMillis() + WARMUP_MILLIS;
+				do
+				{
+					renderFrames(target, scenes[i], cameras[i], WARMUP_FRAMES);
+				}
+				while (System.currentTimeMillis() < warmupEnd);
+			}
+			
+			for (int round=0; round<iRounds; ++round)
+			{
+				for (int i=0; i<cases.size(); ++i)
+				{
+					renderer.enableWireframeMode(cases.get(i).wireframe);
+					roundMillis[i][round] = time(target, scenes[i], cameras[i]);
+				}
+			}
+		}
+		finally
+		{
+			renderer.dispose();
+		}
+		
+		Properties timings = new Properties();
+		for (int i=0; i<cases.size(); ++i)
+		{
+			Arrays.sort(roundMillis[i]);
+			timings.setProperty(cases.get(i).name, String.valueOf(roundMillis[i][0]));
+		}
+		return timings;
+	}
+	
+	
+	
+	/**
+	 * Time a round of full redraws of a scene.
+	 * @return the median frame time in milliseconds.
+	 */
+	private double time(OffscreenRenderTarget aTarget, Node aScene, Camera aCamera)
+	{
+		final Renderer renderer = aTarget.getRenderer();
+		renderFrames(aTarget, aScene, aCamera, WARMUP_FRAMES / 4);
+		
+		long[] nanos = new long[iFrames];
+		for (int i=0; i<iFrames; ++i)
+		{
+			// otherwise incremental rendering skips the unchanged frames
+			renderer.invalidate();
+			final long start = cpuTime();
+			aTarget.render(aScene, aCamera);
+			nanos[i] = cpuTime() - start;
+		}
+		
+		Arrays.sort(nanos);
+		return nanos[iFrames / 2] / 1000000.0;
+	}
+	
+	
+	
+	/**
+	 * Get the CPU time used by the current thread, if supported.
+	 * @return the time in nanoseconds.
+	 */
+	private static long cpuTime()
+	{
+		if (THREADS.isCurrentThreadCpuTimeSupported())
+			return THREADS.getCurrentThreadCpuTime();
+		return System.nanoTime();
+	}
+	
+	
+	
+	/**
+	 * Render full redraws of a scene without timing them.
+	 */
+	private static void renderFrames(OffscreenRenderTarget aTarget, Node aScene, Camera aCamera, int aCount)
+	{
+		for (int i=0; i<aCount; ++i)
+		{
+			aTarget.getRenderer().invalidate();
+			aTarget.render(aScene, aCamera);
+		}
+	}
+	
+	
+	
+	private static int maxChannelDelta(int aRGB1, int aRGB2)
+	{
+		final int r = Math.abs(((aRGB1 >> 16) & 0xff) - ((aRGB2 >> 16) & 0xff));
+		final int g = Math.abs(((aRGB1 >> 8) & 0xff) - ((aRGB2 >> 8) & 0xff));
+		final int b = Math.abs((aRGB1 & 0xff) - (aRGB2 & 0xff));
+		return Math.max(r, Math.max(g, b));
+	}
+	
+	
+	private static int luminance(int aRGB)
+	{
+		return (((aRGB >> 16) & 0xff) * 3 + ((aRGB >> 8) & 0xff) * 6 + (aRGB & 0xff)) / 10;
+	}
+	
+	
+	private static String format(double aMillis)
+	{
+		return String.valueOf(Math.round(aMillis * 1000) / 1000.0);
+	}
+	
+	
+	
+	private static Properties load(File aFile) throws IOException
+	{
+		Properties props = new Properties();
+		if (aFile.exists())
+		{
+			InputStream in = new FileInputStream(aFile);
+			try
+			{
+				props.load(in);
+			}
+			finally
+			{
+				in.close();
+			}
+		}
+		return props;
+	}
+	
+	
+	private static void store(Properties aProps, File aFile, String aComment) throws IOException
+	{
+		OutputStream out = new FileOutputStream(aFile);
+		try
+		{
+			aProps.store(out, aComment);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+}
@@ -25,27 +25,42 @@ import com.hiddentao.kai.nodes.NodeGroup;
 import com.hiddentao.kai.nodes.Rotation;
 import com.hiddentao.kai.nodes.Translation;
 import com.hiddentao.kai.renderer.RenderingSurface;
-import com.hiddentao.kai.timer.TimerControl;
-import com.hiddentao.kai.timer.TimerEvent;
+import com.hiddentao.kai.timer.GameLoop;
+import com.hiddentao.kai.timer.Simulation;
 import com.hiddentao.utils.collections.DynamicArray;
 
 
 /**
  * An animated scene.
+ * 
+ * The pieces are rotated in fixed simulation steps by a {@link GameLoop} 
+ * and their displayed angles are interpolated between steps.
  */
-public final class AnimScene extends NodeGroup implements TimerEvent
+public final class AnimScene extends NodeGroup implements Simulation
 {
 	private static Logger LOG = Logger.getLogger(AnimScene.class.getName());
 	
 	private static final float PIECE_WIDTH = 0.3f;
 	
+	/** Length of a simulation step. */
+	private static final int STEP_MILLIS = 10;
+	/** Interval between displayed frames. */
+	private static final int FRAME_MILLIS = 16;
+	
 	
 	private volatile DynamicArray<Rotation> iRotations = new DynamicArray<Rotation>(4);
 	private volatile DynamicArray<Angles3D> iAngleIncrements = new DynamicArray<Angles3D>(4);
 	
+	/** Angles of each piece as of the previous simulation step. */
+	private DynamicArray<Angles3D> iPreviousAngles = new DynamicArray<Angles3D>(4);
+	/** Angles of each piece as of the current simulation step. */
+	private DynamicArray<Angles3D> iCurrentAngles = new DynamicArray<Angles3D>(4);
+	
 	
 	private volatile RenderingSurface iSurface = null;
 	
+	private GameLoop iLoop = null;
+	
 	
 	/**
 	 * Constructor.
@@ -78,10 +93,14 @@ public final class AnimScene extends NodeGroup implements TimerEvent
 		for (int i=0; i<4; ++i)
 		{
 			a.iRotations.add(new Rotation());
+			a.iPreviousAngles.add(new Angles3D());
+			a.iCurrentAngles.add(new Angles3D());
 			a.addPiece(new Translation(new Vec4((i-1.5f)*PIECE_WIDTH*2,0,0,1)), a.iRotations.get(i));
 		}
 
-		TimerControl.getInstance().add(a, 10);
+		// only repaint while this scene is being shown
+		a.iLoop = new GameLoop(a, aSurface, a, STEP_MILLIS, FRAME_MILLIS);
+		a.iLoop.start();
 		
 		return a;
 	}
@@ -107,26 +126,52 @@ public final class AnimScene extends NodeGroup implements TimerEvent
 	
 	
 	
-	public void doTimerEvent()
+	public void step(float aStepSeconds)
 	{
-		// if we're showing then repaint
-		if (null != iSurface)
+		for (int i=0; i<4; ++i)
 		{
-			for (int i=0; i<4; ++i)
-			{
-				Angles3D angles = iRotations.get(i).angles;
-				Angles3D inc = iAngleIncrements.get(i);
-				angles.incX(inc.iAngleX, MathConstants.MAX_RADIANS);
-				angles.incY(inc.iAngleY, MathConstants.MAX_RADIANS);
-				angles.incZ(inc.iAngleZ, MathConstants.MAX_RADIANS);
-			}
-			iSurface.refresh();
+			Angles3D current = iCurrentAngles.get(i);
+			Angles3D inc = iAngleIncrements.get(i);
+			iPreviousAngles.get(i).set(current.iAngleX, current.iAngleY, current.iAngleZ);
+			current.incX(inc.iAngleX, MathConstants.MAX_RADIANS);
+			current.incY(inc.iAngleY, MathConstants.MAX_RADIANS);
+			current.incZ(inc.iAngleZ, MathConstants.MAX_RADIANS);
 		}
 	}
-
-	public String getTimerEventDescription()
+	
+	
+	public void interpolate(float aAlpha)
 	{
-		return "Animated scene";
+		for (int i=0; i<4; ++i)
+		{
+			Angles3D previous = iPreviousAngles.get(i);
+			Angles3D current = iCurrentAngles.get(i);
+			iRotations.get(i).setAngles(
+					interpolateAngle(previous.iAngleX, current.iAngleX, aAlpha),
+					interpolateAngle(previous.iAngleY, current.iAngleY, aAlpha),
+					interpolateAngle(previous.iAngleZ, current.iAngleZ, aAlpha)
+					);
+		}
+	}
+	
+	
+	/**
+	 * Interpolate between two angles, taking the shortest way round.
+	 * 
+	 * @param aFrom the start angle, in radians.
+	 * @param aTo the end angle, in radians.
+	 * @param aAlpha how far to go from the start angle (0) to the end angle (1).
+	 * @return the interpolated angle, in radians.
+	 */
+	private static float interpolateAngle(float aFrom, float aTo, float aAlpha)
+	{
+		float delta = aTo - aFrom;
+		if (Math.PI < delta)
+			delta -= MathConstants.MAX_RADIANS;
+		else if (-Math.PI > delta)
+			delta += MathConstants.MAX_RADIANS;
+		
+		return aFrom + delta * aAlpha;
 	}
 	
 }
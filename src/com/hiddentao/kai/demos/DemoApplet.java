@@ -24,6 +24,7 @@ import com.hiddentao.kai.geometry.Vec4;
 import com.hiddentao.kai.geometry.VectorComponents;
 import com.hiddentao.kai.geometry.builders.CubeBuilder;
 import com.hiddentao.kai.geometry.util.ColorUtils;
+import com.hiddentao.kai.logging.AsyncAppender;
 import com.hiddentao.kai.logging.Level;
 import com.hiddentao.kai.logging.Logger;
 import com.hiddentao.kai.nodes.Mesh;
@@ -32,6 +33,7 @@ import com.hiddentao.kai.nodes.NodeGroup;
 import com.hiddentao.kai.nodes.Translation;
 import com.hiddentao.kai.renderer.Camera;
 import com.hiddentao.kai.renderer.Renderer;
+import com.hiddentao.kai.renderer.ResolutionScaler;
 import com.hiddentao.kai.renderer.RenderingSurface;
 import com.hiddentao.kai.renderer.RenderingSystemManager;
 import com.hiddentao.kai.utils.StaticDataManager;
@@ -49,6 +51,8 @@ public class DemoApplet extends JAbstractApplet implements App, VectorComponents
 		super.start();
 		
 		Logger.setMinimumLevel(Level.INFO);
+		// keep console I/O off the rendering and event threads
+		Logger.setAppender(new AsyncAppender());
 		
 		// set global content pane
 		AppBridge.setApp(this);
@@ -60,6 +64,10 @@ public class DemoApplet extends JAbstractApplet implements App, VectorComponents
 		renderer.enableWireframeMode(false);
 		renderer.enableZBuffer(true);
 		surface.setRenderer(renderer);
+		// aim for 30fps, dropping to as little as a quarter of the pixels
+		surface.setResolutionScaler(new ResolutionScaler(33, 0.5f));
+		// draft quality while dragging, 2x2 supersampled once idle
+		surface.enableProgressiveRefinement(250, 2);
 
 		// camera
 		Camera cam = new Camera();
@@ -87,6 +95,7 @@ public class DemoApplet extends JAbstractApplet implements App, VectorComponents
 	{
 		super.destroy();
 		StaticDataManager.resetAllStaticData();
+		Logger.setAppender(null);
 	}
 
 
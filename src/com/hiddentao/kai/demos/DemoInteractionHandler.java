@@ -20,7 +20,6 @@ import java.awt.event.MouseWheelEvent;
 import java.util.ArrayList;
 import java.util.Iterator;
 
-import com.hiddentao.kai.geometry.Angles3D;
 import com.hiddentao.kai.geometry.Vec2;
 import com.hiddentao.kai.logging.Logger;
 import com.hiddentao.kai.math.MathConstants;
@@ -28,6 +27,7 @@ import com.hiddentao.kai.nodes.DirectionalLight;
 import com.hiddentao.kai.nodes.Node;
 import com.hiddentao.kai.nodes.Translation;
 import com.hiddentao.kai.renderer.Camera;
+import com.hiddentao.kai.renderer.DebugView;
 import com.hiddentao.kai.renderer.Renderer;
 import com.hiddentao.kai.renderer.interaction.InteractionHandler;
 
@@ -45,15 +45,21 @@ public final class DemoInteractionHandler extends InteractionHandler implements
 			"Mouse wheel / scroll = shrink/expand group",
 			"up/down = inc/dec vertical FOV angle",
 			"B = toggle backface culling",
+			"H = cycle overdraw heatmaps",
 			"P = toggle perspective projection",
 			"R = reset camera",
+			"S = toggle frame time stats",
 			"W = toggle wireframe mode",
 			"Z = toggle z-buffer"
 	};	
 	
-	private Angles3D iCameraAngles = new Angles3D();
 	private Vec2 iMouseXY = new Vec2();
 	
+	/* drag rotation (in degrees) yet to be applied to the camera */
+	private float iPendingAngleX = 0;
+	private float iPendingAngleY = 0;
+	private boolean iRotationPending = false;
+	
 	private ArrayList<Node> iScenes = null;
 	private int iCurrentScene = 0;
 	private float iSceneScalingFactor = 1.0f;
@@ -77,6 +83,10 @@ public final class DemoInteractionHandler extends InteractionHandler implements
 
 	public void doReset()
 	{
+		iPendingAngleX = 0;
+		iPendingAngleY = 0;
+		iRotationPending = false;
+		
 		if (null != iSurface)
 		{
 			Camera camera = iSurface.getCamera();
@@ -116,6 +126,14 @@ public final class DemoInteractionHandler extends InteractionHandler implements
 					renderer.enableBackfaceCulling(!renderer.isBackfaceCullingEnabled());
 				}
 				break;
+			case KeyEvent.VK_H:
+				// next debug view
+				if (null != renderer)
+				{
+					DebugView[] views = DebugView.values();
+					renderer.setDebugView(views[(renderer.getDebugView().ordinal() + 1) % views.length]);
+				}
+				break;
 			case KeyEvent.VK_W:
 				// toggle wireframe mode
 				if (null != renderer)
@@ -130,6 +148,13 @@ public final class DemoInteractionHandler extends InteractionHandler implements
 					renderer.enableZBuffer(!renderer.isZBufferEnabled());
 				}
 				break;
+			case KeyEvent.VK_S:
+				// toggle frame time stats
+				if (null != iSurface)
+				{
+					iSurface.enableFrameTimeOverlay(!iSurface.isFrameTimeOverlayEnabled());
+				}
+				break;
 			case KeyEvent.VK_P:
 				// toggle perspective projection
 				if (null != camera)
@@ -153,6 +178,9 @@ public final class DemoInteractionHandler extends InteractionHandler implements
 					LOG.info("Vertical FOV angle: " + camera.frustum.verticalFOV);
 				}
 				break;
+			default:
+				// nothing to redraw
+				return;
 		}
 		
 		refreshDisplay();
@@ -181,6 +209,7 @@ public final class DemoInteractionHandler extends InteractionHandler implements
 
 	public void mousePressed(MouseEvent arg0)
 	{
+		notifyInteraction();
 		iMouseXY.set(arg0.getX(), arg0.getY());
 	}
 
@@ -194,18 +223,21 @@ public final class DemoInteractionHandler extends InteractionHandler implements
 		int x = arg0.getX();
 		int y = arg0.getY();
 		
-		iCameraAngles.iAngleX = (float)(y - iMouseXY.y);
-		iCameraAngles.iAngleY = (float)(x - iMouseXY.x);
-		iCameraAngles.iAngleZ = 0;
+		// merge with any other drags since the last frame
+		iPendingAngleX += (float)(y - iMouseXY.y);
+		iPendingAngleY += (float)(x - iMouseXY.x);
 		
 		iMouseXY.x = x;
 		iMouseXY.y = y;
-
-		Camera camera = iSurface.getCamera();
-		if (null != camera)
-			camera.rotateAroundFocus(iCameraAngles);
 		
-		refreshDisplay();
+		notifyInteraction();
+		
+		// one frame is enough for any no. of drags
+		if (!iRotationPending)
+		{
+			iRotationPending = true;
+			refreshDisplay();
+		}
 	}
 
 	public void mouseMoved(MouseEvent arg0)
@@ -214,6 +246,8 @@ public final class DemoInteractionHandler extends InteractionHandler implements
 
 	public void mouseWheelMoved(MouseWheelEvent arg0)
 	{
+		notifyInteraction();
+		
 		// inc/dec scaling factor
 		iSceneScalingFactor += (arg0.getWheelRotation() / 10.0f);
 		
@@ -239,6 +273,23 @@ public final class DemoInteractionHandler extends InteractionHandler implements
 	
 
 	
+	@Override
+	public void applyPendingInput()
+	{
+		if (!iRotationPending)
+			return;
+		
+		iRotationPending = false;
+		
+		Camera camera = (null != iSurface ? iSurface.getCamera() : null);
+		if (null != camera)
+			camera.rotateAroundFocus(iPendingAngleX, iPendingAngleY, 0);
+		
+		iPendingAngleX = 0;
+		iPendingAngleY = 0;
+	}
+	
+	
 	protected void refreshDisplay()
 	{
 		if (null != iSurface)
@@ -90,6 +90,31 @@ public final class Frustum
 	}
 	
 	
+	/**
+	 * Set this frustum's values.
+	 * @param aFrustum the frustum whose values to copy.
+	 */
+	public void set(Frustum aFrustum)
+	{
+		set(aFrustum.left, aFrustum.right, aFrustum.top, aFrustum.bottom, 
+				aFrustum.near, aFrustum.far, aFrustum.verticalFOV);
+	}
+	
+	
+	/**
+	 * Get whether this frustum has exactly the same values as another.
+	 * @param aFrustum the other frustum.
+	 * @return true if so; false otherwise.
+	 */
+	public boolean equalTo(Frustum aFrustum)
+	{
+		return left == aFrustum.left && right == aFrustum.right 
+				&& top == aFrustum.top && bottom == aFrustum.bottom 
+				&& near == aFrustum.near && far == aFrustum.far 
+				&& verticalFOV == aFrustum.verticalFOV;
+	}
+	
+	
 	/**
 	 * Calculate this frustum's view plane depth based on its current values.
 	 * @return the view plane depth.
@@ -102,6 +102,27 @@ public final class Mat4 implements VectorComponents
 	
 	
 	
+	/**
+	 * Get whether this matrix has exactly the same component values as 
+	 * another.
+	 * @param aMat the other matrix.
+	 * @return true if so; false otherwise.
+	 */
+	public boolean equalTo(Mat4 aMat)
+	{
+		for (int row=0; row<4; ++row)
+		{
+			for (int col=0; col<4; ++col)
+			{
+				if (this.val[row][col] != aMat.val[row][col])
+					return false;
+			}
+		}
+		return true;
+	}
+	
+	
+	
 	
 	/**
 	 * Set this matrix to be a zero matrix.
@@ -291,26 +291,44 @@ public final class Quat implements VectorComponents
      */
 	public static void calculateEulerRotationQuat(Angles3D aAngles, Vec4 u, Vec4 v, Vec4 w, Quat aResult)
 	{
-		Vec4 newU = new Vec4(u);
-		newU.multEq((float)Math.sin(aAngles.iAngleX * 0.5));
-		
-		Vec4 newV = new Vec4(v);
-		newV.multEq((float)Math.sin(aAngles.iAngleY * 0.5));
-
-		Vec4 newW = new Vec4(w);
-		newW.multEq((float)Math.sin(aAngles.iAngleZ * 0.5));
-
-		Quat qx = new Quat( Math.cos(aAngles.iAngleX * 0.5), newU );
-		Quat qy = new Quat( Math.cos(aAngles.iAngleY * 0.5), newV );
-		Quat qz = new Quat( Math.cos(aAngles.iAngleZ * 0.5), newW );
-		
+		calculateEulerRotationQuat(aAngles.iAngleX, aAngles.iAngleY, aAngles.iAngleZ, 
+				u, v, w, aResult, new Quat());
+	}
+	
+	
+	
+	
+    /**
+     * Get a rotation quaternion for the given 3D Euler angles around the
+     * given axis vectors, using the supplied quaternion as scratch space.
+     * 
+     * This does not allocate any objects.
+     *
+     * @param aAngleX the angle around the x-axis, in radians.
+     * @param aAngleY the angle around the y-axis, in radians.
+     * @param aAngleZ the angle around the z-axis, in radians.
+     * @param u a unit vector representing the x-axis.
+     * @param v a unit vector representing the y-axis.
+     * @param w a unit vector representing the z-axis.
+     * @param aResult will hold the result.
+     * @param aTempQuat scratch quaternion, overwritten.
+     */
+	public static void calculateEulerRotationQuat(float aAngleX, float aAngleY, float aAngleZ, 
+			Vec4 u, Vec4 v, Vec4 w, Quat aResult, Quat aTempQuat)
+	{
 		/*
 		 * q = qz * qy * qx
 		 */
-		qz.multEq(qy);
-		qz.multEq(qx);
+		aResult.set((float)Math.cos(aAngleZ * 0.5), w);
+		aResult.iVec.multEq((float)Math.sin(aAngleZ * 0.5));
 		
-		aResult.set(qz);
+		aTempQuat.set((float)Math.cos(aAngleY * 0.5), v);
+		aTempQuat.iVec.multEq((float)Math.sin(aAngleY * 0.5));
+		aResult.multEq(aTempQuat);
+		
+		aTempQuat.set((float)Math.cos(aAngleX * 0.5), u);
+		aTempQuat.iVec.multEq((float)Math.sin(aAngleX * 0.5));
+		aResult.multEq(aTempQuat);
 	}	
 	
 }
@@ -108,6 +108,23 @@ public final class Vec4 implements VectorComponents
 	
 	
 	
+	/**
+	 * Get whether this vector has exactly the same component values as 
+	 * another.
+	 * @param aVec the other vector.
+	 * @return true if so; false otherwise.
+	 */
+	public boolean equalTo(Vec4 aVec)
+	{
+		return val[_X_] == aVec.val[_X_] 
+				&& val[_Y_] == aVec.val[_Y_] 
+				&& val[_Z_] == aVec.val[_Z_] 
+				&& val[_W_] == aVec.val[_W_];
+	}
+	
+	
+	
+	
 	/**
 	 * Get the length of this vector.
 	 * 
@@ -308,15 +325,39 @@ public final class Vec4 implements VectorComponents
 	public static void calculateSurfaceNormal(
 			Vec4 aVec1, Vec4 aVec2, Vec4 aVec3, 
 			Vec4 aResultVector)
+	{
+		calculateSurfaceNormal(aVec1, aVec2, aVec3, aResultVector, 
+				new Vec4(), new Vec4());
+	}
+	
+	
+	
+	/**
+	 * Calculate the surface normal for the plane represented by the 3 
+	 * given points, using the supplied vectors as scratch space.
+	 * 
+	 * This does not allocate any objects and is thus suitable for use 
+	 * within per-triangle loops.
+	 * 
+	 * @param aVec1 the first point on the plane.
+	 * @param aVec2 the second point on the plane.
+	 * @param aVec3 the third point on the plane.
+	 * @param aResultVector the vector to store the result in.
+	 * @param aTempEdge1 scratch vector, overwritten.
+	 * @param aTempEdge2 scratch vector, overwritten.
+	 */
+	public static void calculateSurfaceNormal(
+			Vec4 aVec1, Vec4 aVec2, Vec4 aVec3, 
+			Vec4 aResultVector, Vec4 aTempEdge1, Vec4 aTempEdge2)
 	{
         // calculate normal for this polygon
-		Vec4 edge1 = new Vec4(aVec2);
-		edge1.minusEq(aVec1);
+		aTempEdge1.set(aVec2);
+		aTempEdge1.minusEq(aVec1);
 		
-		Vec4 edge2 = new Vec4(aVec3);
-		edge2.minusEq(aVec2);
+		aTempEdge2.set(aVec3);
+		aTempEdge2.minusEq(aVec2);
 		
-		calculateCrossProduct(edge2, edge1, aResultVector);
+		calculateCrossProduct(aTempEdge2, aTempEdge1, aResultVector);
 		aResultVector.normalise();
 	}
 	
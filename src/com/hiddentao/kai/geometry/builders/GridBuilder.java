@@ -0,0 +1,123 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.geometry.builders;
+
+
+import com.hiddentao.kai.geometry.Triangle3D;
+import com.hiddentao.kai.geometry.Vec4;
+import com.hiddentao.kai.geometry.VectorComponents;
+import com.hiddentao.kai.geometry.Vertex3D;
+import com.hiddentao.kai.nodes.Mesh;
+import com.hiddentao.utils.collections.DynamicArray;
+
+
+/**
+ * Class used to build flat rectangular grids of triangles.
+ * 
+ * The grid lies in the x-y plane, facing towards +z. Neighbouring cells 
+ * share their vertices.
+ */
+public final class GridBuilder implements VectorComponents
+{
+	private GridBuilder() {}
+	
+	
+	
+	/**
+	 * Build a grid.
+	 * 
+	 * @param aCentre the centre of the grid.
+	 * @param aWidth the width of the grid. Must be positive.
+	 * @param aHeight the height of the grid. Must be positive.
+	 * @param aColumns the no. of cells across. Must be >= 1.
+	 * @param aRows the no. of cells down. Must be >= 1.
+	 * 
+	 * @return a non-null array of 2 x aColumns x aRows {@link Triangle3D}s.
+	 * 
+	 * @throws IllegalArgumentException if there are no cells.
+	 */
+	public static DynamicArray<Triangle3D> buildPolygons(Vec4 aCentre, 
+			float aWidth, float aHeight, int aColumns, int aRows)
+	{
+		if (1 > aColumns || 1 > aRows)
+		{
+			throw new IllegalArgumentException("Invalid grid size: " + aColumns + "x" + aRows);
+		}
+		
+		final float left = aCentre.val[_X_] - aWidth * 0.5f;
+		final float top = aCentre.val[_Y_] + aHeight * 0.5f;
+		final float cellWidth = aWidth / aColumns;
+		final float cellHeight = aHeight / aRows;
+		
+		/* construct vertices, row by row from top-left */
+		
+		Vertex3D[] vertices = new Vertex3D[(aColumns + 1) * (aRows + 1)];
+		Vec4 vec = new Vec4(0, 0, aCentre.val[_Z_], 1);
+		for (int row=0; row<=aRows; ++row)
+		{
+			vec.val[_Y_] = top - row * cellHeight;
+			for (int col=0; col<=aColumns; ++col)
+			{
+				vec.val[_X_] = left + col * cellWidth;
+				vertices[row * (aColumns + 1) + col] = new Vertex3D(vec);
+			}
+		}
+		
+		/* construct faces */
+		
+		DynamicArray<Triangle3D> faces = new DynamicArray<Triangle3D>(
+				FaceBuilder.getExpectedNumberOfTriangles(4) * aColumns * aRows
+				);
+		for (int row=0; row<aRows; ++row)
+		{
+			for (int col=0; col<aColumns; ++col)
+			{
+				final int topLeft = row * (aColumns + 1) + col;
+				final int bottomLeft = topLeft + aColumns + 1;
+				faces.addAll(FaceBuilder.buildPolygons(
+						vertices[topLeft],
+						vertices[topLeft + 1],
+						vertices[bottomLeft + 1],
+						vertices[bottomLeft])
+						);
+			}
+		}
+		
+		return faces;
+	}
+	
+	
+	
+	/**
+	 * Build a grid.
+	 * 
+	 * @param aCentre the centre of the grid.
+	 * @param aWidth the width of the grid. Must be positive.
+	 * @param aHeight the height of the grid. Must be positive.
+	 * @param aColumns the no. of cells across. Must be >= 1.
+	 * @param aRows the no. of cells down. Must be >= 1.
+	 * 
+	 * @return a non-null {@link Mesh} representing the grid.
+	 */
+	public static Mesh buildMesh(Vec4 aCentre, 
+			float aWidth, float aHeight, int aColumns, int aRows)
+	{
+		Mesh mesh = new Mesh();
+		mesh.addPolygons(buildPolygons(aCentre, aWidth, aHeight, aColumns, aRows));
+		mesh.calculateVertexNormals();
+		return mesh;
+	}
+}
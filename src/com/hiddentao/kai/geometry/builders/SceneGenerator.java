@@ -0,0 +1,358 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.geometry.builders;
+
+
+import java.awt.Color;
+import java.util.Random;
+
+import com.hiddentao.kai.geometry.Vec4;
+import com.hiddentao.kai.geometry.VectorComponents;
+import com.hiddentao.kai.nodes.DirectionalLight;
+import com.hiddentao.kai.nodes.Mesh;
+import com.hiddentao.kai.nodes.Node;
+import com.hiddentao.kai.nodes.NodeGroup;
+import com.hiddentao.kai.nodes.Translation;
+
+
+/**
+ * Class used to build parameterised test scenes programmatically.
+ * 
+ * This is intended for benchmarks and headless tests which need scenes of 
+ * a known size and shape. The same {@link Params} always produce the same 
+ * scene.
+ * 
+ * A generated scene consists of a {@link DirectionalLight} pointing 
+ * down the z-axis, underneath which are:
+ * <ul>
+ * <li>{@link Params#numMeshes} meshes scattered randomly in a cube of 
+ * side {@link Params#spread} around the origin, each placed by its own 
+ * {@link Translation}. The translations are arranged in a tree according 
+ * to {@link Params#branching}.</li>
+ * <li>{@link Params#layers} screen-filling grids stacked one behind the 
+ * other, for controlling depth complexity. These assume the default 
+ * {@link com.hiddentao.kai.renderer.Camera} set up.</li>
+ * </ul>
+ */
+public final class SceneGenerator implements VectorComponents
+{
+	/**
+	 * The type of mesh to generate.
+	 */
+	public static enum Shape
+	{
+		/** A cube, always 12 triangles. */
+		CUBE,
+		/** A flat grid facing the camera. */
+		GRID,
+		/** A sphere. */
+		SPHERE
+	}
+	
+	
+	
+	/**
+	 * The parameters for a generated scene.
+	 */
+	public static final class Params
+	{
+		/**
+		 * The no. of meshes.
+		 */
+		public int numMeshes = 100;
+		/**
+		 * How the meshes are arranged. 0 places them all under a single 
+		 * group (wide); 1 places each one underneath the previous one 
+		 * (deep); anything higher builds a tree in which each node has up 
+		 * to this many children.
+		 */
+		public int branching = 0;
+		/**
+		 * The type of mesh to generate.
+		 */
+		public Shape shape = Shape.CUBE;
+		/**
+		 * The approximate no. of triangles per mesh. Ignored for cubes.
+		 */
+		public int trianglesPerMesh = 12;
+		/**
+		 * The width of each mesh.
+		 */
+		public float meshSize = 0.1f;
+		/**
+		 * The width of the cube within which meshes get placed.
+		 */
+		public float spread = 1.6f;
+		/**
+		 * The no. of screen-filling layers.
+		 */
+		public int layers = 0;
+		/**
+		 * The approximate no. of triangles per layer.
+		 */
+		public int trianglesPerLayer = 2;
+		/**
+		 * The distance between successive layers.
+		 */
+		public float layerSpacing = 0.1f;
+		/**
+		 * Whether layers get drawn furthest first. This is the worst case 
+		 * for overdraw since every layer then overwrites the one before.
+		 */
+		public boolean layersBackToFront = false;
+		/**
+		 * The seed for positions and colours.
+		 */
+		public long seed = 1;
+	}
+	
+	
+	/**
+	 * Distance from the default camera position to the origin.
+	 */
+	private static final float EYE_DISTANCE = 2;
+	
+	
+	
+	private SceneGenerator() {}
+	
+	
+	
+	/**
+	 * Get parameters for a scene made up of lots of tiny triangles.
+	 * @return a non-null instance.
+	 */
+	public static Params tinyTriangles()
+	{
+		Params params = new Params();
+		params.numMeshes = 200;
+		params.shape = Shape.SPHERE;
+		params.trianglesPerMesh = 200;
+		params.meshSize = 0.05f;
+		return params;
+	}
+	
+	
+	
+	/**
+	 * Get parameters for a scene made up of a few large triangles.
+	 * @return a non-null instance.
+	 */
+	public static Params largeTriangles()
+	{
+		Params params = new Params();
+		params.numMeshes = 20;
+		params.shape = Shape.GRID;
+		params.trianglesPerMesh = 2;
+		params.meshSize = 0.8f;
+		return params;
+	}
+	
+	
+	
+	/**
+	 * Get parameters for a scene made up only of screen-filling layers.
+	 * @param aLayers the no. of layers, i.e. the depth complexity.
+	 * @return a non-null instance.
+	 */
+	public static Params screenFilling(int aLayers)
+	{
+		Params params = new Params();
+		params.numMeshes = 0;
+		params.layers = aLayers;
+		return params;
+	}
+	
+	
+	
+	/**
+	 * Generate a scene.
+	 * 
+	 * @param aParams the scene parameters.
+	 * @return the root node of the scene.
+	 * 
+	 * @throws IllegalArgumentException if a parameter is out of range.
+	 */
+	public static Node generate(Params aParams)
+	{
+		if (0 > aParams.numMeshes || 0 > aParams.branching || 0 > aParams.layers)
+		{
+			throw new IllegalArgumentException("Counts must not be negative");
+		}
+		
+		Random random = new Random(aParams.seed);
+		DirectionalLight root = new DirectionalLight(0, 0, 1);
+		root.setName("scene");
+		
+		if (0 < aParams.numMeshes)
+		{
+			root.attachChild(buildMeshes(aParams, random));
+		}
+		if (0 < aParams.layers)
+		{
+			root.attachChild(buildLayers(aParams, random));
+		}
+		
+		return root;
+	}
+	
+	
+	
+	/**
+	 * Build the scattered meshes.
+	 * @return the node under which they all sit.
+	 */
+	private static Node buildMeshes(Params aParams, Random aRandom)
+	{
+		final int count = aParams.numMeshes;
+		Translation[] nodes = new Translation[count];
+		Vec4[] positions = new Vec4[count];
+		Vec4 origin = new Vec4(0, 0, 0, 1);
+		
+		NodeGroup group = new NodeGroup();
+		group.setName("meshes");
+		
+		for (int i=0; i<count; ++i)
+		{
+			positions[i] = new Vec4(
+					(aRandom.nextFloat() - 0.5f) * aParams.spread, 
+					(aRandom.nextFloat() - 0.5f) * aParams.spread, 
+					(aRandom.nextFloat() - 0.5f) * aParams.spread, 
+					0);
+			
+			Mesh mesh = buildMesh(aParams, origin);
+			mesh.setColor(randomColor(aRandom));
+			mesh.setName("mesh" + i);
+			
+			// translations are relative to the parent's position
+			int parent = -1;
+			if (1 == aParams.branching)
+			{
+				parent = i - 1;
+			}
+			else if (1 < aParams.branching && 0 < i)
+			{
+				parent = (i - 1) / aParams.branching;
+			}
+			
+			nodes[i] = new Translation(
+					0 > parent ? positions[i] : positions[i].minus(positions[parent])
+					);
+			nodes[i].attachChild(mesh);
+			
+			if (0 > parent)
+			{
+				group.attachChild(nodes[i]);
+			}
+			else
+			{
+				nodes[parent].attachChild(nodes[i]);
+			}
+		}
+		
+		return group;
+	}
+	
+	
+	
+	/**
+	 * Build a single mesh of the configured shape.
+	 */
+	private static Mesh buildMesh(Params aParams, Vec4 aCentre)
+	{
+		final int triangles = Math.max(2, aParams.trianglesPerMesh);
+		switch (aParams.shape)
+		{
+			case GRID:
+				return buildGrid(aCentre, aParams.meshSize, triangles);
+			case SPHERE:
+				// slices x stacks, with half as many stacks as slices
+				int slices = Math.max(3, (int)Math.round(Math.sqrt(triangles)) + 1);
+				int stacks = Math.max(2, slices / 2);
+				return SphereBuilder.buildMesh(aCentre, aParams.meshSize * 0.5f, slices, stacks);
+			default:
+				return CubeBuilder.buildMesh(aCentre, aParams.meshSize);
+		}
+	}
+	
+	
+	
+	/**
+	 * Build a square grid of roughly the given no. of triangles.
+	 */
+	private static Mesh buildGrid(Vec4 aCentre, float aSize, int aTriangles)
+	{
+		final int cells = Math.max(1, aTriangles / 2);
+		final int columns = (int)Math.ceil(Math.sqrt(cells));
+		final int rows = (cells + columns - 1) / columns;
+		return GridBuilder.buildMesh(aCentre, aSize, aSize, columns, rows);
+	}
+	
+	
+	
+	/**
+	 * Build the screen-filling layers.
+	 * 
+	 * Each layer is attached as a child of the one drawn before it since 
+	 * that is the only way to guarantee the order in which they get 
+	 * traversed.
+	 * 
+	 * @return the first layer to be drawn.
+	 */
+	private static Node buildLayers(Params aParams, Random aRandom)
+	{
+		Node first = null;
+		Node previous = null;
+		for (int i=0; i<aParams.layers; ++i)
+		{
+			final int layer = aParams.layersBackToFront ? aParams.layers - 1 - i : i;
+			final float z = -layer * aParams.layerSpacing;
+			
+			// big enough to cover the view frustum at this depth
+			final float size = 4 * (EYE_DISTANCE - z);
+			Mesh mesh = buildGrid(new Vec4(0, 0, z, 1), size, 
+					Math.max(2, aParams.trianglesPerLayer));
+			mesh.setColor(randomColor(aRandom));
+			mesh.setName("layer" + layer);
+			
+			if (null == previous)
+			{
+				first = mesh;
+			}
+			else
+			{
+				previous.attachChild(mesh);
+			}
+			previous = mesh;
+		}
+		
+		return first;
+	}
+	
+	
+	
+	/**
+	 * Get a random, reasonably bright colour.
+	 */
+	private static Color randomColor(Random aRandom)
+	{
+		return new Color(
+				100 + aRandom.nextInt(150), 
+				100 + aRandom.nextInt(150), 
+				100 + aRandom.nextInt(150)
+				);
+	}
+}
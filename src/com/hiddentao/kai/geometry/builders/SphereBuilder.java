@@ -0,0 +1,161 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.geometry.builders;
+
+
+import com.hiddentao.kai.geometry.Triangle3D;
+import com.hiddentao.kai.geometry.Vec4;
+import com.hiddentao.kai.geometry.VectorComponents;
+import com.hiddentao.kai.geometry.Vertex3D;
+import com.hiddentao.kai.nodes.Mesh;
+import com.hiddentao.utils.collections.DynamicArray;
+
+
+/**
+ * Class used to build spheres out of triangles.
+ * 
+ * The sphere is split into slices (like the segments of an orange) and 
+ * stacks (like lines of latitude). Each stack is a ring of quads, except 
+ * for the top and bottom ones which are fans of triangles around the poles.
+ */
+public final class SphereBuilder implements VectorComponents
+{
+	private SphereBuilder() {}
+	
+	
+	
+	/**
+	 * Build a sphere.
+	 * 
+	 * @param aCentre the centre of the sphere.
+	 * @param aRadius the radius of the sphere. Must be positive.
+	 * @param aSlices the no. of slices around the vertical axis. Must be >= 3.
+	 * @param aStacks the no. of stacks from top to bottom. Must be >= 2.
+	 * 
+	 * @return a non-null array of {@link #getNumberOfTriangles(int, int)} 
+	 * {@link Triangle3D}s.
+	 * 
+	 * @throws IllegalArgumentException if there are too few slices or stacks.
+	 */
+	public static DynamicArray<Triangle3D> buildPolygons(Vec4 aCentre, 
+			float aRadius, int aSlices, int aStacks)
+	{
+		if (3 > aSlices || 2 > aStacks)
+		{
+			throw new IllegalArgumentException("Invalid sphere size: " + aSlices + " slices x " + aStacks + " stacks");
+		}
+		
+		final float cx = aCentre.val[_X_];
+		final float cy = aCentre.val[_Y_];
+		final float cz = aCentre.val[_Z_];
+		
+		/* construct vertices: the poles, then each ring from the top down */
+		
+		Vertex3D top = new Vertex3D(new Vec4(cx, cy + aRadius, cz, 1));
+		Vertex3D bottom = new Vertex3D(new Vec4(cx, cy - aRadius, cz, 1));
+		
+		Vertex3D[][] rings = new Vertex3D[aStacks - 1][aSlices];
+		Vec4 vec = new Vec4();
+		for (int stack=1; stack<aStacks; ++stack)
+		{
+			final double latitude = Math.PI * stack / aStacks;
+			final float y = (float)Math.cos(latitude) * aRadius;
+			final float ringRadius = (float)Math.sin(latitude) * aRadius;
+			
+			for (int slice=0; slice<aSlices; ++slice)
+			{
+				// going round towards +x when viewed from +z
+				final double longitude = 2 * Math.PI * slice / aSlices;
+				vec.set(cx + (float)Math.sin(longitude) * ringRadius, 
+						cy + y, 
+						cz + (float)Math.cos(longitude) * ringRadius, 
+						1);
+				rings[stack - 1][slice] = new Vertex3D(vec);
+			}
+		}
+		
+		/* construct faces, clockwise when viewed from outside */
+		
+		DynamicArray<Triangle3D> faces = new DynamicArray<Triangle3D>(
+				getNumberOfTriangles(aSlices, aStacks)
+				);
+		for (int slice=0; slice<aSlices; ++slice)
+		{
+			final int next = (slice + 1) % aSlices;
+			
+			// top cap
+			faces.addAll(FaceBuilder.buildPolygons(
+					top, 
+					rings[0][next], 
+					rings[0][slice])
+					);
+			
+			// quads in between
+			for (int ring=0; ring<aStacks - 2; ++ring)
+			{
+				faces.addAll(FaceBuilder.buildPolygons(
+						rings[ring][slice], 
+						rings[ring][next], 
+						rings[ring + 1][next], 
+						rings[ring + 1][slice])
+						);
+			}
+			
+			// bottom cap
+			faces.addAll(FaceBuilder.buildPolygons(
+					rings[aStacks - 2][slice], 
+					rings[aStacks - 2][next], 
+					bottom)
+					);
+		}
+		
+		return faces;
+	}
+	
+	
+	
+	/**
+	 * Build a sphere.
+	 * 
+	 * @param aCentre the centre of the sphere.
+	 * @param aRadius the radius of the sphere. Must be positive.
+	 * @param aSlices the no. of slices around the vertical axis. Must be >= 3.
+	 * @param aStacks the no. of stacks from top to bottom. Must be >= 2.
+	 * 
+	 * @return a non-null {@link Mesh} representing the sphere.
+	 */
+	public static Mesh buildMesh(Vec4 aCentre, float aRadius, int aSlices, int aStacks)
+	{
+		Mesh mesh = new Mesh();
+		mesh.addPolygons(buildPolygons(aCentre, aRadius, aSlices, aStacks));
+		mesh.calculateVertexNormals();
+		return mesh;
+	}
+	
+	
+	
+	/**
+	 * Get the no. of triangles a sphere will be built from.
+	 * 
+	 * @param aSlices the no. of slices around the vertical axis.
+	 * @param aStacks the no. of stacks from top to bottom.
+	 * @return an integer value.
+	 */
+	public static int getNumberOfTriangles(int aSlices, int aStacks)
+	{
+		return 2 * aSlices * (aStacks - 1);
+	}
+}
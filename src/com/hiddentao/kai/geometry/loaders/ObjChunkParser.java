@@ -0,0 +1,421 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.geometry.loaders;
+
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.Callable;
+
+
+/**
+ * Parses the vertices and faces out of one chunk of a Wavefront OBJ file.
+ * 
+ * A chunk always starts at the beginning of a line. Only vertex positions 
+ * (<code>v</code>) and faces (<code>f</code>) are read; everything else 
+ * is skipped. Faces with more than 3 vertices are split into a fan of 
+ * triangles and the winding is flipped to clockwise, as used by 
+ * {@link com.hiddentao.kai.nodes.Mesh}.
+ * 
+ * Numbers are parsed straight out of the buffer without creating any 
+ * strings. This may differ from {@link Float#parseFloat(String)} by a 
+ * unit in the last place for numbers with very many digits.
+ */
+final class ObjChunkParser implements Callable<ObjChunkParser>
+{
+	/**
+	 * Exact powers of ten representable by a double.
+	 */
+	private static final double[] POW10 = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 
+		1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+	
+	/**
+	 * Max. no. of significant digits accumulated in a long.
+	 */
+	private static final int MAX_DIGITS = 18;
+	
+	
+	private final ByteBuffer iBuffer;
+	private final long iFileOffset;
+	private final int iEnd;
+	private int iPos = 0;
+	
+	/** Vertex positions, as x,y,z triples. */
+	float[] iPositions;
+	int iNumVertices = 0;
+	
+	/** 
+	 * Triangle vertex indices. Zero-based, and relative to the start of the 
+	 * file except for those listed in {@link #iRelative}.
+	 */
+	int[] iIndices;
+	int iNumTriangles = 0;
+	
+	/**
+	 * Indices given relative to the end of the vertex list, as pairs of 
+	 * (position in {@link #iIndices}, index relative to the start of this 
+	 * chunk). These can only be resolved once the no. of vertices in 
+	 * the preceding chunks is known.
+	 */
+	int[] iRelative = new int[16];
+	int iNumRelative = 0;
+	
+	/** Indices of the face currently being parsed. */
+	private int[] iFace = new int[16];
+	/** Whether each of those is relative to the start of this chunk. */
+	private boolean[] iFaceRelative = new boolean[16];
+	
+	
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param aBuffer the chunk, from its position to its limit.
+	 * @param aFileOffset the offset of the chunk within the file, for 
+	 * error messages.
+	 */
+	ObjChunkParser(ByteBuffer aBuffer, long aFileOffset)
+	{
+		iBuffer = aBuffer;
+		iFileOffset = aFileOffset;
+		iPos = aBuffer.position();
+		iEnd = aBuffer.limit();
+		
+		// roughly 30 bytes per vertex line and 2 faces per vertex
+		final int estimate = Math.max(16, (iEnd - iPos) / 90);
+		iPositions = new float[estimate * 3];
+		iIndices = new int[estimate * 6];
+	}
+	
+	
+	
+	public ObjChunkParser call() throws IOException
+	{
+		while (iPos < iEnd)
+		{
+			skipBlanks();
+			if (iPos + 1 < iEnd && isBlank(iBuffer.get(iPos + 1)))
+			{
+				final byte type = iBuffer.get(iPos);
+				if ('v' == type)
+				{
+					++iPos;
+					parseVertex();
+				}
+				else if ('f' == type)
+				{
+					++iPos;
+					parseFace();
+				}
+			}
+			skipLine();
+		}
+		
+		return this;
+	}
+	
+	
+	
+	private void parseVertex() throws IOException
+	{
+		if (iPositions.length < (iNumVertices + 1) * 3)
+			iPositions = grow(iPositions, (iNumVertices + 1) * 3);
+		
+		final int ix3 = iNumVertices * 3;
+		iPositions[ix3] = parseFloat();
+		iPositions[ix3+1] = parseFloat();
+		iPositions[ix3+2] = parseFloat();
+		++iNumVertices;
+	}
+	
+	
+	
+	private void parseFace() throws IOException
+	{
+		int count = 0;
+		int relative = 0;
+		while (true)
+		{
+			skipBlanks();
+			if (iPos >= iEnd || isEndOfLine(iBuffer.get(iPos)))
+				break;
+			
+			final int index = parseIndex();
+			if (iFace.length == count)
+			{
+				iFace = grow(iFace, count + 1);
+				boolean[] flags = new boolean[iFace.length];
+				System.arraycopy(iFaceRelative, 0, flags, 0, count);
+				iFaceRelative = flags;
+			}
+			
+			if (0 < index)
+			{
+				iFace[count] = index - 1;
+				iFaceRelative[count] = false;
+			}
+			else if (0 > index)
+			{
+				// may even be in a preceding chunk
+				iFace[count] = iNumVertices + index;
+				iFaceRelative[count] = true;
+				++relative;
+			}
+			else
+			{
+				throw error("Invalid vertex index 0");
+			}
+			++count;
+			
+			// skip texture and normal indices
+			while (iPos < iEnd && !isBlank(iBuffer.get(iPos)) && !isEndOfLine(iBuffer.get(iPos)))
+				++iPos;
+		}
+		
+		if (3 > count)
+			throw error("Face has less than 3 vertices");
+		
+		final int NUM_NEW = count - 2;
+		if (iIndices.length < (iNumTriangles + NUM_NEW) * 3)
+			iIndices = grow(iIndices, (iNumTriangles + NUM_NEW) * 3);
+		if (0 < relative && iRelative.length < (iNumRelative + NUM_NEW * 3) * 2)
+			iRelative = grow(iRelative, (iNumRelative + NUM_NEW * 3) * 2);
+		
+		// fan, with the winding flipped from anti-clockwise to clockwise
+		for (int i=1; i<=NUM_NEW; ++i)
+		{
+			final int ix3 = iNumTriangles * 3;
+			addIndex(ix3, 0);
+			addIndex(ix3 + 1, i + 1);
+			addIndex(ix3 + 2, i);
+			++iNumTriangles;
+		}
+	}
+	
+	
+	
+	/**
+	 * Store a vertex index of the current face, noting it if it is a 
+	 * relative one.
+	 * 
+	 * @param aSlot where to store it in {@link #iIndices}.
+	 * @param aFaceVertex which vertex of the face it is.
+	 */
+	private void addIndex(int aSlot, int aFaceVertex)
+	{
+		if (iFaceRelative[aFaceVertex])
+		{
+			final int ix2 = iNumRelative * 2;
+			iRelative[ix2] = aSlot;
+			iRelative[ix2+1] = iFace[aFaceVertex];
+			++iNumRelative;
+			iIndices[aSlot] = 0;
+		}
+		else
+		{
+			iIndices[aSlot] = iFace[aFaceVertex];
+		}
+	}
+	
+	
+	
+	/**
+	 * Parse a possibly signed integer.
+	 */
+	private int parseIndex() throws IOException
+	{
+		boolean negative = false;
+		byte b = iBuffer.get(iPos);
+		if ('-' == b || '+' == b)
+		{
+			negative = ('-' == b);
+			++iPos;
+		}
+		
+		final int start = iPos;
+		long value = 0;
+		while (iPos < iEnd)
+		{
+			b = iBuffer.get(iPos);
+			if ('0' > b || '9' < b)
+				break;
+			value = value * 10 + (b - '0');
+			if (Integer.MAX_VALUE < value)
+				throw error("Vertex index out of range");
+			++iPos;
+		}
+		
+		if (start == iPos)
+			throw error("Invalid vertex index");
+		
+		return (int)(negative ? -value : value);
+	}
+	
+	
+	
+	/**
+	 * Parse a floating point number in decimal or scientific notation.
+	 */
+	private float parseFloat() throws IOException
+	{
+		skipBlanks();
+		if (iPos >= iEnd)
+			throw error("Missing number");
+		
+		boolean negative = false;
+		byte b = iBuffer.get(iPos);
+		if ('-' == b || '+' == b)
+		{
+			negative = ('-' == b);
+			++iPos;
+		}
+		
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean seenDigit = false;
+		boolean seenPoint = false;
+		
+		while (iPos < iEnd)
+		{
+			b = iBuffer.get(iPos);
+			if ('0' <= b && '9' >= b)
+			{
+				seenDigit = true;
+				if (MAX_DIGITS > digits)
+				{
+					mantissa = mantissa * 10 + (b - '0');
+					if (0 < mantissa)
+						++digits;
+					if (seenPoint)
+						--exponent;
+				}
+				else if (!seenPoint)
+				{
+					// too many digits to keep, but they still count
+					++exponent;
+				}
+			}
+			else if ('.' == b && !seenPoint)
+			{
+				seenPoint = true;
+			}
+			else
+			{
+				break;
+			}
+			++iPos;
+		}
+		
+		if (!seenDigit)
+			throw error("Invalid number");
+		
+		if (iPos < iEnd && ('e' == b || 'E' == b))
+		{
+			++iPos;
+			boolean negativeExponent = false;
+			if (iPos < iEnd)
+			{
+				b = iBuffer.get(iPos);
+				if ('-' == b || '+' == b)
+				{
+					negativeExponent = ('-' == b);
+					++iPos;
+				}
+			}
+			
+			final int start = iPos;
+			int value = 0;
+			while (iPos < iEnd)
+			{
+				b = iBuffer.get(iPos);
+				if ('0' > b || '9' < b)
+					break;
+				if (1000 > value)
+					value = value * 10 + (b - '0');
+				++iPos;
+			}
+			if (start == iPos)
+				throw error("Invalid exponent");
+			
+			exponent += negativeExponent ? -value : value;
+		}
+		
+		double result = mantissa;
+		if (0 != mantissa && 0 != exponent)
+		{
+			if (0 < exponent)
+				result *= (exponent < POW10.length) ? POW10[exponent] : Math.pow(10, exponent);
+			else
+				result /= (-exponent < POW10.length) ? POW10[-exponent] : Math.pow(10, -exponent);
+		}
+		
+		return (float)(negative ? -result : result);
+	}
+	
+	
+	
+	private void skipBlanks()
+	{
+		while (iPos < iEnd && isBlank(iBuffer.get(iPos)))
+			++iPos;
+	}
+	
+	
+	private void skipLine()
+	{
+		while (iPos < iEnd && '\n' != iBuffer.get(iPos))
+			++iPos;
+		++iPos;
+	}
+	
+	
+	private static boolean isBlank(byte aByte)
+	{
+		return ' ' == aByte || '\t' == aByte || '\r' == aByte;
+	}
+	
+	
+	private static boolean isEndOfLine(byte aByte)
+	{
+		return '\n' == aByte || '#' == aByte;
+	}
+	
+	
+	private IOException error(String aMessage)
+	{
+		return new IOException(aMessage + " at byte " + (iFileOffset + iPos - iBuffer.position()));
+	}
+	
+	
+	
+	static float[] grow(float[] aArray, int aMinLength)
+	{
+		float[] array = new float[Math.max(aMinLength, aArray.length * 2)];
+		System.arraycopy(aArray, 0, array, 0, aArray.length);
+		return array;
+	}
+	
+	
+	static int[] grow(int[] aArray, int aMinLength)
+	{
+		int[] array = new int[Math.max(aMinLength, aArray.length * 2)];
+		System.arraycopy(aArray, 0, array, 0, aArray.length);
+		return array;
+	}
+}
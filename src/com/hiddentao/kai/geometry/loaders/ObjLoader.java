@@ -0,0 +1,283 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.geometry.loaders;
+
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hiddentao.kai.logging.Logger;
+import com.hiddentao.kai.nodes.Mesh;
+
+
+/**
+ * Loads meshes from Wavefront OBJ files.
+ * 
+ * The file is memory-mapped and split into chunks at line boundaries, 
+ * which are parsed on separate threads. The parsed vertices and faces are 
+ * then added to the mesh in one go, so large files load at close to the 
+ * speed they can be read from disk.
+ * 
+ * Only vertex positions and faces are read; texture co-ordinates, 
+ * normals, groups and materials are ignored. Vertex normals are 
+ * calculated once the mesh has been built. Polygons are assumed to be 
+ * convex and wound anti-clockwise, as is standard for OBJ files.
+ */
+public final class ObjLoader
+{
+	private static Logger LOG = Logger.getLogger(ObjLoader.class.getName());
+	
+	/**
+	 * Chunks smaller than this aren't worth parsing on another thread.
+	 */
+	private static final int MIN_CHUNK_SIZE = 1 << 20;
+	
+	/**
+	 * No. of chunks per thread, so that threads which finish early can 
+	 * pick up more work.
+	 */
+	private static final int CHUNKS_PER_THREAD = 4;
+	
+	private static final AtomicInteger THREAD_NUMBER = new AtomicInteger(0);
+	
+	
+	
+	private ObjLoader() {}
+	
+	
+	
+	/**
+	 * Load a mesh, using as many threads as there are processors.
+	 * 
+	 * @param aFile the OBJ file.
+	 * @return the mesh.
+	 * @throws IOException if the file can't be read or isn't valid.
+	 */
+	public static Mesh loadMesh(File aFile) throws IOException
+	{
+		return loadMesh(aFile, Runtime.getRuntime().availableProcessors());
+	}
+	
+	
+	
+	/**
+	 * Load a mesh.
+	 * 
+	 * @param aFile the OBJ file.
+	 * @param aNumThreads the max. no. of threads to parse with. Must be 
+	 * >= 1.
+	 * @return the mesh.
+	 * @throws IOException if the file can't be read or isn't valid.
+	 */
+	public static Mesh loadMesh(File aFile, int aNumThreads) throws IOException
+	{
+		if (1 > aNumThreads)
+			throw new IllegalArgumentException("Invalid thread count: " + aNumThreads);
+		
+		final long startTime = System.nanoTime();
+		
+		List<ObjChunkParser> parsers = null;
+		FileInputStream in = new FileInputStream(aFile);
+		try
+		{
+			parsers = parse(in.getChannel(), aNumThreads);
+		}
+		finally
+		{
+			in.close();
+		}
+		
+		/* work out where each chunk's vertices and triangles go */
+		
+		int numVertices = 0;
+		int numTriangles = 0;
+		for (ObjChunkParser parser : parsers)
+		{
+			if (Integer.MAX_VALUE / 3 - numVertices < parser.iNumVertices 
+					|| Integer.MAX_VALUE / 3 - numTriangles < parser.iNumTriangles)
+			{
+				throw new IOException("Too many vertices or faces in " + aFile);
+			}
+			numVertices += parser.iNumVertices;
+			numTriangles += parser.iNumTriangles;
+		}
+		
+		/* merge */
+		
+		float[] positions = new float[numVertices * 3];
+		int[] indices = new int[numTriangles * 3];
+		int vertexOffset = 0;
+		int indexOffset = 0;
+		for (ObjChunkParser parser : parsers)
+		{
+			System.arraycopy(parser.iPositions, 0, positions, vertexOffset * 3, parser.iNumVertices * 3);
+			System.arraycopy(parser.iIndices, 0, indices, indexOffset, parser.iNumTriangles * 3);
+			
+			// relative indices only make sense now we know where the chunk starts
+			for (int i=0; i<parser.iNumRelative * 2; i+=2)
+			{
+				indices[indexOffset + parser.iRelative[i]] = vertexOffset + parser.iRelative[i+1];
+			}
+			
+			vertexOffset += parser.iNumVertices;
+			indexOffset += parser.iNumTriangles * 3;
+		}
+		parsers = null;
+		
+		/* build */
+		
+		Mesh mesh = new Mesh();
+		try
+		{
+			mesh.addIndexedPolygons(positions, numVertices, indices, numTriangles);
+		}
+		catch (IllegalArgumentException e)
+		{
+			throw new IOException(e.getMessage() + " in " + aFile);
+		}
+		mesh.calculateVertexNormals();
+		mesh.setName(aFile.getName());
+		
+		if (LOG.isInfoEnabled())
+		{
+			LOG.info("Loaded " + aFile + ": " + numVertices + " vertices, " + numTriangles 
+					+ " triangles in " + (System.nanoTime() - startTime) / 1000000 + " ms");
+		}
+		
+		return mesh;
+	}
+	
+	
+	
+	/**
+	 * Split a file into chunks and parse them.
+	 * 
+	 * @return the parsed chunks, in file order.
+	 */
+	private static List<ObjChunkParser> parse(FileChannel aChannel, int aNumThreads) throws IOException
+	{
+		final long size = aChannel.size();
+		
+		// enough chunks to keep every thread busy, but none too small or 
+		// too big to map
+		long numChunks = Math.min((long)aNumThreads * CHUNKS_PER_THREAD, size / MIN_CHUNK_SIZE);
+		numChunks = Math.max(numChunks, size / (Integer.MAX_VALUE / 2) + 1);
+		
+		List<ObjChunkParser> parsers = new ArrayList<ObjChunkParser>();
+		long start = 0;
+		for (long i=1; i<=numChunks; ++i)
+		{
+			final long end = (i == numChunks) ? size : nextLineStart(aChannel, size * i / numChunks, size);
+			if (end > start)
+			{
+				MappedByteBuffer buffer = aChannel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+				parsers.add(new ObjChunkParser(buffer, start));
+				start = end;
+			}
+		}
+		
+		final int numThreads = Math.min(aNumThreads, parsers.size());
+		if (1 >= numThreads)
+		{
+			for (ObjChunkParser parser : parsers)
+			{
+				parser.call();
+			}
+			return parsers;
+		}
+		
+		ExecutorService executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory()
+		{
+			public Thread newThread(Runnable aRunnable)
+			{
+				Thread thread = new Thread(aRunnable, "kai-obj-loader-" + THREAD_NUMBER.incrementAndGet());
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		
+		try
+		{
+			List<Future<ObjChunkParser>> results = new ArrayList<Future<ObjChunkParser>>(parsers.size());
+			for (ObjChunkParser parser : parsers)
+			{
+				results.add(executor.submit(parser));
+			}
+			for (Future<ObjChunkParser> result : results)
+			{
+				result.get();
+			}
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+			throw new IOException("Interrupted whilst loading");
+		}
+		catch (ExecutionException e)
+		{
+			if (e.getCause() instanceof IOException)
+				throw (IOException)e.getCause();
+			throw new RuntimeException(e.getCause());
+		}
+		finally
+		{
+			executor.shutdownNow();
+		}
+		
+		return parsers;
+	}
+	
+	
+	
+	/**
+	 * Find the start of the line after the given position.
+	 * 
+	 * @return the offset of the line; or the file size if there isn't one.
+	 */
+	private static long nextLineStart(FileChannel aChannel, long aPos, long aSize) throws IOException
+	{
+		ByteBuffer buffer = ByteBuffer.allocate(4096);
+		long pos = aPos;
+		while (pos < aSize)
+		{
+			buffer.clear();
+			final int read = aChannel.read(buffer, pos);
+			if (0 >= read)
+				break;
+			
+			for (int i=0; i<read; ++i)
+			{
+				if ('\n' == buffer.get(i))
+					return pos + i + 1;
+			}
+			pos += read;
+		}
+		
+		return aSize;
+	}
+}
@@ -15,47 +15,46 @@
 package com.hiddentao.kai.geometry.util;
 
 import com.hiddentao.kai.geometry.Mat4;
-import com.hiddentao.kai.utils.HasStaticDataImpl;
 import com.hiddentao.utils.collections.DynamicArray;
 
 
 /**
  * A LIFO stack for holding matrices.
  * 
- * TODO: can we implement the stack in a more memory-efficient way? 
+ * The matrices are copied into storage which is kept and reused, so once the 
+ * stack has grown to its working depth pushing doesn't allocate anything.
+ * 
+ * A stack must only be used by one thread at a time.
  */
-public final class MatrixStack extends HasStaticDataImpl
+public final class MatrixStack
 {
-	private static MatrixStack iInstance = null;
-	
-	/** The stack of matrices */
+	/** Storage for the stack of matrices; only the first iSize are in use. */
 	private DynamicArray<Mat4> iStack = new DynamicArray<Mat4>(8,4);
+	private int iSize = 0;
 	
 	
-	private MatrixStack() {}
-	
-	public static MatrixStack getInstance()
-	{
-		if (null == iInstance)
-		{
-			iInstance = new MatrixStack();
-		}
-		return iInstance;
-	}
+	/**
+	 * Constructor - creates an empty stack.
+	 */
+	public MatrixStack() {}
 	
-	public void resetStaticData()
-	{
-		iInstance = null;
-	}
 	
 	
 	/**
 	 * Push a matrix onto the stack.
-	 * @param aMatrix a non-null matrix.
+	 * @param aMatrix a non-null matrix. It gets copied.
 	 */
 	public void push(Mat4 aMatrix)
 	{
-		iStack.add(new Mat4(aMatrix));
+		if (iSize < iStack.size())
+		{
+			iStack.get(iSize).set(aMatrix);
+		}
+		else
+		{
+			iStack.add(new Mat4(aMatrix));
+		}
+		++iSize;
 	}
 
 	
@@ -63,18 +62,40 @@ public final class MatrixStack extends HasStaticDataImpl
 	 * Pop the top matrix off the stack.
 	 * 
 	 * @return the non-null matrix removed from the top of the stack if 
-	 * successful.
+	 * successful. This gets reused by the stack, so it is only valid until 
+	 * the next call to {@link #push(Mat4)}.
 	 * 
 	 * @throws MatrixStackException if there are no items to pop.
 	 */
 	public Mat4 pop() throws MatrixStackException 
 	{
-		if (0 >= iStack.size())
+		if (0 >= iSize)
 		{
 			throw new MatrixStackException("There are no items available to pop.");
 		}
 		
-		return iStack.remove(iStack.size()-1);
+		return iStack.get(--iSize);
+	}
+	
+	
+	
+	/**
+	 * Get the no. of matrices on the stack.
+	 * @return a non-negative number.
+	 */
+	public int size()
+	{
+		return iSize;
+	}
+	
+	
+	
+	/**
+	 * Remove all matrices from the stack.
+	 */
+	public void clear()
+	{
+		iSize = 0;
 	}
 	
 	
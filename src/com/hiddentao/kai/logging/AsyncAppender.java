@@ -0,0 +1,487 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.logging;
+
+import java.io.PrintStream;
+import java.io.PrintWriter;
+import java.io.StringWriter;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.locks.LockSupport;
+
+
+/**
+ * Writes log records to the console on a background thread.
+ * 
+ * Logging threads copy each record into a preallocated ring buffer and 
+ * return straight away, without taking any locks or doing any I/O. A single 
+ * daemon thread drains the buffer in batches and writes each batch to 
+ * the console in one go.
+ * 
+ * If the buffer is full the record is dropped rather than blocking the 
+ * caller; the number of dropped records is reported once there is room 
+ * again. Runs of identical records (e.g. the same error every frame) are 
+ * written once, followed by a periodic "repeated N times" summary.
+ */
+public final class AsyncAppender implements LogAppender
+{
+	/** Default number of records which can be buffered. */
+	public static final int DEFAULT_CAPACITY = 1024;
+	
+	/** Maximum number of records written per console write. */
+	private static final int MAX_BATCH_SIZE = 256;
+	
+	/** How often a run of identical records gets summarised. */
+	private static final long REPEAT_SUMMARY_MILLIS = 1000;
+
+	/** How long the writer thread sleeps for when there is nothing to do. */
+	private static final long IDLE_PARK_NANOS = 100L * 1000 * 1000;
+	
+	private static final String LINE_SEPARATOR = System.getProperty("line.separator");
+	
+	/** Sequence no. of a slot which is being read out. */
+	private static final long TAKEN = -1;
+	
+	
+	/**
+	 * A slot in the ring buffer.
+	 */
+	private static final class Record
+	{
+		Level level;
+		String category;
+		String message;
+		Throwable throwable;
+	}
+	
+	
+	private final Record[] iRecords;
+	/** Per-slot sequence numbers, used to hand slots between threads. */
+	private final AtomicLongArray iSequences;
+	private final int iMask;
+	
+	/** Next position to be claimed by a logging thread. */
+	private final AtomicLong iTail = new AtomicLong(0);
+	/** Next position to be read by the writer thread. Only used by it. */
+	private long iHead = 0;
+	
+	private final AtomicLong iDroppedCount = new AtomicLong(0);
+	
+	private final Thread iThread;
+	private volatile boolean iRunning = true;
+	private volatile boolean iWriterWaiting = false;
+	
+	/** Used for any records which arrive after this has been closed. */
+	private final ConsoleAppender iFallback = new ConsoleAppender();
+
+	/* writer thread state */
+	private final StringBuilder iOutBuffer = new StringBuilder(4096);
+	private final StringBuilder iErrBuffer = new StringBuilder(1024);
+	private Level iLastLevel = null;
+	private String iLastCategory = null;
+	private String iLastMessage = null;
+	private Class<?> iLastThrowableClass = null;
+	private int iRepeatCount = 0;
+	private long iRepeatSummaryTime = 0;
+	
+	
+	
+	/**
+	 * Constructor - uses a buffer of {@link #DEFAULT_CAPACITY} records.
+	 */
+	public AsyncAppender()
+	{
+		this(DEFAULT_CAPACITY);
+	}
+	
+	
+	
+	/**
+	 * Constructor.
+	 * @param aCapacity the number of records which can be buffered. This 
+	 * gets rounded up to the next power of 2.
+	 */
+	public AsyncAppender(int aCapacity)
+	{
+		int capacity = 2;
+		while (capacity < aCapacity)
+		{
+			capacity <<= 1;
+		}
+		
+		iMask = capacity - 1;
+		iRecords = new Record[capacity];
+		iSequences = new AtomicLongArray(capacity);
+		for (int i=0; i<capacity; ++i)
+		{
+			iRecords[i] = new Record();
+			iSequences.set(i, i);
+		}
+		
+		iThread = new Thread(new Runnable() 
+		{
+			public void run()
+			{
+				writeLoop();
+			}
+		}, "kai-log");
+		iThread.setDaemon(true);
+		iThread.start();
+	}
+	
+	
+	
+	/**
+	 * Get the number of records dropped so far because the buffer was full 
+	 * and which have not yet been reported.
+	 * @return a non-negative number.
+	 */
+	public long getDroppedCount()
+	{
+		return iDroppedCount.get();
+	}
+	
+	
+	
+	public void append(Level aLevel, String aCategory, String aMessage, Throwable aThrowable)
+	{
+		if (!iRunning)
+		{
+			iFallback.append(aLevel, aCategory, aMessage, aThrowable);
+			return;
+		}
+		
+		// claim a slot
+		long pos = iTail.get();
+		int index;
+		while (true)
+		{
+			index = (int)(pos & iMask);
+			long diff = iSequences.get(index) - pos;
+			if (0 == diff)
+			{
+				if (iTail.compareAndSet(pos, pos + 1))
+					break;
+				pos = iTail.get();
+			}
+			else if (0 > diff)
+			{
+				// full
+				iDroppedCount.incrementAndGet();
+				return;
+			}
+			else
+			{
+				pos = iTail.get();
+			}
+		}
+		
+		Record r = iRecords[index];
+		r.level = aLevel;
+		r.category = aCategory;
+		r.message = aMessage;
+		r.throwable = aThrowable;
+		// publish
+		iSequences.set(index, pos + 1);
+		
+		// if closed meanwhile then the writer may already have finished, so 
+		// take the record back unless it has got to it first
+		if (!iRunning)
+		{
+			if (takeSlot(index, pos))
+			{
+				releaseSlot(index, pos);
+				iFallback.append(aLevel, aCategory, aMessage, aThrowable);
+			}
+			return;
+		}
+		
+		if (iWriterWaiting)
+		{
+			LockSupport.unpark(iThread);
+		}
+	}
+	
+	
+	
+	/**
+	 * Write out all buffered records and stop the writer thread.
+	 */
+	public void close()
+	{
+		if (!iRunning)
+			return;
+		
+		iRunning = false;
+		LockSupport.unpark(iThread);
+		try
+		{
+			iThread.join(1000);
+		}
+		catch (InterruptedException e)
+		{
+			Thread.currentThread().interrupt();
+		}
+	}
+	
+	
+	
+	
+	/**
+	 * The writer thread's main loop.
+	 */
+	private void writeLoop()
+	{
+		while (true)
+		{
+			int written = drainBatch();
+			
+			long now = System.currentTimeMillis();
+			if (0 < iRepeatCount && now >= iRepeatSummaryTime)
+			{
+				appendRepeatSummary(now);
+			}
+			
+			long dropped = iDroppedCount.getAndSet(0);
+			if (0 < dropped)
+			{
+				appendLine(Level.WARN, AsyncAppender.class.getName(), 
+						dropped + " log records dropped, buffer full");
+			}
+			
+			flushBuffers();
+			
+			if (0 == written)
+			{
+				if (!iRunning)
+					break;
+				
+				iWriterWaiting = true;
+				if (iRunning && !hasPending())
+				{
+					LockSupport.parkNanos(IDLE_PARK_NANOS);
+				}
+				iWriterWaiting = false;
+			}
+		}
+		
+		drainRemaining();
+		if (0 < iRepeatCount)
+		{
+			appendRepeatSummary(System.currentTimeMillis());
+		}
+		flushBuffers();
+	}
+	
+	
+	
+	/**
+	 * Get whether there is a record waiting to be read.
+	 */
+	private boolean hasPending()
+	{
+		return iSequences.get((int)(iHead & iMask)) == iHead + 1;
+	}
+	
+	
+	
+	/**
+	 * Read up to {@link #MAX_BATCH_SIZE} records off the ring buffer and 
+	 * format them into the output buffers.
+	 * @return the number of records read.
+	 */
+	private int drainBatch()
+	{
+		int count = 0;
+		while (MAX_BATCH_SIZE > count && hasPending())
+		{
+			readRecord(iHead);
+			++iHead;
+			++count;
+		}
+		return count;
+	}
+	
+	
+	
+	/**
+	 * Read any records still left on the ring buffer once this has been 
+	 * closed.
+	 * 
+	 * Unlike {@link #drainBatch()} this doesn't stop at the first slot 
+	 * which hasn't been published, since a logging thread which was 
+	 * interrupted by the close may have taken its record back, or may yet 
+	 * do so.
+	 */
+	private void drainRemaining()
+	{
+		final long tail = iTail.get();
+		for (; iHead < tail; ++iHead)
+		{
+			readRecord(iHead);
+		}
+	}
+	
+	
+	
+	/**
+	 * Read the record at the given position and format it into the output 
+	 * buffers, unless it is not published or the logging thread took it 
+	 * back.
+	 */
+	private void readRecord(long aPos)
+	{
+		if (!takeSlot((int)(aPos & iMask), aPos))
+			return;
+		
+		Record r = iRecords[(int)(aPos & iMask)];
+		Level level = r.level;
+		String category = r.category;
+		String message = r.message;
+		Throwable throwable = r.throwable;
+		releaseSlot((int)(aPos & iMask), aPos);
+		
+		appendRecord(level, category, message, throwable);
+	}
+	
+	
+	
+	/**
+	 * Take ownership of a published record.
+	 * 
+	 * Both the writer thread and, after {@link #close()}, the thread which 
+	 * published the record may try this; only one of them succeeds.
+	 * 
+	 * @return true if taken.
+	 */
+	private boolean takeSlot(int aIndex, long aPos)
+	{
+		return iSequences.compareAndSet(aIndex, aPos + 1, TAKEN);
+	}
+	
+	
+	
+	/**
+	 * Hand a taken slot back to the logging threads.
+	 */
+	private void releaseSlot(int aIndex, long aPos)
+	{
+		Record r = iRecords[aIndex];
+		r.category = null;
+		r.message = null;
+		r.throwable = null;
+		iSequences.set(aIndex, aPos + iRecords.length);
+	}
+	
+	
+	
+	/**
+	 * Format a record into the output buffers, unless it's a repeat of the 
+	 * previous one.
+	 */
+	private void appendRecord(Level aLevel, String aCategory, String aMessage, Throwable aThrowable)
+	{
+		Class<?> throwableClass = (null == aThrowable ? null : aThrowable.getClass());
+		
+		if (aLevel == iLastLevel 
+				&& throwableClass == iLastThrowableClass
+				&& aCategory.equals(iLastCategory)
+				&& (null == aMessage ? null == iLastMessage : aMessage.equals(iLastMessage)))
+		{
+			++iRepeatCount;
+			return;
+		}
+		
+		long now = System.currentTimeMillis();
+		if (0 < iRepeatCount)
+		{
+			appendRepeatSummary(now);
+		}
+		
+		iLastLevel = aLevel;
+		iLastCategory = aCategory;
+		iLastMessage = aMessage;
+		iLastThrowableClass = throwableClass;
+		iRepeatSummaryTime = now + REPEAT_SUMMARY_MILLIS;
+		
+		StringBuilder buf = getBuffer(aLevel);
+		ConsoleAppender.format(buf, aLevel, aCategory, aMessage, aThrowable);
+		buf.append(LINE_SEPARATOR);
+		
+		if (null != aThrowable)
+		{
+			StringWriter trace = new StringWriter();
+			aThrowable.printStackTrace(new PrintWriter(trace));
+			buf.append(trace.getBuffer());
+		}
+	}
+	
+	
+	
+	/**
+	 * Write out how many times the previous record got repeated.
+	 */
+	private void appendRepeatSummary(long aNow)
+	{
+		appendLine(iLastLevel, iLastCategory, 
+				"Last message repeated " + iRepeatCount + " times");
+		iRepeatCount = 0;
+		iRepeatSummaryTime = aNow + REPEAT_SUMMARY_MILLIS;
+	}
+	
+	
+	
+	/**
+	 * Format a line of output generated by this appender itself.
+	 */
+	private void appendLine(Level aLevel, String aCategory, String aMessage)
+	{
+		StringBuilder buf = getBuffer(aLevel);
+		ConsoleAppender.format(buf, aLevel, aCategory, aMessage, null);
+		buf.append(LINE_SEPARATOR);
+	}
+	
+	
+	
+	/**
+	 * Get the output buffer for the given level.
+	 */
+	private StringBuilder getBuffer(Level aLevel)
+	{
+		return (Level.ERROR.intValue() <= aLevel.intValue() ? iErrBuffer : iOutBuffer);
+	}
+	
+	
+	
+	/**
+	 * Write the output buffers to the console.
+	 */
+	private void flushBuffers()
+	{
+		flushBuffer(iOutBuffer, System.out);
+		flushBuffer(iErrBuffer, System.err);
+	}
+	
+	
+	private static void flushBuffer(StringBuilder aBuffer, PrintStream aStream)
+	{
+		if (0 < aBuffer.length())
+		{
+			aStream.print(aBuffer);
+			aStream.flush();
+			aBuffer.setLength(0);
+		}
+	}
+}
@@ -0,0 +1,89 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.logging;
+
+import java.io.PrintStream;
+
+
+/**
+ * Writes log records to the console, synchronously.
+ * 
+ * Records at {@link Level#ERROR} and above go to <code>System.err</code>, 
+ * the rest go to <code>System.out</code>.
+ */
+public final class ConsoleAppender implements LogAppender
+{
+	public void append(Level aLevel, String aCategory, String aMessage, Throwable aThrowable)
+	{
+        PrintStream outputStream = getStream(aLevel);
+
+        StringBuilder out = new StringBuilder();
+        format(out, aLevel, aCategory, aMessage, aThrowable);
+        
+        outputStream.println( out.toString() );
+        
+        if (null != aThrowable)
+        {
+        	aThrowable.printStackTrace(outputStream);
+        }
+	}
+	
+	
+	public void close()
+	{
+	}
+	
+	
+	
+	/**
+	 * Get the console stream to which records at the given level get written.
+	 * @param aLevel the level.
+	 * @return a non-null stream.
+	 */
+	static PrintStream getStream(Level aLevel)
+	{
+        // are we printing an error instead?
+        if (Level.ERROR.intValue() <= aLevel.intValue())
+        {
+            return System.err;
+        }
+        return System.out;
+	}
+	
+	
+	
+	/**
+	 * Format a log record as a single line (without the stack trace).
+	 * 
+	 * @param aOut the buffer to append to.
+	 * @param aLevel the level of the record.
+	 * @param aCategory the logging category.
+	 * @param aMessage the message. May be null.
+	 * @param aThrowable the exception. May be null.
+	 */
+	static void format(StringBuilder aOut, Level aLevel, String aCategory, String aMessage, Throwable aThrowable)
+	{
+        if (null == aMessage && null != aThrowable)
+        {
+        	aMessage = aThrowable.toString();
+        }
+        
+        aOut.append(aLevel);
+        aOut.append(" [");
+        aOut.append(aCategory);
+        aOut.append("] ");
+        aOut.append(aMessage);
+	}
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.logging;
+
+
+/**
+ * Writes log records somewhere on behalf of {@link Logger}.
+ * 
+ * @see Logger#setAppender(LogAppender)
+ */
+public interface LogAppender
+{
+	/**
+	 * Write a log record.
+	 * 
+	 * This may get called from any thread.
+	 * 
+	 * @param aLevel the level of the record.
+	 * @param aCategory the logging category.
+	 * @param aMessage the message. May be null.
+	 * @param aThrowable the exception to log. May be null.
+	 */
+	public void append(Level aLevel, String aCategory, String aMessage, Throwable aThrowable);
+	
+	/**
+	 * Flush any pending records and release any resources held by this 
+	 * appender. 
+	 */
+	public void close();
+}
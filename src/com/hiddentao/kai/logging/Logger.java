@@ -14,15 +14,45 @@
 
 package com.hiddentao.kai.logging;
 
-import java.io.PrintStream;
 
 
 /**
  * The logging class.
+ * 
+ * Log calls made below the minimum level return straight away, but any 
+ * string concatenation in the arguments will already have been done by 
+ * then. In hot code paths either use the parameterised methods (e.g. 
+ * {@link #trace(String, Object, Object)}), which only build the message 
+ * if it will actually be logged, or guard the call with one of the 
+ * <code>isXEnabled()</code> methods. Trace statements can be removed 
+ * from the compiled code altogether by guarding them with 
+ * {@link #TRACE_COMPILED}:
+ * 
+ * <pre>
+ * if (Logger.TRACE_COMPILED &amp;&amp; LOG.isTraceEnabled())
+ *     LOG.trace("x=" + x);
+ * </pre>
+ * 
+ * Records which pass the level check are handed to the current 
+ * {@link LogAppender}. By default this is a {@link ConsoleAppender}, which 
+ * writes synchronously on the calling thread; install an 
+ * {@link AsyncAppender} to move the console I/O off the calling thread.
  */
 public final class Logger
 {
-	private static Level iMinimumLevel = Level.DEBUG;
+	/**
+	 * Compile-time switch for trace logging. When this is false the 
+	 * compiler drops any code guarded by it, so such trace statements 
+	 * cost nothing at all.
+	 */
+	public static final boolean TRACE_COMPILED = false;
+	
+	/** Placeholder which gets replaced by an argument in parameterised messages. */
+	private static final String ARG_PLACEHOLDER = "{}";
+	
+	private static volatile Level iMinimumLevel = Level.DEBUG;
+	
+	private static volatile LogAppender iAppender = new ConsoleAppender();
 	
 	private String iCategory = null;
 	
@@ -34,7 +64,7 @@ public final class Logger
 	 */
 	private Logger(String aCategory) 
 	{
-		iCategory = " [" + aCategory + "] ";
+		iCategory = aCategory;
 	}
 	
 	
@@ -51,6 +81,74 @@ public final class Logger
 	
 	
 	
+	/**
+	 * Set the appender to which log records get written.
+	 * 
+	 * The previous appender gets closed, so any records it is still 
+	 * holding on to get written out first.
+	 * 
+	 * @param aAppender the new appender. If null then a 
+	 * {@link ConsoleAppender} is used.
+	 */
+	public static synchronized void setAppender(LogAppender aAppender)
+	{
+		if (null == aAppender)
+		{
+			aAppender = new ConsoleAppender();
+		}
+		
+		LogAppender previous = iAppender;
+		iAppender = aAppender;
+		if (previous != aAppender)
+		{
+			previous.close();
+		}
+	}
+	
+	
+	
+	
+	/**
+	 * Get whether messages at the given level will be logged.
+	 * @param aLevel the level.
+	 * @return true if so; false otherwise.
+	 */
+	public static boolean isEnabled(Level aLevel)
+	{
+		return aLevel.intValue() >= iMinimumLevel.intValue();
+	}
+	
+	
+	/**
+	 * Get whether messages at {@link Level#TRACE} priority will be logged.
+	 * @return true if so; false otherwise.
+	 */
+	public boolean isTraceEnabled()
+	{
+		return isEnabled(Level.TRACE);
+	}
+	
+	
+	/**
+	 * Get whether messages at {@link Level#DEBUG} priority will be logged.
+	 * @return true if so; false otherwise.
+	 */
+	public boolean isDebugEnabled()
+	{
+		return isEnabled(Level.DEBUG);
+	}
+	
+	
+	/**
+	 * Get whether messages at {@link Level#INFO} priority will be logged.
+	 * @return true if so; false otherwise.
+	 */
+	public boolean isInfoEnabled()
+	{
+		return isEnabled(Level.INFO);
+	}
+	
+	
 	
 	/**
 	 * Get a logger for the given category.
@@ -91,6 +189,33 @@ public final class Logger
     {
         log(aMessage, aException, Level.TRACE);
     }
+    /**
+     * Log a parameterised message at {@link Level#TRACE} priority.
+     * The first <code>{}</code> in the format gets replaced by the argument.
+     */
+    public void trace(String aFormat, Object aArg1)
+    {
+        if (isEnabled(Level.TRACE))
+            log(format(aFormat, aArg1, null, null, 1), null, Level.TRACE);
+    }
+    /**
+     * Log a parameterised message at {@link Level#TRACE} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void trace(String aFormat, Object aArg1, Object aArg2)
+    {
+        if (isEnabled(Level.TRACE))
+            log(format(aFormat, aArg1, aArg2, null, 2), null, Level.TRACE);
+    }
+    /**
+     * Log a parameterised message at {@link Level#TRACE} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void trace(String aFormat, Object aArg1, Object aArg2, Object aArg3)
+    {
+        if (isEnabled(Level.TRACE))
+            log(format(aFormat, aArg1, aArg2, aArg3, 3), null, Level.TRACE);
+    }
     
     
     
@@ -121,6 +246,33 @@ public final class Logger
     public void debug(String aMessage, Throwable aException)
     {
         log(aMessage, aException, Level.DEBUG);
+    }
+    /**
+     * Log a parameterised message at {@link Level#DEBUG} priority.
+     * The first <code>{}</code> in the format gets replaced by the argument.
+     */
+    public void debug(String aFormat, Object aArg1)
+    {
+        if (isEnabled(Level.DEBUG))
+            log(format(aFormat, aArg1, null, null, 1), null, Level.DEBUG);
+    }
+    /**
+     * Log a parameterised message at {@link Level#DEBUG} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void debug(String aFormat, Object aArg1, Object aArg2)
+    {
+        if (isEnabled(Level.DEBUG))
+            log(format(aFormat, aArg1, aArg2, null, 2), null, Level.DEBUG);
+    }
+    /**
+     * Log a parameterised message at {@link Level#DEBUG} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void debug(String aFormat, Object aArg1, Object aArg2, Object aArg3)
+    {
+        if (isEnabled(Level.DEBUG))
+            log(format(aFormat, aArg1, aArg2, aArg3, 3), null, Level.DEBUG);
     }    
     
     
@@ -153,6 +305,33 @@ public final class Logger
     {
         log(aMessage, aException, Level.INFO);        
     }
+    /**
+     * Log a parameterised message at {@link Level#INFO} priority.
+     * The first <code>{}</code> in the format gets replaced by the argument.
+     */
+    public void info(String aFormat, Object aArg1)
+    {
+        if (isEnabled(Level.INFO))
+            log(format(aFormat, aArg1, null, null, 1), null, Level.INFO);
+    }
+    /**
+     * Log a parameterised message at {@link Level#INFO} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void info(String aFormat, Object aArg1, Object aArg2)
+    {
+        if (isEnabled(Level.INFO))
+            log(format(aFormat, aArg1, aArg2, null, 2), null, Level.INFO);
+    }
+    /**
+     * Log a parameterised message at {@link Level#INFO} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void info(String aFormat, Object aArg1, Object aArg2, Object aArg3)
+    {
+        if (isEnabled(Level.INFO))
+            log(format(aFormat, aArg1, aArg2, aArg3, 3), null, Level.INFO);
+    }
 
     
 
@@ -184,6 +363,33 @@ public final class Logger
     {
         log(aMessage, aException, Level.WARN);       
     }
+    /**
+     * Log a parameterised message at {@link Level#WARN} priority.
+     * The first <code>{}</code> in the format gets replaced by the argument.
+     */
+    public void warn(String aFormat, Object aArg1)
+    {
+        if (isEnabled(Level.WARN))
+            log(format(aFormat, aArg1, null, null, 1), null, Level.WARN);
+    }
+    /**
+     * Log a parameterised message at {@link Level#WARN} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void warn(String aFormat, Object aArg1, Object aArg2)
+    {
+        if (isEnabled(Level.WARN))
+            log(format(aFormat, aArg1, aArg2, null, 2), null, Level.WARN);
+    }
+    /**
+     * Log a parameterised message at {@link Level#WARN} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void warn(String aFormat, Object aArg1, Object aArg2, Object aArg3)
+    {
+        if (isEnabled(Level.WARN))
+            log(format(aFormat, aArg1, aArg2, aArg3, 3), null, Level.WARN);
+    }
     
     
     
@@ -216,6 +422,33 @@ public final class Logger
     {
         log(aMessage, aException, Level.ERROR);       
     }
+    /**
+     * Log a parameterised message at {@link Level#ERROR} priority.
+     * The first <code>{}</code> in the format gets replaced by the argument.
+     */
+    public void error(String aFormat, Object aArg1)
+    {
+        if (isEnabled(Level.ERROR))
+            log(format(aFormat, aArg1, null, null, 1), null, Level.ERROR);
+    }
+    /**
+     * Log a parameterised message at {@link Level#ERROR} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void error(String aFormat, Object aArg1, Object aArg2)
+    {
+        if (isEnabled(Level.ERROR))
+            log(format(aFormat, aArg1, aArg2, null, 2), null, Level.ERROR);
+    }
+    /**
+     * Log a parameterised message at {@link Level#ERROR} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void error(String aFormat, Object aArg1, Object aArg2, Object aArg3)
+    {
+        if (isEnabled(Level.ERROR))
+            log(format(aFormat, aArg1, aArg2, aArg3, 3), null, Level.ERROR);
+    }
 
     
 
@@ -247,6 +480,33 @@ public final class Logger
     {
         log(aMessage, aException, Level.FATAL);       
     }
+    /**
+     * Log a parameterised message at {@link Level#FATAL} priority.
+     * The first <code>{}</code> in the format gets replaced by the argument.
+     */
+    public void fatal(String aFormat, Object aArg1)
+    {
+        if (isEnabled(Level.FATAL))
+            log(format(aFormat, aArg1, null, null, 1), null, Level.FATAL);
+    }
+    /**
+     * Log a parameterised message at {@link Level#FATAL} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void fatal(String aFormat, Object aArg1, Object aArg2)
+    {
+        if (isEnabled(Level.FATAL))
+            log(format(aFormat, aArg1, aArg2, null, 2), null, Level.FATAL);
+    }
+    /**
+     * Log a parameterised message at {@link Level#FATAL} priority.
+     * Each <code>{}</code> in the format gets replaced by the next argument.
+     */
+    public void fatal(String aFormat, Object aArg1, Object aArg2, Object aArg3)
+    {
+        if (isEnabled(Level.FATAL))
+            log(format(aFormat, aArg1, aArg2, aArg3, 3), null, Level.FATAL);
+    }
     
     
 
@@ -259,38 +519,48 @@ public final class Logger
 	 */
 	private void log(String aMsg, Throwable aThrowable, Level aLevel)
 	{
-		if (aLevel.intValue() < iMinimumLevel.intValue())
+		if (!isEnabled(aLevel))
 			return;
 		
-        PrintStream outputStream = System.out;
-
-        // are we printing an error instead?
-        if (Level.ERROR.intValue() <= aLevel.intValue())
-        {
-            outputStream = System.err;
-        }
-
-        if (null == aMsg && null != aThrowable)
-        {
-        	aMsg = aThrowable.toString();
-        }
-        
-        StringBuilder out = new StringBuilder();
-        out.append(aLevel);
-        out.append(iCategory);
-        out.append(aMsg);
-        
-        outputStream.println( out.toString() );
-        
-        if (null != aThrowable)
-        {
-        	aThrowable.printStackTrace(outputStream);
-        }
+		iAppender.append(aLevel, iCategory, aMsg, aThrowable);
+	}
+	
 	
+	
+	
+	/**
+	 * Build a parameterised message.
+	 * 
+	 * @param aFormat the message format. Each <code>{}</code> gets replaced 
+	 * by the next argument; any left over once the arguments run out are 
+	 * left as they are.
+	 * @param aArg1 the first argument.
+	 * @param aArg2 the second argument.
+	 * @param aArg3 the third argument.
+	 * @param aNumArgs the no. of arguments supplied.
+	 * @return the message.
+	 */
+	private static String format(String aFormat, Object aArg1, Object aArg2, Object aArg3, int aNumArgs)
+	{
+		if (null == aFormat)
+			return null;
+		
+		StringBuilder out = new StringBuilder(aFormat.length() + 32);
+		
+		int start = 0;
+		for (int arg = 0; arg < aNumArgs; ++arg)
+		{
+			int pos = aFormat.indexOf(ARG_PLACEHOLDER, start);
+			if (0 > pos)
+				break;
+			
+			out.append(aFormat, start, pos);
+			out.append(0 == arg ? aArg1 : (1 == arg ? aArg2 : aArg3));
+			start = pos + ARG_PLACEHOLDER.length();
+		}
+		out.append(aFormat, start, aFormat.length());
+		
+		return out.toString();
 	}
 	
 }
-
-
-
-
@@ -25,6 +25,9 @@ import com.hiddentao.kai.geometry.VectorComponents;
  */
 public class DirectionalLight extends Node implements VectorComponents
 {
+	/**
+	 * The light direction. Call {@link #markChanged()} after modifying this.
+	 */
 	public Vec4 vector = new Vec4();
 
 	/**
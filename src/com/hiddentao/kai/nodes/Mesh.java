@@ -16,8 +16,10 @@ package com.hiddentao.kai.nodes;
 
 import java.awt.Color;
 import java.util.ArrayList;
+import java.util.IdentityHashMap;
 
 import com.hiddentao.kai.geometry.Triangle3D;
+import com.hiddentao.kai.geometry.Vec4;
 import com.hiddentao.kai.geometry.Vertex3D;
 import com.hiddentao.kai.logging.Logger;
 import com.hiddentao.utils.collections.DynamicArray;
@@ -34,6 +36,11 @@ public final class Mesh extends Node
 	
 	private ArrayList<Vertex3D> iVertices = new ArrayList<Vertex3D>();
 	private ArrayList<Triangle3D> iPolygons = new ArrayList<Triangle3D>();
+	/**
+	 * Which vertices are already in {@link #iVertices}. Only gets built 
+	 * once polygons are added one at a time.
+	 */
+	private IdentityHashMap<Vertex3D, Vertex3D> iVertexSet = null;
 	
 	
 	/**
@@ -45,7 +52,16 @@ public final class Mesh extends Node
 	 */
 	private int addVertex(Vertex3D aVertex)
 	{
-		if (null != aVertex && !iVertices.contains(aVertex))
+		if (null == iVertexSet)
+		{
+			iVertexSet = new IdentityHashMap<Vertex3D, Vertex3D>(Math.max(16, iVertices.size() * 2));
+			for (Vertex3D v : iVertices)
+			{
+				iVertexSet.put(v, v);
+			}
+		}
+		
+		if (null != aVertex && null == iVertexSet.put(aVertex, aVertex))
 		{
 			if (iVertices.add(aVertex))
 			{
@@ -100,6 +116,7 @@ public final class Mesh extends Node
 			
 			if (iPolygons.add(aPolygon))
 			{
+				markChanged();
 				return iPolygons.size()-1;
 			}
 		}
@@ -109,6 +126,60 @@ public final class Mesh extends Node
 	
 	
 	
+	/**
+	 * Add indexed polygons to this mesh in bulk.
+	 * 
+	 * This is much quicker than {@link #addPolygons(DynamicArray)} for 
+	 * large meshes since the vertices are known to be new and the 
+	 * polygons can be created directly from the arrays.
+	 * 
+	 * @param aPositions the new vertex co-ordinates, packed as x,y,z 
+	 * triples.
+	 * @param aNumVertices the no. of vertices in <code>aPositions</code>.
+	 * @param aIndices the vertex indices of each polygon, packed as 
+	 * triples in clockwise order. Indices are zero-based and refer to the 
+	 * vertices in <code>aPositions</code>.
+	 * @param aNumPolygons the no. of polygons in <code>aIndices</code>.
+	 * 
+	 * @throws IllegalArgumentException if an index is out of range.
+	 */
+	public void addIndexedPolygons(float[] aPositions, int aNumVertices, int[] aIndices, int aNumPolygons)
+	{
+		final int NUM_INDICES = aNumPolygons * 3;
+		for (int i=0; i<NUM_INDICES; ++i)
+		{
+			if (0 > aIndices[i] || aNumVertices <= aIndices[i])
+				throw new IllegalArgumentException("Vertex index out of range: " + aIndices[i]);
+		}
+		
+		Vertex3D[] vertices = new Vertex3D[aNumVertices];
+		Vec4 vec = new Vec4();
+		iVertices.ensureCapacity(iVertices.size() + aNumVertices);
+		for (int i=0; i<aNumVertices; ++i)
+		{
+			final int ix3 = i * 3;
+			vec.set(aPositions[ix3], aPositions[ix3+1], aPositions[ix3+2], 1);
+			vertices[i] = new Vertex3D(vec);
+			iVertices.add(vertices[i]);
+			if (null != iVertexSet)
+				iVertexSet.put(vertices[i], vertices[i]);
+		}
+		
+		iPolygons.ensureCapacity(iPolygons.size() + aNumPolygons);
+		for (int i=0; i<NUM_INDICES; i+=3)
+		{
+			iPolygons.add(new Triangle3D(
+					vertices[aIndices[i]], 
+					vertices[aIndices[i+1]], 
+					vertices[aIndices[i+2]])
+					);
+		}
+		
+		markChanged();
+	}
+	
+	
+	
 	/**
 	 * Apply a colour to all the polygons in this mesh. 
 	 * @param aColor a non-null colour.
@@ -119,11 +190,24 @@ public final class Mesh extends Node
 		{
 			tri.color = aColor;
 		}
+		markChanged();
 	}
 	
 	
 	
 	
+	
+	/**
+	 * Get the no. of polygons in this mesh.
+	 * @return a value >= 0.
+	 */
+	public int numberOfPolygons()
+	{
+		return iPolygons.size();
+	}
+	
+	
+	
 	/**
 	 * Get an iterator over this mesh's polygons.
 	 * @return a non-null iterator.
@@ -166,6 +250,7 @@ public final class Mesh extends Node
         	v.normal.normalise();
         }
         
+        markChanged();
     }
 
 	
@@ -20,6 +20,12 @@ import java.util.Iterator;
 
 /**
  * Represents a node in a scene graph.
+ * 
+ * Each node has a version no. which changes whenever the node or any of its 
+ * descendants change, so that a renderer can tell whether a scene needs 
+ * redrawing by checking just its root. Subclasses must call 
+ * {@link #markChanged()} whenever they change in a way which affects 
+ * rendering.
  */
 public abstract class Node
 {
@@ -38,6 +44,16 @@ public abstract class Node
 	 */
 	private HashSet<Node> iChildren = new HashSet<Node>();
 	
+	/**
+	 * Incremented whenever this node or its descendants change.
+	 */
+	private volatile int iVersion = 0;
+	
+	/**
+	 * Name used to identify this node in diagnostics.
+	 */
+	private String iName = null;
+	
 	
 	
 	/**
@@ -78,6 +94,30 @@ public abstract class Node
 	}
 	
 	
+	/**
+	 * Get this node's name.
+	 * @return the name. Default is null.
+	 */
+	public String getName()
+	{
+		return iName;
+	}
+	
+	
+	/**
+	 * Set this node's name. 
+	 * 
+	 * The name doesn't affect rendering; it's only used to identify the 
+	 * node in diagnostics, e.g. by a {@link com.hiddentao.kai.renderer.RenderProbe}.
+	 * 
+	 * @param aName the name. May be null.
+	 */
+	public void setName(String aName)
+	{
+		iName = aName;
+	}
+	
+	
 	/**
 	 * Get whether this node and its chilren are enabled for rendering.
 	 * @return true if so; false otherwise.
@@ -94,7 +134,38 @@ public abstract class Node
 	 */
 	public void setEnabled(boolean aEnabled)
 	{
-		iIsEnabled = aEnabled;
+		if (iIsEnabled != aEnabled)
+		{
+			iIsEnabled = aEnabled;
+			markChanged();
+		}
+	}
+	
+	
+	/**
+	 * Get this node's version no.
+	 * 
+	 * @return a value which changes whenever this node or any of its 
+	 * descendants change.
+	 */
+	public int version()
+	{
+		return iVersion;
+	}
+	
+	
+	/**
+	 * Note that this node has changed, updating the version no. of it and 
+	 * all of its ancestors.
+	 * 
+	 * This must be called after modifying a node's public fields directly.
+	 */
+	public void markChanged()
+	{
+		for (Node n = this; null != n; n = n.iParent)
+		{
+			++n.iVersion;
+		}
 	}
 	
 	
@@ -127,7 +198,16 @@ public abstract class Node
 	{
 		if (null != aChild)
 		{
-			iChildren.add(aChild);
+			if (null != aChild.iParent && this != aChild.iParent)
+			{
+				aChild.iParent.detachChild(aChild);
+			}
+			
+			if (iChildren.add(aChild))
+			{
+				aChild.setParent(this);
+				markChanged();
+			}
 		}
 	}
 	
@@ -149,6 +229,7 @@ public abstract class Node
 			if (iChildren.remove(aChild))
 			{
 				aChild.setParent(null);
+				markChanged();
 				return aChild;
 			}
 		}
@@ -163,11 +244,15 @@ public abstract class Node
 	 */
 	public void detachAllChildren()
 	{
+		if (iChildren.isEmpty())
+			return;
+		
 		for (Node child : iChildren)
 		{
-			if (iChildren.remove(child))
-				child.setParent(null);
+			child.setParent(null);
 		}
+		iChildren.clear();
+		markChanged();
 	}
 	
 	
@@ -20,11 +20,28 @@ import com.hiddentao.kai.geometry.VectorComponents;
 
 /**
  * A rotation in 3D space.
+ * 
+ * The rotation angles are double-buffered so that one thread (e.g. a 
+ * simulation) can update them whilst another thread renders the scene. 
+ * Updates are made to {@link #angles} and only become visible to 
+ * {@link NodeVisitor}s once {@link #publish()} is called, at which point 
+ * an immutable copy of them is handed over in a single atomic step. 
+ * Visitors thus never see a partially updated rotation.
  */
 public class Rotation extends Node implements VectorComponents
 {
+	/**
+	 * The working copy of the rotation angles. Call {@link #publish()} 
+	 * after modifying these.
+	 */
 	public Angles3D angles = new Angles3D();
 	
+	/** 
+	 * The angles seen by visitors. This object is never modified once it 
+	 * has been published.
+	 */
+	private volatile Angles3D iPublishedAngles = null;
+	
 	
 	/**
 	 * Constructor.
@@ -44,7 +61,33 @@ public class Rotation extends Node implements VectorComponents
 	 */
 	public Rotation(Angles3D aAngles)
 	{
-		angles.set(aAngles.iAngleX, aAngles.iAngleY, aAngles.iAngleZ);
+		setAngles(aAngles.iAngleX, aAngles.iAngleY, aAngles.iAngleZ);
+	}
+	
+	
+	
+	/**
+	 * Set the rotation angles and publish them.
+	 * 
+	 * @param aAngleX the pitch angle.
+	 * @param aAngleY the yaw angle.
+	 * @param aAngleZ the roll angle.
+	 */
+	public void setAngles(float aAngleX, float aAngleY, float aAngleZ)
+	{
+		angles.set(aAngleX, aAngleY, aAngleZ);
+		publish();
+	}
+	
+	
+	
+	/**
+	 * Make the current value of {@link #angles} visible to visitors.
+	 */
+	public void publish()
+	{
+		iPublishedAngles = new Angles3D(angles.iAngleX, angles.iAngleY, angles.iAngleZ);
+		markChanged();
 	}
 	
 	
@@ -53,10 +96,11 @@ public class Rotation extends Node implements VectorComponents
 	@Override
 	protected void doVisitDown(NodeVisitor visitor)
 	{
+		final Angles3D published = iPublishedAngles;
 		visitor.processRotation(
-				angles.iAngleX,
-				angles.iAngleY,
-				angles.iAngleZ
+				published.iAngleX,
+				published.iAngleY,
+				published.iAngleZ
 				);
 
 	}
@@ -64,10 +108,11 @@ public class Rotation extends Node implements VectorComponents
 	@Override
 	protected void doVisitUp(NodeVisitor visitor)
 	{
+		final Angles3D published = iPublishedAngles;
 		visitor.processRotation(
-				-angles.iAngleX,
-				-angles.iAngleY,
-				-angles.iAngleZ
+				-published.iAngleX,
+				-published.iAngleY,
+				-published.iAngleZ
 				);
 	}
 
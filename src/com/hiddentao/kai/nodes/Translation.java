@@ -27,13 +27,30 @@ import com.hiddentao.kai.geometry.VectorComponents;
  * {@link NodeVisitor#processTranslation(float, float, float)} with each 
  * component of the translation vector multiplied by the scaling 
  * factor. The default scaling factor is 1.0.
+ * 
+ * The translation is double-buffered so that one thread can update it whilst 
+ * another thread renders the scene. Updates are made to {@link #vector} 
+ * and only become visible to {@link NodeVisitor}s once {@link #publish()} 
+ * is called, at which point an immutable copy of the scaled vector is 
+ * handed over in a single atomic step. Changing the scaling factor 
+ * publishes automatically.
  */
 public class Translation extends Node implements VectorComponents
 {
+	/**
+	 * The working copy of the translation vector. Call {@link #publish()} 
+	 * after modifying this.
+	 */
 	public Vec4 vector = new Vec4();
 
 	private float iScalingFactor = 1.0f; 
 	
+	/**
+	 * The scaled translation vector seen by visitors (x,y,z). This array is 
+	 * never modified once it has been published.
+	 */
+	private volatile float[] iPublishedVector = null;
+	
 	
 	/**
 	 * Constructor.
@@ -54,6 +71,7 @@ public class Translation extends Node implements VectorComponents
 	public Translation(Vec4 aVec)
 	{
 		vector.set(aVec);
+		publish();
 	}
 	
 	
@@ -74,17 +92,35 @@ public class Translation extends Node implements VectorComponents
 	public void setScaleFactor(float aScalingFactor)
 	{
 		iScalingFactor = aScalingFactor;
+		publish();
 	}
 	
 	
 	
-	@Override
-	protected void doVisitDown(NodeVisitor visitor)
+	/**
+	 * Make the current value of {@link #vector} and the scaling factor 
+	 * visible to visitors.
+	 */
+	public void publish()
 	{
-		visitor.processTranslation(
+		iPublishedVector = new float[] {
 				vector.val[_X_] * iScalingFactor, 
 				vector.val[_Y_] * iScalingFactor, 
 				vector.val[_Z_] * iScalingFactor 
+		};
+		markChanged();
+	}
+	
+	
+	
+	@Override
+	protected void doVisitDown(NodeVisitor visitor)
+	{
+		final float[] published = iPublishedVector;
+		visitor.processTranslation(
+				published[_X_], 
+				published[_Y_], 
+				published[_Z_] 
 				);
 
 	}
@@ -92,10 +128,11 @@ public class Translation extends Node implements VectorComponents
 	@Override
 	protected void doVisitUp(NodeVisitor visitor)
 	{
+		final float[] published = iPublishedVector;
 		visitor.processTranslation(
-				-vector.val[_X_] * iScalingFactor, 
-				-vector.val[_Y_] * iScalingFactor, 
-				-vector.val[_Z_] * iScalingFactor 
+				-published[_X_], 
+				-published[_Y_], 
+				-published[_Z_] 
 				);
 	}
 
@@ -71,6 +71,52 @@ public class Camera implements MathConstants
 	
 	
 	
+	/**
+	 * Constructor.
+	 * @param aCamera the camera whose position, orientation, frustum and 
+	 * projection type to copy.
+	 */
+	public Camera(Camera aCamera)
+	{
+		this();
+		set(aCamera);
+	}
+	
+	
+	
+	/**
+	 * Copy another camera's position, orientation, frustum and projection 
+	 * type into this one.
+	 * @param aCamera the camera whose values to copy.
+	 */
+	public void set(Camera aCamera)
+	{
+		eye.set(aCamera.eye);
+		up.set(aCamera.up);
+		focus.set(aCamera.focus);
+		frustum.set(aCamera.frustum);
+		iIsOrthographic = aCamera.iIsOrthographic;
+	}
+	
+	
+	
+	/**
+	 * Get whether this camera has the same position, orientation, frustum 
+	 * and projection type as another.
+	 * @param aCamera the other camera.
+	 * @return true if so; false otherwise.
+	 */
+	public boolean equalTo(Camera aCamera)
+	{
+		return eye.equalTo(aCamera.eye)
+				&& up.equalTo(aCamera.up)
+				&& focus.equalTo(aCamera.focus)
+				&& frustum.equalTo(aCamera.frustum)
+				&& iIsOrthographic == aCamera.iIsOrthographic;
+	}
+	
+	
+	
 	/**
 	 * Reset this camera to default values.
 	 */
@@ -145,6 +191,22 @@ public class Camera implements MathConstants
 	 * @param aAngles the 3D rotation angles (in degrees).
 	 */
     public void rotateAroundFocus(Angles3D aAngles)
+    {
+    	rotateAroundFocus(aAngles.iAngleX, aAngles.iAngleY, aAngles.iAngleZ);
+    }
+    
+    
+    
+	/**
+	 * Rotate the camera around its focal point.
+	 * 
+	 * This does not allocate any objects.
+	 * 
+	 * @param aAngleX the rotation around the camera's x-axis (in degrees).
+	 * @param aAngleY the rotation around the camera's y-axis (in degrees).
+	 * @param aAngleZ the rotation around the camera's z-axis (in degrees).
+	 */
+    public void rotateAroundFocus(float aAngleX, float aAngleY, float aAngleZ)
     {
         // vectors
     	iTempFocusVec.set(focus);
@@ -152,9 +214,6 @@ public class Camera implements MathConstants
     	iTempEyeVec.minusEq(focus);
     	iTempUpVec.set(up);
     	
-        // angles
-        Angles3D radians = aAngles.mult(DEG_TO_RAD);
-        
         // u,v,w axes (camera coordinate system based at focal point)
         iTempVecV.set(iTempUpVec);
         iTempVecV.normalise();
@@ -164,7 +223,9 @@ public class Camera implements MathConstants
         iTempVecU.normalise();
         
         // rotation quaternions (we're rotating around u,v,w axes)
-        Quat.calculateEulerRotationQuat(radians, iTempVecU, iTempVecV, iTempVecW, iTempQuatQ);
+        Quat.calculateEulerRotationQuat(
+        		aAngleX * DEG_TO_RAD, aAngleY * DEG_TO_RAD, aAngleZ * DEG_TO_RAD, 
+        		iTempVecU, iTempVecV, iTempVecW, iTempQuatQ, iTempQuatRes1);
         Quat.calculateInverse(iTempQuatQ, iTempQuatQi);
         
         // vector quaternions (input vectors)
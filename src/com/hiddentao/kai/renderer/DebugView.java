@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.renderer;
+
+
+/**
+ * What a renderer draws in place of the scene's colours, to help diagnose 
+ * rendering performance.
+ * 
+ * @see Renderer#setDebugView(DebugView)
+ */
+public enum DebugView
+{
+	/**
+	 * Draw the scene normally.
+	 */
+	NONE,
+	/**
+	 * Colour each pixel according to how many times it was drawn this 
+	 * frame: dark blue (once), blue (twice), light blue (3 times), then 
+	 * green, yellow, orange and red for up to 8, 16, 32 and 64 times, and 
+	 * white beyond that. Pixels which weren't drawn are black.
+	 */
+	OVERDRAW,
+	/**
+	 * Colour each pixel according to how many times it was depth-tested 
+	 * this frame, whether or not it passed, using the same colours as 
+	 * {@link #OVERDRAW}.
+	 */
+	DEPTH_COMPLEXITY
+}
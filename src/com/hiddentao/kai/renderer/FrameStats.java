@@ -0,0 +1,183 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.renderer;
+
+
+
+/**
+ * Statistics about a single rendered frame.
+ * 
+ * A renderer fills in the same instance every frame without allocating, so 
+ * the values must be read (or copied with {@link #set(FrameStats)}) on the 
+ * rendering thread before the next frame is rendered.
+ */
+public final class FrameStats
+{
+	/** Triangles belonging to the meshes reached in the scene. */
+	public int trianglesSubmitted = 0;
+	/** Triangles discarded for lying outside of the near/far planes. */
+	public int trianglesFrustumCulled = 0;
+	/** Triangles discarded for facing away from the camera. */
+	public int trianglesBackfaceCulled = 0;
+	/** 
+	 * Triangles handed to the rasteriser. A triangle which straddles 
+	 * several redrawn regions is counted once per region.
+	 */
+	public int trianglesRasterised = 0;
+	
+	/** Horizontal or vertical runs of pixels drawn. */
+	public long spans = 0;
+	/** Pixels drawn. */
+	public long pixelsWritten = 0;
+	/** Pixels not drawn because they were hidden according to the Z-buffer. */
+	public long pixelsDepthRejected = 0;
+	/** 
+	 * Distinct pixels drawn at least once. This is only counted while a 
+	 * {@link DebugView} other than {@link DebugView#NONE} is active, and is 
+	 * 0 otherwise.
+	 */
+	public long pixelsCovered = 0;
+	
+	/** Time spent traversing the scenegraph, in nanoseconds. */
+	public long traversalNanos = 0;
+	/** Time spent transforming, culling and lighting, in nanoseconds. */
+	public long transformNanos = 0;
+	/** Time spent clearing and rasterising, in nanoseconds. */
+	public long rasterNanos = 0;
+	/** 
+	 * Time spent getting the frame onto the screen, in nanoseconds. This is 
+	 * reported by whatever displays the frame, e.g. {@link RenderingSurface}, 
+	 * through {@link Renderer#framePresented(long)}. 
+	 */
+	public long presentNanos = 0;
+	
+	
+	
+	/**
+	 * Set all the values to 0.
+	 */
+	public void reset()
+	{
+		trianglesSubmitted = 0;
+		trianglesFrustumCulled = 0;
+		trianglesBackfaceCulled = 0;
+		trianglesRasterised = 0;
+		spans = 0;
+		pixelsWritten = 0;
+		pixelsDepthRejected = 0;
+		pixelsCovered = 0;
+		traversalNanos = 0;
+		transformNanos = 0;
+		rasterNanos = 0;
+		presentNanos = 0;
+	}
+	
+	
+	
+	/**
+	 * Copy another frame's statistics into this one.
+	 * @param aStats the statistics to copy.
+	 */
+	public void set(FrameStats aStats)
+	{
+		trianglesSubmitted = aStats.trianglesSubmitted;
+		trianglesFrustumCulled = aStats.trianglesFrustumCulled;
+		trianglesBackfaceCulled = aStats.trianglesBackfaceCulled;
+		trianglesRasterised = aStats.trianglesRasterised;
+		spans = aStats.spans;
+		pixelsWritten = aStats.pixelsWritten;
+		pixelsDepthRejected = aStats.pixelsDepthRejected;
+		pixelsCovered = aStats.pixelsCovered;
+		traversalNanos = aStats.traversalNanos;
+		transformNanos = aStats.transformNanos;
+		rasterNanos = aStats.rasterNanos;
+		presentNanos = aStats.presentNanos;
+	}
+	
+	
+	
+	/**
+	 * Get the total time taken by all the stages.
+	 * @return the time in nanoseconds.
+	 */
+	public long totalNanos()
+	{
+		return traversalNanos + transformNanos + rasterNanos + presentNanos;
+	}
+	
+	
+	
+	/**
+	 * Get the average no. of times each covered pixel was drawn.
+	 * @return a value >= 1; 0 if {@link #pixelsCovered} wasn't counted.
+	 */
+	public float overdrawRatio()
+	{
+		return (0 == pixelsCovered) ? 0 : (float)pixelsWritten / pixelsCovered;
+	}
+	
+	
+	/**
+	 * Get the average no. of times each covered pixel was depth-tested, 
+	 * whether or not it passed.
+	 * @return a value >= 1; 0 if {@link #pixelsCovered} wasn't counted.
+	 */
+	public float depthComplexity()
+	{
+		return (0 == pixelsCovered) ? 0 : (float)(pixelsWritten + pixelsDepthRejected) / pixelsCovered;
+	}
+	
+	
+	
+	public String toString()
+	{
+		StringBuilder buf = new StringBuilder(256);
+		buf.append("triangles: ");
+		buf.append(trianglesSubmitted);
+		buf.append(" submitted, ");
+		buf.append(trianglesFrustumCulled);
+		buf.append(" frustum-culled, ");
+		buf.append(trianglesBackfaceCulled);
+		buf.append(" backface-culled, ");
+		buf.append(trianglesRasterised);
+		buf.append(" rasterised; spans: ");
+		buf.append(spans);
+		buf.append("; pixels: ");
+		buf.append(pixelsWritten);
+		buf.append(" written, ");
+		buf.append(pixelsDepthRejected);
+		buf.append(" depth-rejected");
+		if (0 < pixelsCovered)
+		{
+			buf.append(", ");
+			buf.append(pixelsCovered);
+			buf.append(" covered (overdraw ");
+			buf.append(overdrawRatio());
+			buf.append(", depth complexity ");
+			buf.append(depthComplexity());
+			buf.append(")");
+		}
+		buf.append("; time (us): traversal ");
+		buf.append(traversalNanos / 1000);
+		buf.append(", transform ");
+		buf.append(transformNanos / 1000);
+		buf.append(", raster ");
+		buf.append(rasterNanos / 1000);
+		buf.append(", present ");
+		buf.append(presentNanos / 1000);
+		return buf.toString();
+	}
+}
@@ -0,0 +1,215 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.renderer;
+
+import com.hiddentao.kai.utils.RollingHistogram;
+
+
+/**
+ * Keeps track of how long recent frames, and each stage of them, took to 
+ * render.
+ * 
+ * Durations are kept in fixed-size histograms covering the last 
+ * {@link #WINDOW_MILLIS} milliseconds, so that percentiles (e.g. the 99th 
+ * percentile frame time) can be queried at any time, from any thread, 
+ * without recording ever allocating memory.
+ */
+public final class FrameTimeMonitor
+{
+	/**
+	 * The parts of a frame which get timed.
+	 */
+	public enum Stage
+	{
+		/** Rendering the whole frame, not including presenting it. */
+		FRAME,
+		/** Traversing the scenegraph. See {@link FrameStats#traversalNanos}. */
+		TRAVERSAL,
+		/** Transforming, culling and lighting. See {@link FrameStats#transformNanos}. */
+		TRANSFORM,
+		/** Clearing and rasterising. See {@link FrameStats#rasterNanos}. */
+		RASTER,
+		/** Getting the frame onto the screen. See {@link FrameStats#presentNanos}. */
+		PRESENT
+	}
+	
+	/** How far back durations are remembered for. */
+	public static final long WINDOW_MILLIS = 5000;
+	/** The no. of pieces the window is split into. */
+	private static final int WINDOW_SLOTS = 5;
+	
+	private final RollingHistogram[] iHistograms = new RollingHistogram[Stage.values().length];
+	
+	
+	
+	/**
+	 * Constructor.
+	 */
+	public FrameTimeMonitor()
+	{
+		for (int i=0; i<iHistograms.length; ++i)
+		{
+			iHistograms[i] = new RollingHistogram(WINDOW_MILLIS, WINDOW_SLOTS);
+		}
+	}
+	
+	
+	
+	/**
+	 * Record the durations of a rendered frame's stages.
+	 * 
+	 * This records {@link Stage#FRAME}, {@link Stage#TRAVERSAL}, 
+	 * {@link Stage#TRANSFORM} and {@link Stage#RASTER}. 
+	 * {@link Stage#PRESENT} gets recorded through 
+	 * {@link Renderer#framePresented(long)}.
+	 * 
+	 * @param aStats the frame's statistics.
+	 */
+	public void record(FrameStats aStats)
+	{
+		record(Stage.TRAVERSAL, aStats.traversalNanos);
+		record(Stage.TRANSFORM, aStats.transformNanos);
+		record(Stage.RASTER, aStats.rasterNanos);
+		record(Stage.FRAME, aStats.traversalNanos + aStats.transformNanos + aStats.rasterNanos);
+	}
+	
+	
+	
+	/**
+	 * Record the duration of a stage.
+	 * 
+	 * Only one thread should record durations for a given stage at a time.
+	 * 
+	 * @param aStage the stage.
+	 * @param aNanos the time it took, in nanoseconds.
+	 */
+	public void record(Stage aStage, long aNanos)
+	{
+		iHistograms[aStage.ordinal()].record(aNanos);
+	}
+	
+	
+	
+	/**
+	 * Forget all recorded durations.
+	 */
+	public void reset()
+	{
+		for (int i=0; i<iHistograms.length; ++i)
+		{
+			iHistograms[i].reset();
+		}
+	}
+	
+	
+	
+	/**
+	 * Get the duration which the given percentage of recent occurrences of 
+	 * a stage took no longer than.
+	 * 
+	 * @param aStage the stage.
+	 * @param aPercentile the percentage, between 0 and 100, e.g. 99.
+	 * @return the duration in nanoseconds, accurate to within about 3%; 0 if 
+	 * nothing has been recorded recently.
+	 */
+	public long getPercentile(Stage aStage, double aPercentile)
+	{
+		return iHistograms[aStage.ordinal()].getValueAtPercentile(aPercentile);
+	}
+	
+	
+	/**
+	 * Get the longest recent duration of a stage.
+	 * 
+	 * @param aStage the stage.
+	 * @return the duration in nanoseconds; 0 if nothing has been recorded 
+	 * recently.
+	 */
+	public long getMax(Stage aStage)
+	{
+		return iHistograms[aStage.ordinal()].getMax();
+	}
+	
+	
+	/**
+	 * Get the no. of recent occurrences of a stage.
+	 * 
+	 * @param aStage the stage.
+	 * @return a value >= 0.
+	 */
+	public long getCount(Stage aStage)
+	{
+		return iHistograms[aStage.ordinal()].getCount();
+	}
+	
+	
+	
+	/**
+	 * Append a one-line summary of a stage's recent durations, in 
+	 * milliseconds, e.g. "raster p50 1.2 p95 2.0 p99 3.1 max 4.7 ms".
+	 * 
+	 * This does not allocate any objects if the buffer is big enough.
+	 * 
+	 * @param aStage the stage.
+	 * @param aBuf the buffer to append to.
+	 */
+	public void appendSummary(Stage aStage, StringBuilder aBuf)
+	{
+		final String name = aStage.name();
+		aBuf.append(name.charAt(0));
+		for (int i=1; i<name.length(); ++i)
+		{
+			aBuf.append(Character.toLowerCase(name.charAt(i)));
+		}
+		aBuf.append(" p50 ");
+		appendMillis(getPercentile(aStage, 50), aBuf);
+		aBuf.append(" p95 ");
+		appendMillis(getPercentile(aStage, 95), aBuf);
+		aBuf.append(" p99 ");
+		appendMillis(getPercentile(aStage, 99), aBuf);
+		aBuf.append(" max ");
+		appendMillis(getMax(aStage), aBuf);
+		aBuf.append(" ms");
+	}
+	
+	
+	
+	/**
+	 * Append a duration in milliseconds, to one decimal place.
+	 */
+	private static void appendMillis(long aNanos, StringBuilder aBuf)
+	{
+		final long tenths = (aNanos + 50000) / 100000;
+		aBuf.append(tenths / 10);
+		aBuf.append('.');
+		aBuf.append(tenths % 10);
+	}
+	
+	
+	
+	public String toString()
+	{
+		StringBuilder buf = new StringBuilder(256);
+		final Stage[] stages = Stage.values();
+		for (int i=0; i<stages.length; ++i)
+		{
+			if (0 < i)
+				buf.append("; ");
+			appendSummary(stages[i], buf);
+		}
+		return buf.toString();
+	}
+}
@@ -0,0 +1,250 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.nio.IntBuffer;
+
+import com.hiddentao.kai.geometry.Dimensions2D;
+import com.hiddentao.kai.nodes.Node;
+
+
+/**
+ * Renders scenes into an in-memory image, without needing a display.
+ * 
+ * This is the offscreen equivalent of {@link RenderingSurface}. The image 
+ * is reused from frame to frame (it only gets reallocated when the size 
+ * changes) and the renderer draws straight into its pixel array, so this 
+ * works with <code>java.awt.headless=true</code>.
+ * 
+ * A target, and the renderer it uses, must only be used by one thread at 
+ * a time.
+ */
+public final class OffscreenRenderTarget
+{
+	private Renderer iRenderer = null;
+	private Dimensions2D iDimensions = new Dimensions2D();
+	private BufferedImage iImage = null;
+	private int[] iPixels = null;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param aRenderer the renderer to use.
+	 * @param aWidth the image width, in pixels.
+	 * @param aHeight the image height, in pixels.
+	 */
+	public OffscreenRenderTarget(Renderer aRenderer, int aWidth, int aHeight)
+	{
+		iRenderer = aRenderer;
+		setSize(aWidth, aHeight);
+	}
+	
+	
+	
+	/**
+	 * Get the renderer used by this target.
+	 * @return the renderer.
+	 */
+	public Renderer getRenderer()
+	{
+		return iRenderer;
+	}
+	
+	
+	
+	/**
+	 * Set the size of the rendered image.
+	 * 
+	 * The image only gets reallocated if the size actually changes.
+	 * 
+	 * @param aWidth the image width, in pixels. Must be > 0.
+	 * @param aHeight the image height, in pixels. Must be > 0.
+	 */
+	public void setSize(int aWidth, int aHeight)
+	{
+		if (0 >= aWidth || 0 >= aHeight)
+			throw new IllegalArgumentException("Invalid size: " + aWidth + "x" + aHeight);
+		
+		if (null != iImage && aWidth == iDimensions.width && aHeight == iDimensions.height)
+			return;
+		
+		iDimensions.width = aWidth;
+		iDimensions.height = aHeight;
+		iImage = new BufferedImage(aWidth, aHeight, BufferedImage.TYPE_INT_RGB);
+		iPixels = ((DataBufferInt)iImage.getRaster().getDataBuffer()).getData();
+	}
+	
+	
+	
+	/**
+	 * Get the image width.
+	 * @return the width, in pixels.
+	 */
+	public int getWidth()
+	{
+		return iDimensions.width;
+	}
+	
+	
+	/**
+	 * Get the image height.
+	 * @return the height, in pixels.
+	 */
+	public int getHeight()
+	{
+		return iDimensions.height;
+	}
+	
+	
+	
+	/**
+	 * Render a frame.
+	 * 
+	 * @param aScene the scene to render. May be null.
+	 * @param aCamera the camera to render it with.
+	 * @return the rendered image. This is the same instance on every call 
+	 * (until the size changes), so copy it if it needs to be kept. It may be 
+	 * incomplete if rendering failed, see {@link Renderer#getLastRenderError()}.
+	 */
+	public BufferedImage render(Node aScene, Camera aCamera)
+	{
+		iRenderer.setupViewport(iDimensions);
+		iRenderer.setupCamera(aCamera);
+		iRenderer.render(aScene, iPixels);
+		return iImage;
+	}
+	
+	
+	
+	/**
+	 * Render a frame into the given pixels instead of this target's image.
+	 * 
+	 * This allows frames to be rendered into buffers which get handed off 
+	 * elsewhere, e.g. to a 
+	 * {@link com.hiddentao.kai.renderer.output.FrameSink}.
+	 * 
+	 * @param aScene the scene to render. May be null.
+	 * @param aCamera the camera to render it with.
+	 * @param aPixels the RGB pixels to draw into, stored row by row. Must 
+	 * hold atleast <code>width x height</code> values.
+	 * @return true if the frame got rendered completely; false if rendering 
+	 * failed, see {@link Renderer#getLastRenderError()}.
+	 */
+	public boolean render(Node aScene, Camera aCamera, int[] aPixels)
+	{
+		if (aPixels.length < iDimensions.width * iDimensions.height)
+			throw new IllegalArgumentException("Pixel array too small: " + aPixels.length);
+		
+		iRenderer.setupViewport(iDimensions);
+		iRenderer.setupCamera(aCamera);
+		iRenderer.render(aScene, aPixels);
+		return null == iRenderer.getLastRenderError();
+	}
+	
+	
+	
+	/**
+	 * Render a frame into the given pixel buffer instead of this target's 
+	 * image.
+	 * 
+	 * @param aScene the scene to render. May be null.
+	 * @param aCamera the camera to render it with.
+	 * @param aPixels the RGB pixels to draw into, stored row by row 
+	 * starting at the buffer's current position. Must have atleast 
+	 * <code>width x height</code> values remaining.
+	 * @return true if the frame got rendered completely; false if rendering 
+	 * failed, see {@link Renderer#getLastRenderError()}.
+	 * 
+	 * @see com.hiddentao.kai.renderer.output.MappedFrameRing
+	 */
+	public boolean render(Node aScene, Camera aCamera, IntBuffer aPixels)
+	{
+		if (aPixels.remaining() < iDimensions.width * iDimensions.height)
+			throw new IllegalArgumentException("Pixel buffer too small: " + aPixels.remaining());
+		
+		iRenderer.setupViewport(iDimensions);
+		iRenderer.setupCamera(aCamera);
+		iRenderer.render(aScene, aPixels);
+		return null == iRenderer.getLastRenderError();
+	}
+	
+	
+	
+	/**
+	 * Transform a scene ready for it to be drawn into this target's image 
+	 * piece by piece with {@link #renderRegion(int, int, int, int)}.
+	 * 
+	 * @param aScene the scene to render. May be null.
+	 * @param aCamera the camera to render it with.
+	 * @return true if the scene is ready to be drawn; false if preparing it 
+	 * failed, see {@link Renderer#getLastRenderError()}.
+	 * 
+	 * @see Renderer#prepareRegions(Node)
+	 */
+	public boolean prepareRegions(Node aScene, Camera aCamera)
+	{
+		iRenderer.setupViewport(iDimensions);
+		iRenderer.setupCamera(aCamera);
+		return iRenderer.prepareRegions(aScene);
+	}
+	
+	
+	
+	/**
+	 * Draw a rectangle of the scene last passed to 
+	 * {@link #prepareRegions(Node, Camera)} into this target's image.
+	 * 
+	 * @param aLeft the left edge of the rectangle.
+	 * @param aTop the top edge of the rectangle.
+	 * @param aWidth the width of the rectangle.
+	 * @param aHeight the height of the rectangle.
+	 * @return true if the rectangle got drawn; false if the scene needs 
+	 * preparing again or drawing failed.
+	 * 
+	 * @see Renderer#renderRegion(int[], int, int, int, int)
+	 */
+	public boolean renderRegion(int aLeft, int aTop, int aWidth, int aHeight)
+	{
+		return iRenderer.renderRegion(iPixels, aLeft, aTop, aWidth, aHeight);
+	}
+	
+	
+	
+	/**
+	 * Get the image which frames get rendered into.
+	 * @return the image.
+	 */
+	public BufferedImage getImage()
+	{
+		return iImage;
+	}
+	
+	
+	
+	/**
+	 * Get the pixels of the image which frames get rendered into.
+	 * 
+	 * @return the RGB pixels, stored row by row. This is the image's own 
+	 * storage, not a copy.
+	 */
+	public int[] getPixels()
+	{
+		return iPixels;
+	}
+}
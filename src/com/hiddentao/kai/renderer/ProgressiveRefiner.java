@@ -0,0 +1,310 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.renderer;
+
+import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+
+import com.hiddentao.kai.nodes.Node;
+import com.hiddentao.kai.timer.TimerControl;
+import com.hiddentao.kai.timer.TimerEvent;
+
+
+
+/**
+ * Progressively refines the frame shown by a {@link RenderingSurface} once 
+ * user input has stopped.
+ * 
+ * The frame is re-rendered supersampled, a band at a time, over several 
+ * timer ticks. Each tick does as many bands as fit within a time slice, so 
+ * that the event thread is never blocked for long. Any interaction 
+ * abandons the refinement.
+ */
+final class ProgressiveRefiner implements TimerEvent
+{
+	/** Interval between refinement steps. */
+	private static final int TICK_MILLIS = 20;
+	/** Rendering time allowed per refinement step. */
+	private static final long SLICE_NANOS = 10 * 1000000L;
+	/** Height of each band, in display pixels. */
+	private static final int BAND_HEIGHT = 16;
+	
+	private final RenderingSurface iSurface;
+	private final int iIdleMillis;
+	private final int iSupersampling;
+	
+	private volatile long iLastInteraction = 0;
+	private volatile boolean iStepRequested = false;
+	private boolean iScheduled = false;
+	
+	/** Next row to refine; -1 if refinement is yet to start. */
+	private int iNextRow = -1;
+	private BufferedImage iImage = null;
+	private int[] iPixels = null;
+	private OffscreenRenderTarget iTarget = null;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * @param aSurface the surface whose frames to refine.
+	 * @param aIdleMillis how long input must be idle for before refining.
+	 * @param aSupersampling the no. of samples to take per pixel, in each 
+	 * dimension.
+	 */
+	ProgressiveRefiner(RenderingSurface aSurface, int aIdleMillis, int aSupersampling)
+	{
+		iSurface = aSurface;
+		iIdleMillis = Math.max(0, aIdleMillis);
+		iSupersampling = Math.max(1, aSupersampling);
+	}
+	
+	
+	
+	/**
+	 * Note that the user is interacting with the surface.
+	 */
+	void interacted()
+	{
+		iLastInteraction = System.currentTimeMillis();
+		restart();
+	}
+	
+	
+	/**
+	 * Get whether the user has interacted with the surface recently.
+	 * @return true if so; false if input has been idle for long enough.
+	 */
+	boolean isInteracting()
+	{
+		return System.currentTimeMillis() - iLastInteraction < iIdleMillis;
+	}
+	
+	
+	/**
+	 * Get whether the next paint should carry on refining.
+	 * @return true if so; false if a normal frame should be drawn.
+	 */
+	boolean isStepRequested()
+	{
+		return iStepRequested && 0 <= iNextRow && !isInteracting();
+	}
+	
+	
+	/**
+	 * Get how much of the frame has been refined.
+	 * @return a value between 0 and 100.
+	 */
+	int getPercentComplete()
+	{
+		return (null == iImage || 0 > iNextRow) ? 0 : (100 * iNextRow / iImage.getHeight());
+	}
+	
+	
+	
+	/**
+	 * Start refining again from scratch once input is idle.
+	 * 
+	 * This must be called whenever a normal frame gets drawn.
+	 */
+	void restart()
+	{
+		iStepRequested = false;
+		iNextRow = -1;
+		if (!iScheduled)
+		{
+			iScheduled = true;
+			TimerControl.getInstance().add(this, TICK_MILLIS);
+		}
+	}
+	
+	
+	/**
+	 * Stop refining and release all resources.
+	 */
+	void dispose()
+	{
+		TimerControl.getInstance().remove(this);
+		iScheduled = false;
+		iStepRequested = false;
+		iNextRow = -1;
+		iImage = null;
+		iPixels = null;
+		iTarget = null;
+	}
+	
+	
+	
+	/**
+	 * Do the next refinement step.
+	 * 
+	 * @param aRenderer the renderer to use.
+	 * @param aScene the scene.
+	 * @param aCamera the camera.
+	 * @param aWidth the display width.
+	 * @param aHeight the display height.
+	 * @return the image to show.
+	 */
+	BufferedImage step(Renderer aRenderer, Node aScene, Camera aCamera, 
+			int aWidth, int aHeight)
+	{
+		iStepRequested = false;
+		
+		final int ss = iSupersampling;
+		if (null == iTarget || iTarget.getRenderer() != aRenderer)
+		{
+			iTarget = new OffscreenRenderTarget(aRenderer, aWidth * ss, aHeight * ss);
+		}
+		else
+		{
+			iTarget.setSize(aWidth * ss, aHeight * ss);
+		}
+		if (null == iImage || iImage.getWidth() != aWidth || iImage.getHeight() != aHeight)
+		{
+			iImage = new BufferedImage(aWidth, aHeight, BufferedImage.TYPE_INT_RGB);
+			iPixels = ((DataBufferInt)iImage.getRaster().getDataBuffer()).getData();
+			iNextRow = 0;
+		}
+		
+		// transform the scene once per pass, the bands only get rasterised
+		if (0 == iNextRow && !iTarget.prepareRegions(aScene, aCamera))
+		{
+			stop();
+			return iImage;
+		}
+		
+		final long deadline = System.nanoTime() + SLICE_NANOS;
+		do
+		{
+			final int top = iNextRow;
+			final int bottom = Math.min(aHeight, top + BAND_HEIGHT);
+			
+			if (!iTarget.renderRegion(0, top * ss, aWidth * ss, (bottom - top) * ss))
+			{
+				// something else got rendered since the pass began
+				if (!iTarget.prepareRegions(aScene, aCamera) 
+						|| !iTarget.renderRegion(0, top * ss, aWidth * ss, (bottom - top) * ss))
+				{
+					stop();
+					return iImage;
+				}
+			}
+			downsample(top, bottom, aWidth);
+			
+			iNextRow = bottom;
+		}
+		while (iNextRow < aHeight && System.nanoTime() < deadline);
+		
+		if (iNextRow >= aHeight)
+		{
+			stop();
+		}
+		
+		return iImage;
+	}
+	
+	
+	/**
+	 * Stop the timer until the next call to {@link #restart()}.
+	 */
+	private void stop()
+	{
+		TimerControl.getInstance().remove(this);
+		iScheduled = false;
+	}
+	
+	
+	
+	/**
+	 * Start refining the given frame, which gets shown until overwritten 
+	 * by refined bands.
+	 * 
+	 * @param aFrame the frame that has just been shown.
+	 * @param aWidth the display width.
+	 * @param aHeight the display height.
+	 */
+	void begin(BufferedImage aFrame, int aWidth, int aHeight)
+	{
+		if (null == iImage || iImage.getWidth() != aWidth || iImage.getHeight() != aHeight)
+		{
+			iImage = new BufferedImage(aWidth, aHeight, BufferedImage.TYPE_INT_RGB);
+			iPixels = ((DataBufferInt)iImage.getRaster().getDataBuffer()).getData();
+		}
+		
+		Graphics2D g = iImage.createGraphics();
+		g.setRenderingHint(RenderingHints.KEY_INTERPOLATION, 
+				RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+		g.drawImage(aFrame, 0, 0, aWidth, aHeight, null);
+		g.dispose();
+		
+		iNextRow = 0;
+	}
+	
+	
+	
+	/**
+	 * Average each block of supersampled pixels into the refined image.
+	 */
+	private void downsample(int aTop, int aBottom, int aWidth)
+	{
+		final int ss = iSupersampling;
+		final int srcWidth = aWidth * ss;
+		final int samples = ss * ss;
+		final int[] src = iTarget.getPixels();
+		
+		for (int y=aTop; y<aBottom; ++y)
+		{
+			final int srcRow = y * ss * srcWidth;
+			final int dstRow = y * aWidth;
+			
+			for (int x=0; x<aWidth; ++x)
+			{
+				int r = 0, g = 0, b = 0;
+				for (int sy=0; sy<ss; ++sy)
+				{
+					int i = srcRow + sy * srcWidth + x * ss;
+					for (int sx=0; sx<ss; ++sx, ++i)
+					{
+						final int rgb = src[i];
+						r += (rgb >> 16) & 0xFF;
+						g += (rgb >> 8) & 0xFF;
+						b += rgb & 0xFF;
+					}
+				}
+				iPixels[dstRow + x] = ((r / samples) << 16) | ((g / samples) << 8) | (b / samples);
+			}
+		}
+	}
+	
+	
+	
+	public void doTimerEvent()
+	{
+		if (isInteracting())
+			return;
+		
+		iStepRequested = true;
+		iSurface.refresh();
+	}
+	
+	
+	public String getTimerEventDescription()
+	{
+		return "Progressive refinement";
+	}
+}
@@ -0,0 +1,85 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.renderer;
+
+import com.hiddentao.kai.nodes.Mesh;
+
+
+/**
+ * Receives notifications as frames get rendered, so that they can be 
+ * passed on to an external profiler (e.g. as Java Flight Recorder events).
+ * 
+ * Probes are installed with {@link RenderProbes#install(RenderProbe)}. When 
+ * no probe is installed, rendering only pays for a null check per stage 
+ * and per mesh.
+ * 
+ * Each begin call is followed by the matching end call on the same thread. 
+ * Several renderers may be rendering at once, and meshes may be processed 
+ * on the renderer's worker threads, so implementations must be 
+ * thread-safe and should keep per-thread state.
+ */
+public interface RenderProbe
+{
+	/**
+	 * A stage of rendering a frame is starting.
+	 * @param aStage the stage.
+	 */
+	public void stageBegin(FrameTimeMonitor.Stage aStage);
+	
+	/**
+	 * A stage of rendering a frame has finished.
+	 * @param aStage the stage.
+	 * @param aStats the frame's statistics so far. These are only complete 
+	 * once {@link FrameTimeMonitor.Stage#FRAME} has finished.
+	 */
+	public void stageEnd(FrameTimeMonitor.Stage aStage, FrameStats aStats);
+	
+	
+	/**
+	 * A mesh is about to be transformed, culled and lit.
+	 * @param aMesh the mesh.
+	 */
+	public void meshProcessBegin(Mesh aMesh);
+	
+	/**
+	 * A mesh has been transformed, culled and lit.
+	 * @param aMesh the mesh.
+	 * @param aNumTriangles the no. of triangles in the mesh.
+	 * @param aNumFrustumCulled the no. of triangles outside the near/far planes.
+	 * @param aNumBackfaceCulled the no. of triangles facing away from the camera.
+	 */
+	public void meshProcessEnd(Mesh aMesh, int aNumTriangles, 
+			int aNumFrustumCulled, int aNumBackfaceCulled);
+	
+	
+	/**
+	 * A mesh is about to be rasterised.
+	 * 
+	 * A mesh which straddles several redrawn regions gets rasterised once 
+	 * per region.
+	 * 
+	 * @param aMesh the mesh.
+	 */
+	public void meshRasterBegin(Mesh aMesh);
+	
+	/**
+	 * A mesh has been rasterised.
+	 * @param aMesh the mesh.
+	 * @param aNumTriangles the no. of triangles drawn.
+	 * @param aNumPixels the no. of pixels drawn.
+	 */
+	public void meshRasterEnd(Mesh aMesh, int aNumTriangles, long aNumPixels);
+}
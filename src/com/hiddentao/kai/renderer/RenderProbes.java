@@ -0,0 +1,81 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.renderer;
+
+import com.hiddentao.kai.logging.Logger;
+
+
+/**
+ * Holds the {@link RenderProbe} which renderers report to.
+ * 
+ * A probe can also be installed at startup by setting the system property 
+ * {@value #PROBE_CLASS_PROPERTY} to the name of a class which implements 
+ * {@link RenderProbe} and has a public no-arg constructor.
+ */
+public final class RenderProbes
+{
+	private static Logger LOG = Logger.getLogger(RenderProbes.class.getName());
+	
+	/** The system property which names the probe class to install at startup. */
+	public static final String PROBE_CLASS_PROPERTY = "kai.renderProbe";
+	
+	private static volatile RenderProbe PROBE = null;
+	
+	static
+	{
+		String className = null;
+		try
+		{
+			className = System.getProperty(PROBE_CLASS_PROPERTY);
+			if (null != className && 0 < className.length())
+			{
+				install((RenderProbe)Class.forName(className).getDeclaredConstructor().newInstance());
+			}
+		}
+		catch (Exception e)
+		{
+			LOG.warn("Unable to install render probe " + className, e);
+		}
+	}
+	
+	
+	private RenderProbes() {}
+	
+	
+	
+	/**
+	 * Set the probe which renderers report to.
+	 * 
+	 * This takes effect from the next frame rendered.
+	 * 
+	 * @param aProbe the probe. Use null to stop reporting.
+	 */
+	public static void install(RenderProbe aProbe)
+	{
+		PROBE = aProbe;
+		LOG.info("Render probe: " + (null == aProbe ? "none" : aProbe.getClass().getName()));
+	}
+	
+	
+	/**
+	 * Get the probe which renderers report to.
+	 * @return the probe; null if there isn't one.
+	 */
+	public static RenderProbe get()
+	{
+		return PROBE;
+	}
+}
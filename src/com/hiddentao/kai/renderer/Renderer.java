@@ -16,6 +16,7 @@ package com.hiddentao.kai.renderer;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.nio.IntBuffer;
 
 import com.hiddentao.kai.geometry.Dimensions2D;
 import com.hiddentao.kai.nodes.Node;
@@ -60,6 +61,48 @@ public abstract class Renderer extends NodeVisitor
 	public abstract void render(Node aRoot, Graphics2D aGraphics);  
 	
 	
+	/**
+	 * Render a frame straight into an array of pixels.
+	 * 
+	 * This doesn't need a graphics context and so works in headless mode 
+	 * too. No frame rate text is drawn.
+	 * 
+	 * @param aRoot the root node of the scenegraph. May be null.
+	 * @param aPixels the RGB pixels to draw into, stored row by row. Must 
+	 * hold atleast as many values as there are pixels in the viewport.
+	 * 
+	 * @see OffscreenRenderTarget
+	 */
+	public abstract void render(Node aRoot, int[] aPixels);  
+	
+	
+	/**
+	 * Render a frame straight into a buffer of pixels.
+	 * 
+	 * This is like {@link #render(Node, int[])} but allows drawing into 
+	 * memory outside the Java heap, e.g. a memory-mapped file.
+	 * 
+	 * @param aRoot the root node of the scenegraph. May be null.
+	 * @param aPixels the RGB pixels to draw into, stored row by row starting 
+	 * at the buffer's current position. Must have atleast as many values 
+	 * remaining as there are pixels in the viewport. The buffer's position 
+	 * and limit are left unchanged.
+	 */
+	public abstract void render(Node aRoot, IntBuffer aPixels);  
+	
+	
+	/**
+	 * Get the error which stopped the last frame from being rendered.
+	 * 
+	 * The render methods log errors rather than throwing them, so that an 
+	 * interactive view keeps going. Callers which need every frame to be 
+	 * complete, e.g. when rendering to files, should check this afterwards.
+	 * 
+	 * @return null if the last frame got rendered completely.
+	 */
+	public abstract Exception getLastRenderError();
+	
+	
 	/**
 	 * Set the background colour of the rendering viewport.
 	 * @param aColor a non-null colour.
@@ -114,6 +157,205 @@ public abstract class Renderer extends NodeVisitor
 	 */
 	public abstract boolean isZBufferEnabled();
 	
+	
+	
+	/**
+	 * Set the maximum no. of threads to use for transforming, culling and 
+	 * lighting meshes. 
+	 * 
+	 * Small scenes are always processed on the rendering thread, 
+	 * regardless of this setting.
+	 * 
+	 * @param aCount a value >= 1. The default is the no. of available 
+	 * processors.
+	 */
+	public abstract void setGeometryThreadCount(int aCount);
+	
+	
+	
+	/**
+	 * Get the maximum no. of threads used for transforming, culling and 
+	 * lighting meshes.
+	 * @return a value >= 1.
+	 */
+	public abstract int getGeometryThreadCount();
+	
+	
+	
+	/**
+	 * Set whether to only redraw the changed parts of the scene when 
+	 * rendering into the same pixels as last frame.
+	 * 
+	 * Changes are detected through each mesh's transformation, lighting and 
+	 * {@link com.hiddentao.kai.nodes.Node#version()}, so modifying a mesh's 
+	 * vertices in place requires a call to {@link #invalidate()}.
+	 * 
+	 * @param aVal true to enable; false to disable. It's enabled by default.
+	 */
+	public abstract void enableIncrementalRendering(boolean aVal);
+	
+	
+	
+	/**
+	 * Get whether incremental rendering is enabled or not.
+	 * @return true if enabled; false otherwise.
+	 */
+	public abstract boolean isIncrementalRenderingEnabled();
+	
+	
+	
+	/**
+	 * Force the whole viewport to be redrawn next frame.
+	 */
+	public abstract void invalidate();
+	
+	
+	
+	/**
+	 * Set what to draw in place of the scene's colours, to help diagnose 
+	 * rendering performance.
+	 * 
+	 * While this is anything other than {@link DebugView#NONE}, every frame 
+	 * is redrawn in full and {@link FrameStats#pixelsCovered} gets counted, 
+	 * which slows rendering down.
+	 * 
+	 * @param aView the view. Default is {@link DebugView#NONE}.
+	 */
+	public abstract void setDebugView(DebugView aView);
+	
+	
+	/**
+	 * Get what's being drawn in place of the scene's colours.
+	 * @return the view.
+	 */
+	public abstract DebugView getDebugView();
+	
+	
+	
+	/**
+	 * Get statistics about the last frame rendered.
+	 * 
+	 * @return a non-null object which gets overwritten by each frame.
+	 */
+	public abstract FrameStats getFrameStats();
+	
+	
+	
+	/**
+	 * Copy the statistics of the last completed frame.
+	 * 
+	 * Unlike {@link #getFrameStats()} this may be called from any thread, 
+	 * e.g. for monitoring.
+	 * 
+	 * @param aStats the object to copy them into.
+	 */
+	public abstract void copyLastFrameStats(FrameStats aStats);
+	
+	
+	
+	/**
+	 * Report how long it took to get the last rendered frame onto the 
+	 * screen.
+	 * 
+	 * This fills in {@link FrameStats#presentNanos} both in 
+	 * {@link #getFrameStats()} and in what {@link #copyLastFrameStats(FrameStats)} 
+	 * returns, and records a {@link FrameTimeMonitor.Stage#PRESENT} sample.
+	 * 
+	 * @param aNanos the time taken, in nanoseconds.
+	 */
+	public abstract void framePresented(long aNanos);
+	
+	
+	
+	/**
+	 * Get the durations of recently rendered frames and their stages.
+	 * 
+	 * @return a non-null monitor which keeps recording as frames get 
+	 * rendered.
+	 */
+	public abstract FrameTimeMonitor getFrameTimes();
+	
+	
+	
+	/**
+	 * Get a no. which changes whenever a setting which affects the rendered 
+	 * image changes, or {@link #invalidate()} is called.
+	 * @return the settings version no.
+	 */
+	public abstract int getSettingsVersion();
+	
+	
+	
+	/**
+	 * Restrict drawing to a rectangle within the viewport.
+	 * 
+	 * Pixels outside of the rectangle are left untouched, allowing a frame 
+	 * to be rendered piece by piece. Such partial renders are not recorded 
+	 * in {@link #getFrameTimes()} or {@link #copyLastFrameStats(FrameStats)}.
+	 * 
+	 * @param aLeft the left edge of the rectangle.
+	 * @param aTop the top edge of the rectangle.
+	 * @param aWidth the width of the rectangle.
+	 * @param aHeight the height of the rectangle.
+	 */
+	public abstract void setScissor(int aLeft, int aTop, int aWidth, int aHeight);
+	
+	
+	
+	/**
+	 * Remove the restriction set by {@link #setScissor(int, int, int, int)} 
+	 * so that the whole viewport gets drawn.
+	 */
+	public abstract void clearScissor();
+	
+	
+	
+	/**
+	 * Transform the scene ready for it to be drawn piece by piece with 
+	 * {@link #renderRegion(int[], int, int, int, int)}.
+	 * 
+	 * This does all the per-frame work except rasterisation, so that it 
+	 * only needs doing once no matter how many regions get drawn. The 
+	 * prepared scene is dropped by the next call to one of the 
+	 * <code>render</code> methods. Like scissored renders, it is not 
+	 * recorded in {@link #getFrameTimes()}.
+	 * 
+	 * @param aRoot the root node of the scenegraph. May be null.
+	 * @return true if the scene is ready to be drawn; false if preparing it 
+	 * failed, see {@link #getLastRenderError()}.
+	 */
+	public abstract boolean prepareRegions(Node aRoot);
+	
+	
+	
+	/**
+	 * Draw a rectangle of the scene prepared by {@link #prepareRegions(Node)}.
+	 * 
+	 * Pixels outside of the rectangle are left untouched.
+	 * 
+	 * @param aPixels the RGB pixels to draw into, stored row by row. Must 
+	 * hold atleast as many values as there are pixels in the viewport.
+	 * @param aLeft the left edge of the rectangle.
+	 * @param aTop the top edge of the rectangle.
+	 * @param aWidth the width of the rectangle.
+	 * @param aHeight the height of the rectangle.
+	 * @return true if the rectangle got drawn; false if there is no prepared 
+	 * scene (e.g. because a frame has been rendered since) or drawing failed.
+	 */
+	public abstract boolean renderRegion(int[] aPixels, int aLeft, int aTop, int aWidth, int aHeight);
+	
+	
+	
+	/**
+	 * Release any resources (e.g. worker threads, JMX registrations) held 
+	 * by this renderer.
+	 * 
+	 * The renderer may still be used afterwards, in which case worker 
+	 * threads will get recreated as needed, but it will no longer be 
+	 * visible through JMX.
+	 */
+	public abstract void dispose();
+	
 
 	
 }
@@ -0,0 +1,118 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.renderer;
+
+
+
+/**
+ * The JMX management interface of a {@link Renderer}, allowing its 
+ * statistics to be watched and its settings to be changed from e.g. 
+ * JConsole.
+ * 
+ * Frame statistics are those of the last frame rendered. Frame times are 
+ * in milliseconds and cover the last {@link FrameTimeMonitor#WINDOW_MILLIS} 
+ * milliseconds.
+ * 
+ * Settings changed through this interface take effect from the next frame 
+ * rendered. Nothing gets re-rendered just because a setting changed.
+ * 
+ * @see RendererMBeanImpl
+ */
+public interface RendererMBean
+{
+	/** @see FrameStats#trianglesSubmitted */
+	public int getTrianglesSubmitted();
+	/** @see FrameStats#trianglesFrustumCulled */
+	public int getTrianglesFrustumCulled();
+	/** @see FrameStats#trianglesBackfaceCulled */
+	public int getTrianglesBackfaceCulled();
+	/** @see FrameStats#trianglesRasterised */
+	public int getTrianglesRasterised();
+	/** @see FrameStats#spans */
+	public long getSpans();
+	/** @see FrameStats#pixelsWritten */
+	public long getPixelsWritten();
+	/** @see FrameStats#pixelsDepthRejected */
+	public long getPixelsDepthRejected();
+	/** @see FrameStats#overdrawRatio() */
+	public float getOverdrawRatio();
+	/** @see FrameStats#depthComplexity() */
+	public float getDepthComplexity();
+	
+	/** The no. of frames rendered recently. */
+	public long getRecentFrameCount();
+	/** The median recent frame time. */
+	public double getFrameTimeP50Millis();
+	/** The 95th percentile recent frame time. */
+	public double getFrameTimeP95Millis();
+	/** The 99th percentile recent frame time. */
+	public double getFrameTimeP99Millis();
+	/** The longest recent frame time. */
+	public double getFrameTimeMaxMillis();
+	
+	/**
+	 * Get a percentile of the recent durations of a stage of rendering.
+	 * @param aStage the name of a {@link FrameTimeMonitor.Stage}, e.g. "RASTER".
+	 * @param aPercentile the percentage, between 0 and 100.
+	 * @return the duration in milliseconds.
+	 */
+	public double stageTimeMillis(String aStage, double aPercentile);
+	
+	/**
+	 * Forget the recent frame times.
+	 */
+	public void resetFrameTimes();
+	
+	
+	/** @see Renderer#isBackfaceCullingEnabled() */
+	public boolean isBackfaceCullingEnabled();
+	/** @see Renderer#enableBackfaceCulling(boolean) */
+	public void setBackfaceCullingEnabled(boolean aVal);
+	
+	/** @see Renderer#isWireframeModeEnabled() */
+	public boolean isWireframeModeEnabled();
+	/** @see Renderer#enableWireframeMode(boolean) */
+	public void setWireframeModeEnabled(boolean aVal);
+	
+	/** @see Renderer#isZBufferEnabled() */
+	public boolean isZBufferEnabled();
+	/** @see Renderer#enableZBuffer(boolean) */
+	public void setZBufferEnabled(boolean aVal);
+	
+	/** @see Renderer#isIncrementalRenderingEnabled() */
+	public boolean isIncrementalRenderingEnabled();
+	/** @see Renderer#enableIncrementalRendering(boolean) */
+	public void setIncrementalRenderingEnabled(boolean aVal);
+	
+	/** 
+	 * The name of the {@link DebugView}. 
+	 * @see Renderer#getDebugView() 
+	 */
+	public String getDebugView();
+	/** 
+	 * @param aView the name of a {@link DebugView}, e.g. "OVERDRAW".
+	 * @see Renderer#setDebugView(DebugView) 
+	 */
+	public void setDebugView(String aView);
+	
+	/** @see Renderer#getGeometryThreadCount() */
+	public int getGeometryThreadCount();
+	/** @see Renderer#setGeometryThreadCount(int) */
+	public void setGeometryThreadCount(int aCount);
+	
+	/** @see Renderer#invalidate() */
+	public void invalidate();
+}
@@ -0,0 +1,278 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.renderer;
+
+import java.lang.management.ManagementFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.MBeanServer;
+import javax.management.ObjectName;
+import javax.management.StandardMBean;
+
+import com.hiddentao.kai.logging.Logger;
+
+
+/**
+ * Exposes a {@link Renderer} through JMX.
+ * 
+ * Use {@link #register(Renderer, String)} to make a renderer visible in the 
+ * platform MBean server, under the name 
+ * <code>com.hiddentao.kai:type=Renderer,name=&lt;name&gt;-&lt;no.&gt;</code>.
+ */
+public final class RendererMBeanImpl implements RendererMBean
+{
+	private static Logger LOG = Logger.getLogger(RendererMBeanImpl.class.getName());
+	
+	private static final AtomicInteger RENDERER_NUMBER = new AtomicInteger(0);
+	
+	private static final double NANOS_PER_MILLI = 1000000.0;
+	
+	private Renderer iRenderer = null;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * @param aRenderer the renderer to expose.
+	 */
+	public RendererMBeanImpl(Renderer aRenderer)
+	{
+		iRenderer = aRenderer;
+	}
+	
+	
+	
+	/**
+	 * Register a renderer with the platform MBean server.
+	 * 
+	 * @param aRenderer the renderer.
+	 * @param aName the name to register it under. A unique no. gets appended.
+	 * @return the name it was registered under; null if registration failed.
+	 */
+	public static ObjectName register(Renderer aRenderer, String aName)
+	{
+		try
+		{
+			ObjectName name = new ObjectName("com.hiddentao.kai:type=Renderer,name=" 
+					+ aName + "-" + RENDERER_NUMBER.incrementAndGet());
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			server.registerMBean(new StandardMBean(new RendererMBeanImpl(aRenderer), RendererMBean.class), name);
+			return name;
+		}
+		catch (Exception e)
+		{
+			LOG.warn("Unable to register renderer MBean", e);
+			return null;
+		}
+	}
+	
+	
+	/**
+	 * Unregister a renderer from the platform MBean server.
+	 * 
+	 * @param aName the name returned by {@link #register(Renderer, String)}. 
+	 * If null then nothing happens.
+	 */
+	public static void unregister(ObjectName aName)
+	{
+		if (null == aName)
+			return;
+		
+		try
+		{
+			MBeanServer server = ManagementFactory.getPlatformMBeanServer();
+			if (server.isRegistered(aName))
+			{
+				server.unregisterMBean(aName);
+			}
+		}
+		catch (Exception e)
+		{
+			LOG.warn("Unable to unregister renderer MBean " + aName, e);
+		}
+	}
+	
+	
+	
+	/**
+	 * Get a copy of the last completed frame's statistics, since the 
+	 * renderer's own ones are being written to whilst frames render.
+	 */
+	private FrameStats lastFrameStats()
+	{
+		FrameStats stats = new FrameStats();
+		iRenderer.copyLastFrameStats(stats);
+		return stats;
+	}
+	
+	
+	
+	public int getTrianglesSubmitted()
+	{
+		return lastFrameStats().trianglesSubmitted;
+	}
+	
+	public int getTrianglesFrustumCulled()
+	{
+		return lastFrameStats().trianglesFrustumCulled;
+	}
+	
+	public int getTrianglesBackfaceCulled()
+	{
+		return lastFrameStats().trianglesBackfaceCulled;
+	}
+	
+	public int getTrianglesRasterised()
+	{
+		return lastFrameStats().trianglesRasterised;
+	}
+	
+	public long getSpans()
+	{
+		return lastFrameStats().spans;
+	}
+	
+	public long getPixelsWritten()
+	{
+		return lastFrameStats().pixelsWritten;
+	}
+	
+	public long getPixelsDepthRejected()
+	{
+		return lastFrameStats().pixelsDepthRejected;
+	}
+	
+	public float getOverdrawRatio()
+	{
+		return lastFrameStats().overdrawRatio();
+	}
+	
+	public float getDepthComplexity()
+	{
+		return lastFrameStats().depthComplexity();
+	}
+	
+	
+	
+	public long getRecentFrameCount()
+	{
+		return iRenderer.getFrameTimes().getCount(FrameTimeMonitor.Stage.FRAME);
+	}
+	
+	public double getFrameTimeP50Millis()
+	{
+		return stageTimeMillis(FrameTimeMonitor.Stage.FRAME, 50);
+	}
+	
+	public double getFrameTimeP95Millis()
+	{
+		return stageTimeMillis(FrameTimeMonitor.Stage.FRAME, 95);
+	}
+	
+	public double getFrameTimeP99Millis()
+	{
+		return stageTimeMillis(FrameTimeMonitor.Stage.FRAME, 99);
+	}
+	
+	public double getFrameTimeMaxMillis()
+	{
+		return iRenderer.getFrameTimes().getMax(FrameTimeMonitor.Stage.FRAME) / NANOS_PER_MILLI;
+	}
+	
+	public double stageTimeMillis(String aStage, double aPercentile)
+	{
+		// throws IllegalArgumentException for unknown stages, which JMX 
+		// passes back to the caller
+		return stageTimeMillis(FrameTimeMonitor.Stage.valueOf(aStage), aPercentile);
+	}
+	
+	private double stageTimeMillis(FrameTimeMonitor.Stage aStage, double aPercentile)
+	{
+		return iRenderer.getFrameTimes().getPercentile(aStage, aPercentile) / NANOS_PER_MILLI;
+	}
+	
+	public void resetFrameTimes()
+	{
+		iRenderer.getFrameTimes().reset();
+	}
+	
+	
+	
+	public boolean isBackfaceCullingEnabled()
+	{
+		return iRenderer.isBackfaceCullingEnabled();
+	}
+	
+	public void setBackfaceCullingEnabled(boolean aVal)
+	{
+		iRenderer.enableBackfaceCulling(aVal);
+	}
+	
+	public boolean isWireframeModeEnabled()
+	{
+		return iRenderer.isWireframeModeEnabled();
+	}
+	
+	public void setWireframeModeEnabled(boolean aVal)
+	{
+		iRenderer.enableWireframeMode(aVal);
+	}
+	
+	public boolean isZBufferEnabled()
+	{
+		return iRenderer.isZBufferEnabled();
+	}
+	
+	public void setZBufferEnabled(boolean aVal)
+	{
+		iRenderer.enableZBuffer(aVal);
+	}
+	
+	public boolean isIncrementalRenderingEnabled()
+	{
+		return iRenderer.isIncrementalRenderingEnabled();
+	}
+	
+	public void setIncrementalRenderingEnabled(boolean aVal)
+	{
+		iRenderer.enableIncrementalRendering(aVal);
+	}
+	
+	public String getDebugView()
+	{
+		return iRenderer.getDebugView().name();
+	}
+	
+	public void setDebugView(String aView)
+	{
+		iRenderer.setDebugView(DebugView.valueOf(aView));
+	}
+	
+	public int getGeometryThreadCount()
+	{
+		return iRenderer.getGeometryThreadCount();
+	}
+	
+	public void setGeometryThreadCount(int aCount)
+	{
+		iRenderer.setGeometryThreadCount(aCount);
+	}
+	
+	public void invalidate()
+	{
+		iRenderer.invalidate();
+	}
+}
@@ -14,9 +14,12 @@
 
 package com.hiddentao.kai.renderer;
 
+import java.awt.Color;
 import java.awt.FontMetrics;
 import java.awt.Graphics;
 import java.awt.Graphics2D;
+import java.awt.RenderingHints;
+import java.awt.image.BufferedImage;
 
 import javax.swing.JPanel;
 
@@ -25,10 +28,30 @@ import com.hiddentao.kai.geometry.Dimensions2D;
 import com.hiddentao.kai.logging.Logger;
 import com.hiddentao.kai.nodes.Node;
 import com.hiddentao.kai.renderer.interaction.InteractionHandler;
+import com.hiddentao.kai.timer.TimerControl;
+import com.hiddentao.kai.timer.TimerEvent;
 
 
 /**
  * A surface which renders graphics and handles user input.
+ * 
+ * The scene is rendered into a retained offscreen image which is then 
+ * copied onto the screen, allowing the renderer to only redraw what has 
+ * changed since the last frame.
+ * 
+ * If a {@link ResolutionScaler} is set then the image may be rendered at 
+ * a lower resolution and stretched to fit the surface, in order to keep 
+ * frame times within budget. Once the view goes idle it is rendered again 
+ * at full resolution.
+ * 
+ * If progressive refinement is enabled then frames are rendered at a 
+ * reduced resolution while the user is interacting, and are then 
+ * re-rendered supersampled over several timer ticks once input has been 
+ * idle for a while.
+ * 
+ * The scene is only re-rendered when the scene's version, the camera, the 
+ * surface size or the renderer's settings have changed since the last 
+ * frame; otherwise the last frame is simply shown again.
  */
 public final class RenderingSurface extends JPanel
 {
@@ -38,9 +61,32 @@ public final class RenderingSurface extends JPanel
 	
 	private InteractionHandler iHandler = null;
 	private Renderer iRenderer = null;
-	private Node iScene = null;
+	private volatile Node iScene = null;
 	private Dimensions2D iDimensions = new Dimensions2D();
 	private Camera iCamera = null;
+	private OffscreenRenderTarget iTarget = null;
+	private ResolutionScaler iScaler = null;
+	/** Checks whether a reduced resolution view has gone idle. */
+	private final IdleCheck iIdleCheck = new IdleCheck();
+	private ProgressiveRefiner iRefiner = null;
+	private float iInteractionScale = 0.5f;
+	private StringBuilder iTempStr = new StringBuilder(24);
+	private boolean iFrameTimeOverlayEnabled = false;
+	private final StringBuilder iOverlayStr = new StringBuilder(64);
+	
+	/** The stages shown by the frame time overlay. */
+	private static final FrameTimeMonitor.Stage[] OVERLAY_STAGES = FrameTimeMonitor.Stage.values();
+	
+	/* what the last rendered frame was rendered with */
+	private BufferedImage iShownImage = null;
+	private Renderer iRenderedRenderer = null;
+	private int iRenderedSettingsVersion = 0;
+	private Node iRenderedScene = null;
+	private int iRenderedSceneVersion = 0;
+	private Camera iRenderedCamera = new Camera();
+	private int iRenderedWidth = 0;
+	private int iRenderedHeight = 0;
+	private float iRenderedScale = 0;
 
 	
 	/**
@@ -122,6 +168,109 @@ public final class RenderingSurface extends JPanel
 	}
 	
 	
+	/**
+	 * Get the resolution scaler.
+	 * @return the resolution scaler. Default is null.
+	 */
+	public ResolutionScaler getResolutionScaler()
+	{
+		return iScaler;
+	}
+	
+	/**
+	 * Set the resolution scaler.
+	 * 
+	 * @param aScaler the new scaler. Use null to always render at full 
+	 * resolution.
+	 */	
+	public void setResolutionScaler(ResolutionScaler aScaler)
+	{
+		iScaler = aScaler;
+		if (null == aScaler)
+		{
+			iIdleCheck.stop();
+		}
+		refresh();
+	}
+	
+	
+	/**
+	 * Render at a reduced resolution while the user is interacting and 
+	 * progressively refine the frame once input stops.
+	 * 
+	 * @param aIdleMillis how long input must be idle for before refining.
+	 * @param aSupersampling the no. of samples to take per pixel (in each 
+	 * dimension) when refining, e.g. 2.
+	 */
+	public void enableProgressiveRefinement(int aIdleMillis, int aSupersampling)
+	{
+		disableProgressiveRefinement();
+		iRefiner = new ProgressiveRefiner(this, aIdleMillis, aSupersampling);
+		refresh();
+	}
+	
+	/**
+	 * Stop progressively refining frames.
+	 */
+	public void disableProgressiveRefinement()
+	{
+		if (null != iRefiner)
+		{
+			iRefiner.dispose();
+			iRefiner = null;
+		}
+	}
+	
+	/**
+	 * Set the resolution to render at while the user is interacting, if 
+	 * progressive refinement is enabled.
+	 * 
+	 * @param aScale the fraction of the full resolution (in each 
+	 * dimension), between 0 and 1. Default is 0.5.
+	 */
+	public void setInteractionScale(float aScale)
+	{
+		iInteractionScale = Math.max(0.05f, Math.min(1.0f, aScale));
+	}
+	
+	/**
+	 * Note that the user is interacting with this surface, e.g. dragging 
+	 * the view around.
+	 * 
+	 * This gets called by interaction handlers.
+	 */
+	public void notifyInteraction()
+	{
+		if (null != iRefiner)
+		{
+			iRefiner.interacted();
+		}
+	}
+	
+	
+	/**
+	 * Set whether to show recent frame time percentiles for each stage of 
+	 * rendering (see {@link Renderer#getFrameTimes()}) in place of the 
+	 * frames-per-second of the last frame.
+	 * 
+	 * @param aVal true to show them; false otherwise. Default is false.
+	 */
+	public void enableFrameTimeOverlay(boolean aVal)
+	{
+		iFrameTimeOverlayEnabled = aVal;
+		repaint();
+	}
+	
+	/**
+	 * Get whether recent frame time percentiles are being shown.
+	 * @return true if so; false otherwise.
+	 */
+	public boolean isFrameTimeOverlayEnabled()
+	{
+		return iFrameTimeOverlayEnabled;
+	}
+	
+	
 	/**
 	 * Get the current interaction handler for this window.
 	 * @return the current interaction handler. Default is null.
@@ -185,11 +334,77 @@ public final class RenderingSurface extends JPanel
 		
 		iDimensions.width = getWidth();
 		iDimensions.height = getHeight();
+		if (0 >= iDimensions.width || 0 >= iDimensions.height)
+			return;
+		
+		Graphics2D g = (Graphics2D)aGraphics;
+		
+		// apply input which has built up since the last frame
+		if (null != iHandler)
+		{
+			iHandler.applyPendingInput();
+		}
 		
-		iRenderer.setupViewport(iDimensions);
-		iRenderer.setupCamera(iCamera);
+		final boolean interacting = (null != iRefiner && iRefiner.isInteracting());
 		
-		iRenderer.render(iScene, (Graphics2D)aGraphics);
+		// nothing has been rendered for a while, so show it at full quality
+		if (null != iScaler && !interacting && iScaler.isIdle())
+		{
+			iScaler.reset();
+		}
+		
+		float scale = (null != iScaler) ? iScaler.getScale() : 1.0f;
+		final boolean reducedForInteraction = (interacting && iInteractionScale < scale); 
+		if (reducedForInteraction)
+		{
+			scale = iInteractionScale;
+		}
+		
+		if (!isUpToDate(scale))
+		{
+			final long timeTakenInNanos = renderFrame(g, scale, interacting, reducedForInteraction);
+			
+			// show fps
+			iTempStr.setLength(0);
+			iTempStr.append(Math.round((1.0f / (timeTakenInNanos / 1000000000.0f))));
+			iTempStr.append(" fps");
+		}
+		else if (null != iRefiner && iRefiner.isStepRequested())
+		{
+			iShownImage = iRefiner.step(iRenderer, iScene, iCamera, 
+					iDimensions.width, iDimensions.height);
+			drawShownImage(g);
+			
+			// show progress
+			iTempStr.setLength(0);
+			iTempStr.append("refining ");
+			iTempStr.append(iRefiner.getPercentComplete());
+			iTempStr.append("%");
+		}
+		else
+		{
+			// nothing has changed
+			drawShownImage(g);
+		}
+		
+		aGraphics.setColor(Color.WHITE);
+		FontMetrics fontMetrics = aGraphics.getFontMetrics();
+		int fontHeight = fontMetrics.getHeight() + 2;
+		
+		if (iFrameTimeOverlayEnabled)
+		{
+			final FrameTimeMonitor times = iRenderer.getFrameTimes();
+			for (int i=0; i<OVERLAY_STAGES.length; ++i)
+			{
+				iOverlayStr.setLength(0);
+				times.appendSummary(OVERLAY_STAGES[i], iOverlayStr);
+				aGraphics.drawString(iOverlayStr.toString(), 5, 10 + (fontHeight * i));
+			}
+		}
+		else
+		{
+			aGraphics.drawString(iTempStr.toString(), 5, 10);
+		}
 		
 		// show commands
 		if (null != iHandler)
@@ -197,9 +412,6 @@ public final class RenderingSurface extends JPanel
 			String commands[] = iHandler.getKeyAndMouseCommands();
 			if (null != commands)
 			{
-				FontMetrics fontMetrics = aGraphics.getFontMetrics();
-				
-				int fontHeight = fontMetrics.getHeight() + 2;
 				int rightEdge = iDimensions.width - 2;
 				
 				for (int i=0; i<commands.length; ++i)
@@ -215,6 +427,157 @@ public final class RenderingSurface extends JPanel
 
 	
 
+	/**
+	 * Get whether the last frame shown is still an accurate picture of the 
+	 * scene.
+	 * 
+	 * @param aScale the resolution scale the next frame would be rendered at.
+	 * @return true if so; false if the scene must be rendered again.
+	 */
+	private boolean isUpToDate(float aScale)
+	{
+		return null != iShownImage
+				&& iRenderer == iRenderedRenderer
+				&& iRenderer.getSettingsVersion() == iRenderedSettingsVersion
+				&& iScene == iRenderedScene
+				&& iScene.version() == iRenderedSceneVersion
+				&& iDimensions.width == iRenderedWidth
+				&& iDimensions.height == iRenderedHeight
+				&& aScale == iRenderedScale
+				&& iCamera.equalTo(iRenderedCamera);
+	}
+	
+	
+	
+	/**
+	 * Draw the last frame shown onto the surface again.
+	 */
+	private void drawShownImage(Graphics2D aGraphics)
+	{
+		if (iShownImage.getWidth() == iDimensions.width && iShownImage.getHeight() == iDimensions.height)
+		{
+			aGraphics.drawImage(iShownImage, 0, 0, null);
+		}
+		else
+		{
+			aGraphics.setRenderingHint(RenderingHints.KEY_INTERPOLATION, 
+					RenderingHints.VALUE_INTERPOLATION_BILINEAR);
+			aGraphics.drawImage(iShownImage, 0, 0, iDimensions.width, iDimensions.height, null);
+		}
+	}
+	
+	
+	
+	/**
+	 * Render the scene and draw it onto the surface.
+	 * 
+	 * @param aGraphics the surface's graphics context.
+	 * @param aScale the fraction of the surface's resolution to render at.
+	 * @param aInteracting whether the user is interacting with the surface.
+	 * @param aReducedForInteraction whether the scale has been reduced 
+	 * because of the interaction.
+	 * @return the time taken, in nanoseconds.
+	 */
+	private long renderFrame(Graphics2D aGraphics, float aScale, 
+			boolean aInteracting, boolean aReducedForInteraction)
+	{
+		final int width = Math.max(1, Math.round(iDimensions.width * aScale));
+		final int height = Math.max(1, Math.round(iDimensions.height * aScale));
+		
+		// note what's being rendered before rendering it, so that changes 
+		// made by other threads in the meantime get picked up next time
+		iRenderedRenderer = iRenderer;
+		iRenderedSettingsVersion = iRenderer.getSettingsVersion();
+		iRenderedScene = iScene;
+		iRenderedSceneVersion = iScene.version();
+		iRenderedCamera.set(iCamera);
+		iRenderedWidth = iDimensions.width;
+		iRenderedHeight = iDimensions.height;
+		iRenderedScale = aScale;
+		
+		if (null == iTarget || iTarget.getRenderer() != iRenderer)
+		{
+			iTarget = new OffscreenRenderTarget(iRenderer, width, height);
+		}
+		else
+		{
+			iTarget.setSize(width, height);
+		}
+		
+		final long startTime = System.nanoTime();
+		
+		iShownImage = iTarget.render(iScene, iCamera);
+		
+		final RenderProbe probe = RenderProbes.get();
+		if (null != probe)
+			probe.stageBegin(FrameTimeMonitor.Stage.PRESENT);
+		
+		final long presentStart = System.nanoTime();
+		drawShownImage(aGraphics);
+		final long presentNanos = System.nanoTime() - presentStart;
+		iRenderer.framePresented(presentNanos);
+		if (null != probe)
+			probe.stageEnd(FrameTimeMonitor.Stage.PRESENT, iRenderer.getFrameStats());
+		
+		final long timeTakenInNanos = System.nanoTime() - startTime + 1;	// >0
+		
+		// frames shrunk for interaction say nothing about the scaler's choice
+		if (null != iScaler && !aReducedForInteraction)
+		{
+			iScaler.frameRendered(timeTakenInNanos);
+		}
+		
+		// keep an eye out for the view going idle at a reduced resolution
+		if (null != iScaler && 1.0f > iScaler.getScale())
+		{
+			iIdleCheck.start(iScaler.getIdleMillis());
+		}
+		else
+		{
+			iIdleCheck.stop();
+		}
+		
+		// the scene may have changed, so any refinement must start over
+		if (null != iRefiner)
+		{
+			iRefiner.restart();
+			if (!aInteracting)
+			{
+				iRefiner.begin(iShownImage, iDimensions.width, iDimensions.height);
+			}
+		}
+		
+		return timeTakenInNanos;
+	}
+	
+	
+
+	/**
+	 * Re-render the scene if the given node is part of it and this surface 
+	 * is showing.
+	 * 
+	 * This may be called from any thread.
+	 * 
+	 * @param aNode the node which has changed.
+	 */
+	public void refresh(Node aNode)
+	{
+		if (!isShowing())
+			return;
+		
+		final Node scene = iScene;
+		for (Node n = aNode; null != n; n = n.parent())
+		{
+			if (n == scene)
+			{
+				refresh();
+				return;
+			}
+		}
+	}
+	
+	
+
 	/**
 	 * Re-render the scene.
 	 */
@@ -222,6 +585,60 @@ public final class RenderingSurface extends JPanel
 	{
 		AppBridge.getApp().refreshGui();
 	}
+	
+	
+	
+	/**
+	 * Repaints the surface once the resolution scaler says the view has 
+	 * gone idle, since nothing else would.
+	 */
+	private final class IdleCheck implements TimerEvent
+	{
+		private boolean iScheduled = false;
+		
+		
+		/**
+		 * Start checking, if not already doing so.
+		 * @param aIdleMillis the scaler's idle time.
+		 */
+		synchronized void start(int aIdleMillis)
+		{
+			if (!iScheduled)
+			{
+				iScheduled = true;
+				TimerControl.getInstance().add(this, Math.max(10, aIdleMillis / 2));
+			}
+		}
+		
+		
+		/**
+		 * Stop checking.
+		 */
+		synchronized void stop()
+		{
+			if (iScheduled)
+			{
+				iScheduled = false;
+				TimerControl.getInstance().remove(this);
+			}
+		}
+		
+		
+		public void doTimerEvent()
+		{
+			final ResolutionScaler scaler = iScaler;
+			if (null != scaler && scaler.isIdle())
+			{
+				refresh();
+			}
+		}
+		
+		
+		public String getTimerEventDescription()
+		{
+			return "Resolution scaler idle check";
+		}
+	}
 }
 
 
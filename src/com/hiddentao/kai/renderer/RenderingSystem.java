@@ -24,7 +24,23 @@ public interface RenderingSystem
 {
 	/**
 	 * Get the renderer for this rendering system.
+	 * 
+	 * This is a single shared instance. Use {@link #createRenderer()} to 
+	 * render on more than one thread at a time.
+	 * 
 	 * @return a non-null renderer.
 	 */
 	public Renderer renderer();
+	
+	
+	/**
+	 * Create a new, independent renderer.
+	 * 
+	 * Renderers created this way share no state with each other or with 
+	 * {@link #renderer()}, so each can be used on its own thread. The caller 
+	 * should call {@link Renderer#dispose()} once done with it.
+	 * 
+	 * @return a non-null renderer.
+	 */
+	public Renderer createRenderer();
 }
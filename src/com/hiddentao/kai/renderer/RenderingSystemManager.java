@@ -40,6 +40,7 @@ public class RenderingSystemManager implements HasStaticData
 	
 	public void resetStaticData()
 	{
+		iSoftwareRenderSystem.renderer().dispose();
 		iInstance = null;
 	}	
 	
@@ -0,0 +1,238 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.renderer;
+
+import com.hiddentao.kai.logging.Logger;
+
+
+
+/**
+ * Picks the resolution at which to render so that frames take no longer 
+ * than a given time budget.
+ * 
+ * Frame times are averaged over a rolling window. If the average goes over 
+ * budget then the resolution is lowered one step; it is only raised again 
+ * once the average is low enough that the frame would still fit within the 
+ * budget (with some headroom) at the higher resolution. The window is 
+ * restarted after every change so that each decision is based on frames 
+ * rendered at the current resolution.
+ * 
+ * Once no frames have been rendered for a while the view is considered 
+ * idle and should go back to full resolution (see {@link #isIdle()}).
+ */
+public final class ResolutionScaler
+{
+	private static Logger LOG = Logger.getLogger(ResolutionScaler.class.getName());
+	
+	/** No. of frames to average over. */
+	public static final int WINDOW_SIZE = 8;
+	
+	/** The ratio between successive scale steps. */
+	private static final float STEP = 0.8f;
+	
+	/** Fraction of the budget a frame must fit within before scaling up. */
+	private static final float HEADROOM = 0.8f;
+	
+	/** Default time without frames after which the view is idle. */
+	public static final int DEFAULT_IDLE_MILLIS = 250;
+	
+	private long iBudgetNanos;
+	private float iMinScale;
+	private volatile float iScale = 1.0f;
+	private volatile int iIdleMillis = DEFAULT_IDLE_MILLIS;
+	private volatile long iLastFrameMillis = 0;
+	
+	private long[] iFrameTimes = new long[WINDOW_SIZE];
+	private int iNumFrameTimes = 0;
+	private int iNextFrameTime = 0;
+	private long iTotalFrameTime = 0;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * @param aBudgetMillis the target frame time, in milliseconds.
+	 * @param aMinScale the lowest fraction of the full resolution (in each 
+	 * dimension) to render at, between 0 and 1.
+	 */
+	public ResolutionScaler(float aBudgetMillis, float aMinScale)
+	{
+		setBudget(aBudgetMillis);
+		iMinScale = Math.max(0.05f, Math.min(1.0f, aMinScale));
+	}
+	
+	
+	
+	/**
+	 * Set the target frame time.
+	 * @param aBudgetMillis the target frame time, in milliseconds.
+	 */
+	public void setBudget(float aBudgetMillis)
+	{
+		iBudgetNanos = (long)(aBudgetMillis * 1000000.0f);
+		clearWindow();
+	}
+	
+	
+	/**
+	 * Get the target frame time.
+	 * @return the target frame time, in milliseconds.
+	 */
+	public float getBudget()
+	{
+		return iBudgetNanos / 1000000.0f;
+	}
+	
+	
+	
+	/**
+	 * Set how long no frames must be rendered for before the view is 
+	 * considered idle.
+	 * @param aIdleMillis the time, in milliseconds.
+	 */
+	public void setIdleMillis(int aIdleMillis)
+	{
+		iIdleMillis = Math.max(0, aIdleMillis);
+	}
+	
+	
+	/**
+	 * Get how long no frames must be rendered for before the view is 
+	 * considered idle.
+	 * @return the time, in milliseconds.
+	 */
+	public int getIdleMillis()
+	{
+		return iIdleMillis;
+	}
+	
+	
+	
+	/**
+	 * Get whether the view has been idle at a reduced resolution for long 
+	 * enough that it should be rendered again at full resolution.
+	 * 
+	 * This may be called from any thread. The caller should then 
+	 * {@link #reset()} the scale from the rendering thread.
+	 * 
+	 * @return true if so; false otherwise.
+	 */
+	public boolean isIdle()
+	{
+		return 1.0f > iScale 
+				&& System.currentTimeMillis() - iLastFrameMillis >= iIdleMillis;
+	}
+	
+	
+	
+	/**
+	 * Get the fraction of the full resolution to render the next frame at.
+	 * @return a value between the minimum scale and 1, inclusive.
+	 */
+	public float getScale()
+	{
+		return iScale;
+	}
+	
+	
+	
+	/**
+	 * Get the width or height to render at.
+	 * @param aFullSize the full width or height.
+	 * @return a value >= 1.
+	 */
+	public int scale(int aFullSize)
+	{
+		return Math.max(1, Math.round(aFullSize * iScale));
+	}
+	
+	
+	
+	/**
+	 * Go back to rendering at full resolution.
+	 */
+	public void reset()
+	{
+		iScale = 1.0f;
+		clearWindow();
+	}
+	
+	
+	
+	/**
+	 * Record how long a frame took to render at the current scale, adjusting 
+	 * the scale if needed.
+	 * 
+	 * @param aNanos the frame time, in nanoseconds.
+	 * @return true if the scale has changed; false otherwise.
+	 */
+	public boolean frameRendered(long aNanos)
+	{
+		iLastFrameMillis = System.currentTimeMillis();
+		
+		iTotalFrameTime += aNanos - iFrameTimes[iNextFrameTime];
+		iFrameTimes[iNextFrameTime] = aNanos;
+		iNextFrameTime = (iNextFrameTime + 1) % WINDOW_SIZE;
+		if (WINDOW_SIZE > iNumFrameTimes)
+		{
+			++iNumFrameTimes;
+		}
+		if (WINDOW_SIZE > iNumFrameTimes)
+			return false;
+		
+		final long average = iTotalFrameTime / WINDOW_SIZE;
+		float newScale = iScale;
+		
+		if (average > iBudgetNanos)
+		{
+			newScale = Math.max(iMinScale, iScale * STEP);
+		}
+		else if (1.0f > iScale)
+		{
+			// rendering time is roughly proportional to the no. of pixels
+			final float upScale = Math.min(1.0f, iScale / STEP);
+			final float ratio = upScale / iScale;
+			if (average * ratio * ratio < iBudgetNanos * HEADROOM)
+			{
+				newScale = upScale;
+			}
+		}
+		
+		if (newScale == iScale)
+			return false;
+		
+		if (LOG.isDebugEnabled())
+		{
+			LOG.debug("Resolution scale: " + newScale + " (average frame time: " + (average / 1000) + "us)");
+		}
+		iScale = newScale;
+		clearWindow();
+		return true;
+	}
+	
+	
+	
+	private void clearWindow()
+	{
+		for (int i=0; i<WINDOW_SIZE; ++i)
+		{
+			iFrameTimes[i] = 0;
+		}
+		iNumFrameTimes = 0;
+		iNextFrameTime = 0;
+		iTotalFrameTime = 0;
+	}
+}
@@ -0,0 +1,170 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.batch;
+
+import java.awt.Color;
+
+import com.hiddentao.kai.nodes.Node;
+import com.hiddentao.kai.renderer.Camera;
+
+
+/**
+ * A request to render a single image.
+ * 
+ * The camera gets copied when the job is created, so the caller may carry 
+ * on moving it. The scene does not get copied and must not be modified 
+ * until the job has completed.
+ * 
+ * @see RenderService#submit(RenderJob)
+ */
+public final class RenderJob
+{
+	/** The default image format. */
+	public static final String DEFAULT_FORMAT = "png";
+	
+	private Node iScene = null;
+	private Camera iCamera = null;
+	private int iWidth = 0;
+	private int iHeight = 0;
+	
+	private String iFormat = DEFAULT_FORMAT;
+	private Color iBackgroundColor = Color.BLACK;
+	private boolean iBackfaceCullingEnabled = true;
+	private boolean iWireframeModeEnabled = false;
+	private boolean iZBufferEnabled = true;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param aScene the scene to render.
+	 * @param aCamera the camera to render it with. This gets copied.
+	 * @param aWidth the image width, in pixels.
+	 * @param aHeight the image height, in pixels.
+	 */
+	public RenderJob(Node aScene, Camera aCamera, int aWidth, int aHeight)
+	{
+		if (0 >= aWidth || 0 >= aHeight)
+			throw new IllegalArgumentException("Invalid size: " + aWidth + "x" + aHeight);
+		
+		iScene = aScene;
+		iCamera = new Camera(aCamera);
+		iWidth = aWidth;
+		iHeight = aHeight;
+	}
+	
+	
+	
+	public Node getScene()
+	{
+		return iScene;
+	}
+	
+	
+	/**
+	 * Get this job's copy of the camera.
+	 */
+	public Camera getCamera()
+	{
+		return iCamera;
+	}
+	
+	
+	public int getWidth()
+	{
+		return iWidth;
+	}
+	
+	
+	public int getHeight()
+	{
+		return iHeight;
+	}
+	
+	
+	
+	/**
+	 * Get the format the image gets encoded in.
+	 * @return an <code>ImageIO</code> format name. Default is 
+	 * {@link #DEFAULT_FORMAT}.
+	 */
+	public String getFormat()
+	{
+		return iFormat;
+	}
+	
+	
+	/**
+	 * Set the format the image gets encoded in.
+	 * @param aFormat an <code>ImageIO</code> format name, e.g. "png".
+	 */
+	public void setFormat(String aFormat)
+	{
+		iFormat = aFormat;
+	}
+	
+	
+	
+	public Color getBackgroundColor()
+	{
+		return iBackgroundColor;
+	}
+	
+	
+	public void setBackgroundColor(Color aColor)
+	{
+		iBackgroundColor = aColor;
+	}
+	
+	
+	
+	public boolean isBackfaceCullingEnabled()
+	{
+		return iBackfaceCullingEnabled;
+	}
+	
+	
+	public void enableBackfaceCulling(boolean aVal)
+	{
+		iBackfaceCullingEnabled = aVal;
+	}
+	
+	
+	
+	public boolean isWireframeModeEnabled()
+	{
+		return iWireframeModeEnabled;
+	}
+	
+	
+	public void enableWireframeMode(boolean aVal)
+	{
+		iWireframeModeEnabled = aVal;
+	}
+	
+	
+	
+	public boolean isZBufferEnabled()
+	{
+		return iZBufferEnabled;
+	}
+	
+	
+	public void enableZBuffer(boolean aVal)
+	{
+		iZBufferEnabled = aVal;
+	}
+}
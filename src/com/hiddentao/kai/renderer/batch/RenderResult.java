@@ -0,0 +1,108 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.batch;
+
+
+/**
+ * The output of a {@link RenderJob}: the encoded image plus timings.
+ */
+public final class RenderResult
+{
+	private RenderJob iJob = null;
+	private byte[] iImageData = null;
+	private long iQueueNanos = 0;
+	private long iRenderNanos = 0;
+	private long iEncodeNanos = 0;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param aJob the job which produced this result.
+	 * @param aImageData the encoded image.
+	 * @param aQueueNanos time spent waiting for a worker.
+	 * @param aRenderNanos time spent rendering.
+	 * @param aEncodeNanos time spent encoding.
+	 */
+	RenderResult(RenderJob aJob, byte[] aImageData, 
+			long aQueueNanos, long aRenderNanos, long aEncodeNanos)
+	{
+		iJob = aJob;
+		iImageData = aImageData;
+		iQueueNanos = aQueueNanos;
+		iRenderNanos = aRenderNanos;
+		iEncodeNanos = aEncodeNanos;
+	}
+	
+	
+	
+	public RenderJob getJob()
+	{
+		return iJob;
+	}
+	
+	
+	/**
+	 * Get the image, encoded in the job's format.
+	 */
+	public byte[] getImageData()
+	{
+		return iImageData;
+	}
+	
+	
+	/**
+	 * Get the time the job spent queued, waiting for a free worker.
+	 * @return time in nanoseconds.
+	 */
+	public long getQueueNanos()
+	{
+		return iQueueNanos;
+	}
+	
+	
+	/**
+	 * Get the time taken to render the image.
+	 * @return time in nanoseconds.
+	 */
+	public long getRenderNanos()
+	{
+		return iRenderNanos;
+	}
+	
+	
+	/**
+	 * Get the time taken to encode the image.
+	 * @return time in nanoseconds.
+	 */
+	public long getEncodeNanos()
+	{
+		return iEncodeNanos;
+	}
+	
+	
+	public String toString()
+	{
+		StringBuilder buf = new StringBuilder(64);
+		buf.append(iJob.getWidth()).append("x").append(iJob.getHeight());
+		buf.append(" ").append(iJob.getFormat());
+		buf.append(", ").append(iImageData.length).append(" bytes");
+		buf.append(", queue=").append(iQueueNanos / 1000).append("us");
+		buf.append(", render=").append(iRenderNanos / 1000).append("us");
+		buf.append(", encode=").append(iEncodeNanos / 1000).append("us");
+		return buf.toString();
+	}
+}
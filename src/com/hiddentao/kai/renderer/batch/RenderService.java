@@ -0,0 +1,253 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.batch;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.imageio.ImageIO;
+
+import com.hiddentao.kai.logging.Logger;
+import com.hiddentao.kai.renderer.OffscreenRenderTarget;
+import com.hiddentao.kai.renderer.Renderer;
+import com.hiddentao.kai.renderer.RenderingSystemManager;
+
+
+/**
+ * Renders batches of images headlessly on a fixed pool of worker threads.
+ * 
+ * Each worker owns its own renderer and offscreen render target and 
+ * reuses them from job to job, so once warmed up a job costs only the 
+ * rendering and encoding. No more than a fixed number of jobs may be 
+ * queued or running at once: {@link #submit(RenderJob)} blocks until there 
+ * is room, which stops a fast producer from queueing unbounded work.
+ * 
+ * If a job fails to render or encode then its future throws an 
+ * <code>ExecutionException</code>, rather than returning an incomplete 
+ * image.
+ */
+public final class RenderService
+{
+	private static Logger LOG = Logger.getLogger(RenderService.class.getName());
+	
+	private static final AtomicInteger SERVICE_NUMBER = new AtomicInteger(0);
+	
+	private ExecutorService iExecutor = null;
+	/** One permit per job which may be queued or running. */
+	private Semaphore iPermits = null;
+	
+	
+	
+	/**
+	 * A worker thread, along with the rendering resources it owns.
+	 */
+	private static final class Worker extends Thread
+	{
+		final Renderer iRenderer;
+		final OffscreenRenderTarget iTarget;
+		final ByteArrayOutputStream iEncodeBuffer = new ByteArrayOutputStream(64 * 1024);
+		
+		Worker(Runnable aRunnable, String aName)
+		{
+			super(aRunnable, aName);
+			setDaemon(true);
+			
+			iRenderer = RenderingSystemManager.instance().getDefaultRenderSystem().createRenderer();
+			// the service already keeps every core busy
+			iRenderer.setGeometryThreadCount(1);
+			iTarget = new OffscreenRenderTarget(iRenderer, 1, 1);
+		}
+		
+		public void run()
+		{
+			try
+			{
+				super.run();
+			}
+			finally
+			{
+				iRenderer.dispose();
+			}
+		}
+	}
+	
+	
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param aNumWorkers the no. of worker threads. Must be >= 1.
+	 * @param aMaxPendingJobs the max. no. of jobs which may be queued or 
+	 * running at any one time. Must be >= 1.
+	 */
+	public RenderService(int aNumWorkers, int aMaxPendingJobs)
+	{
+		if (1 > aNumWorkers || 1 > aMaxPendingJobs)
+			throw new IllegalArgumentException("Invalid worker/job count: " + aNumWorkers + "/" + aMaxPendingJobs);
+		
+		final int serviceNumber = SERVICE_NUMBER.incrementAndGet();
+		iPermits = new Semaphore(aMaxPendingJobs);
+		iExecutor = new ThreadPoolExecutor(aNumWorkers, aNumWorkers, 
+				0L, TimeUnit.MILLISECONDS, new LinkedBlockingQueue<Runnable>(),
+				new ThreadFactory()
+				{
+					private AtomicInteger iThreadNumber = new AtomicInteger(0);
+					
+					public Thread newThread(Runnable aRunnable)
+					{
+						return new Worker(aRunnable, 
+								"kai-render-" + serviceNumber + "-" + iThreadNumber.incrementAndGet());
+					}
+				});
+		
+		LOG.info("Render service started: " + aNumWorkers + " workers, max. " + aMaxPendingJobs + " pending jobs");
+	}
+	
+	
+	
+	/**
+	 * Submit a job, waiting for room in the queue if necessary.
+	 * 
+	 * @param aJob the job.
+	 * @return the future result.
+	 * @throws InterruptedException if interrupted whilst waiting for room.
+	 */
+	public Future<RenderResult> submit(RenderJob aJob) throws InterruptedException
+	{
+		iPermits.acquire();
+		return enqueue(aJob);
+	}
+	
+	
+	
+	/**
+	 * Submit a job, waiting up to the given time for room in the queue.
+	 * 
+	 * @param aJob the job.
+	 * @param aTimeout the max. time to wait.
+	 * @param aUnit the unit of the timeout.
+	 * @return the future result; null if there was no room in time.
+	 * @throws InterruptedException if interrupted whilst waiting for room.
+	 */
+	public Future<RenderResult> trySubmit(RenderJob aJob, long aTimeout, TimeUnit aUnit) throws InterruptedException
+	{
+		if (!iPermits.tryAcquire(aTimeout, aUnit))
+			return null;
+		return enqueue(aJob);
+	}
+	
+	
+	
+	/**
+	 * Stop accepting jobs and wait for the queued ones to finish.
+	 * 
+	 * @param aTimeout the max. time to wait.
+	 * @param aUnit the unit of the timeout.
+	 * @return true if all jobs finished in time; false otherwise.
+	 * @throws InterruptedException if interrupted whilst waiting.
+	 */
+	public boolean shutdown(long aTimeout, TimeUnit aUnit) throws InterruptedException
+	{
+		iExecutor.shutdown();
+		return iExecutor.awaitTermination(aTimeout, aUnit);
+	}
+	
+	
+	
+	/**
+	 * Queue a job for which a permit has already been acquired.
+	 */
+	private Future<RenderResult> enqueue(final RenderJob aJob)
+	{
+		final long submitTime = System.nanoTime();
+		
+		try
+		{
+			return iExecutor.submit(new Callable<RenderResult>()
+			{
+				public RenderResult call() throws Exception
+				{
+					try
+					{
+						return execute(aJob, submitTime);
+					}
+					finally
+					{
+						iPermits.release();
+					}
+				}
+			});
+		}
+		catch (RuntimeException e)
+		{
+			// e.g. rejected because we've been shut down
+			iPermits.release();
+			throw e;
+		}
+	}
+	
+	
+	
+	/**
+	 * Render and encode a job on the current worker thread.
+	 */
+	private static RenderResult execute(RenderJob aJob, long aSubmitTime) throws IOException
+	{
+		final long startTime = System.nanoTime();
+		
+		Worker worker = (Worker)Thread.currentThread();
+		Renderer renderer = worker.iRenderer;
+		
+		// only touch the settings which differ, as changes get logged
+		renderer.setBackgroundColor(aJob.getBackgroundColor());
+		if (renderer.isBackfaceCullingEnabled() != aJob.isBackfaceCullingEnabled())
+			renderer.enableBackfaceCulling(aJob.isBackfaceCullingEnabled());
+		if (renderer.isWireframeModeEnabled() != aJob.isWireframeModeEnabled())
+			renderer.enableWireframeMode(aJob.isWireframeModeEnabled());
+		if (renderer.isZBufferEnabled() != aJob.isZBufferEnabled())
+			renderer.enableZBuffer(aJob.isZBufferEnabled());
+		
+		worker.iTarget.setSize(aJob.getWidth(), aJob.getHeight());
+		worker.iTarget.render(aJob.getScene(), aJob.getCamera());
+		// don't hand back a blank or half drawn image as a result
+		if (null != renderer.getLastRenderError())
+		{
+			throw new RuntimeException("Error rendering job", renderer.getLastRenderError());
+		}
+		
+		final long renderedTime = System.nanoTime();
+		
+		worker.iEncodeBuffer.reset();
+		if (!ImageIO.write(worker.iTarget.getImage(), aJob.getFormat(), worker.iEncodeBuffer))
+		{
+			throw new IOException("No image writer available for format: " + aJob.getFormat());
+		}
+		byte[] data = worker.iEncodeBuffer.toByteArray();
+		
+		final long endTime = System.nanoTime();
+		
+		return new RenderResult(aJob, data, 
+				startTime - aSubmitTime, renderedTime - startTime, endTime - renderedTime);
+	}
+}
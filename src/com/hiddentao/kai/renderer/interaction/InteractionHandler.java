@@ -75,6 +75,32 @@ public abstract class InteractionHandler implements	KeyListener,
 	protected abstract void refreshDisplay();
 	
 	
+	/**
+	 * Apply any input which has been accumulated since the last frame.
+	 * 
+	 * This gets called by the associated {@link RenderingSurface} just 
+	 * before it renders each frame, so that input events which arrive 
+	 * faster than frames can be rendered (e.g. mouse drags) can be merged 
+	 * and applied once per frame. The default implementation does nothing.
+	 */
+	public void applyPendingInput()
+	{
+	}
+	
+	
+	/**
+	 * Tell the associated surface that the user is actively changing the 
+	 * view, so that it can favour speed over quality for the time being.
+	 */
+	protected final void notifyInteraction()
+	{
+		if (null != iSurface)
+		{
+			iSurface.notifyInteraction();
+		}
+	}
+	
+	
 	/**
 	 * Get a textual description of keyboard and mouse commands to show to 
 	 * the user.
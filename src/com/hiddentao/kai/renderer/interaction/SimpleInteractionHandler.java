@@ -18,7 +18,6 @@ import java.awt.event.KeyEvent;
 import java.awt.event.MouseEvent;
 import java.awt.event.MouseWheelEvent;
 
-import com.hiddentao.kai.geometry.Angles3D;
 import com.hiddentao.kai.geometry.Vec2;
 import com.hiddentao.kai.logging.Logger;
 import com.hiddentao.kai.math.MathConstants;
@@ -38,9 +37,13 @@ public final class SimpleInteractionHandler extends InteractionHandler implement
 {
 	private static Logger LOG = Logger.getLogger(SimpleInteractionHandler.class.getName());
 	
-	private Angles3D iCameraAngles = new Angles3D();
 	private Vec2 iMouseXY = new Vec2();
 	
+	/* drag rotation (in degrees) yet to be applied to the camera */
+	private float iPendingAngleX = 0;
+	private float iPendingAngleY = 0;
+	private boolean iRotationPending = false;
+	
 	
 	private final String[] iKeyAndMouseCommands = {
 			"Mouse drag - rotate object",
@@ -53,6 +56,10 @@ public final class SimpleInteractionHandler extends InteractionHandler implement
 
 	public void doReset()
 	{
+		iPendingAngleX = 0;
+		iPendingAngleY = 0;
+		iRotationPending = false;
+		
 		if (null != iSurface)
 		{
 			Camera camera = iSurface.getCamera();
@@ -125,6 +132,9 @@ public final class SimpleInteractionHandler extends InteractionHandler implement
 					LOG.info("Vertical FOV: " + camera.frustum.verticalFOV);
 				}
 				break;
+			default:
+				// nothing to redraw
+				return;
 		}
 		
 		refreshDisplay();
@@ -152,6 +162,7 @@ public final class SimpleInteractionHandler extends InteractionHandler implement
 
 	public void mousePressed(MouseEvent arg0)
 	{
+		notifyInteraction();
 		iMouseXY.set(arg0.getX(), arg0.getY());
 	}
 
@@ -165,18 +176,21 @@ public final class SimpleInteractionHandler extends InteractionHandler implement
 		int x = arg0.getX();
 		int y = arg0.getY();
 		
-		iCameraAngles.iAngleX = (float)(y - iMouseXY.y);
-		iCameraAngles.iAngleY = (float)(x - iMouseXY.x);
-		iCameraAngles.iAngleZ = 0;
+		// merge with any other drags since the last frame
+		iPendingAngleX += (float)(y - iMouseXY.y);
+		iPendingAngleY += (float)(x - iMouseXY.x);
 
 		iMouseXY.x = x;
 		iMouseXY.y = y;
 		
-		Camera camera = iSurface.getCamera();
-		if (null != camera)
-			camera.rotateAroundFocus(iCameraAngles);
-
-		refreshDisplay();
+		notifyInteraction();
+		
+		// one frame is enough for any no. of drags
+		if (!iRotationPending)
+		{
+			iRotationPending = true;
+			refreshDisplay();
+		}
 	}
 
 	public void mouseMoved(MouseEvent arg0)
@@ -188,6 +202,23 @@ public final class SimpleInteractionHandler extends InteractionHandler implement
 	}
 
 	
+	@Override
+	public void applyPendingInput()
+	{
+		if (!iRotationPending)
+			return;
+		
+		iRotationPending = false;
+		
+		Camera camera = (null != iSurface ? iSurface.getCamera() : null);
+		if (null != camera)
+			camera.rotateAroundFocus(iPendingAngleX, iPendingAngleY, 0);
+		
+		iPendingAngleX = 0;
+		iPendingAngleY = 0;
+	}
+	
+	
 	protected void refreshDisplay()
 	{
 		if (null != iSurface)
@@ -0,0 +1,82 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.output;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+
+
+/**
+ * Writes each frame to its own numbered file, e.g. 
+ * <code>frame-00000.png</code>, <code>frame-00001.png</code>, etc.
+ */
+public final class FileSequenceWriter implements FrameWriter
+{
+	private File iDirectory = null;
+	private String iPrefix = null;
+	private String iExtension = null;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param aDirectory the directory to write the files to. Gets created 
+	 * if it doesn't exist.
+	 * @param aPrefix the file name prefix, e.g. "frame-".
+	 * @param aFormat the format the frames are encoded in.
+	 * @throws IOException if the directory couldn't be created.
+	 */
+	public FileSequenceWriter(File aDirectory, String aPrefix, FrameFormat aFormat) throws IOException
+	{
+		if (!aDirectory.isDirectory() && !aDirectory.mkdirs())
+			throw new IOException("Unable to create directory: " + aDirectory);
+		
+		iDirectory = aDirectory;
+		iPrefix = aPrefix;
+		iExtension = aFormat.extension();
+	}
+	
+	
+	
+	public void write(int aFrameNumber, byte[] aData) throws IOException
+	{
+		StringBuilder name = new StringBuilder(iPrefix.length() + 16);
+		name.append(iPrefix);
+		String number = Integer.toString(aFrameNumber);
+		for (int i=number.length(); i<5; ++i)
+		{
+			name.append('0');
+		}
+		name.append(number).append('.').append(iExtension);
+		
+		FileOutputStream out = new FileOutputStream(new File(iDirectory, name.toString()));
+		try
+		{
+			out.write(aData);
+		}
+		finally
+		{
+			out.close();
+		}
+	}
+	
+	
+	
+	public void close()
+	{
+	}
+}
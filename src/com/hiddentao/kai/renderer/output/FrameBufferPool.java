@@ -0,0 +1,99 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.output;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+
+/**
+ * A fixed-size pool of pixel buffers, all of the same size.
+ * 
+ * Buffers are only allocated the first time they're needed, after which 
+ * they're handed round and round. Once all of them are in use 
+ * {@link #acquire()} blocks until one gets released.
+ */
+public final class FrameBufferPool
+{
+	private BlockingQueue<int[]> iFree = null;
+	private int iBufferSize = 0;
+	private int iCapacity = 0;
+	private int iNumAllocated = 0;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param aBufferSize the no. of pixels in each buffer.
+	 * @param aCapacity the max. no. of buffers. Must be >= 1.
+	 */
+	public FrameBufferPool(int aBufferSize, int aCapacity)
+	{
+		iBufferSize = aBufferSize;
+		iCapacity = aCapacity;
+		iFree = new ArrayBlockingQueue<int[]>(aCapacity);
+	}
+	
+	
+	
+	/**
+	 * Get the no. of pixels in each buffer.
+	 */
+	public int getBufferSize()
+	{
+		return iBufferSize;
+	}
+	
+	
+	
+	/**
+	 * Get a buffer, waiting for one to be released if they're all in use.
+	 * 
+	 * @return a buffer. Its contents are undefined.
+	 * @throws InterruptedException if interrupted whilst waiting.
+	 */
+	public int[] acquire() throws InterruptedException
+	{
+		int[] buffer = iFree.poll();
+		if (null != buffer)
+			return buffer;
+		
+		synchronized (this)
+		{
+			if (iNumAllocated < iCapacity)
+			{
+				++iNumAllocated;
+				return new int[iBufferSize];
+			}
+		}
+		
+		return iFree.take();
+	}
+	
+	
+	
+	/**
+	 * Return a buffer to the pool.
+	 * @param aBuffer a buffer obtained from {@link #acquire()}.
+	 */
+	public void release(int[] aBuffer)
+	{
+		if (aBuffer.length != iBufferSize)
+			throw new IllegalArgumentException("Buffer is not from this pool");
+		if (!iFree.offer(aBuffer))
+			throw new IllegalStateException("Pool is already full");
+	}
+}
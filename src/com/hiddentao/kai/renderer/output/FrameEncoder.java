@@ -0,0 +1,124 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.output;
+
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.awt.image.DirectColorModel;
+import java.awt.image.Raster;
+import java.awt.image.WritableRaster;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+
+/**
+ * Encodes frames of RGB pixels.
+ */
+final class FrameEncoder
+{
+	private static final DirectColorModel RGB_MODEL = 
+		new DirectColorModel(24, 0xFF0000, 0x00FF00, 0x0000FF);
+	
+	
+	private FrameEncoder() {}
+	
+	
+	
+	/**
+	 * Encode a frame.
+	 * 
+	 * @param aFormat the format to encode in.
+	 * @param aPixels the RGB pixels, row by row.
+	 * @param aWidth the frame width.
+	 * @param aHeight the frame height.
+	 * @return the encoded frame.
+	 * @throws IOException if encoding fails.
+	 */
+	public static byte[] encode(FrameFormat aFormat, int[] aPixels, int aWidth, int aHeight) throws IOException
+	{
+		switch (aFormat)
+		{
+			case PNG:
+				return encodePng(aPixels, aWidth, aHeight);
+			case RAW_RGB:
+				return encodeRawRgb(aPixels, aWidth * aHeight);
+			case RLE:
+				return encodeRle(aPixels, aWidth * aHeight);
+			default:
+				throw new IOException("Unsupported format: " + aFormat);
+		}
+	}
+	
+	
+	
+	private static byte[] encodePng(int[] aPixels, int aWidth, int aHeight) throws IOException
+	{
+		// wrap the pixels in an image, without copying them
+		WritableRaster raster = Raster.createPackedRaster(
+				new DataBufferInt(aPixels, aWidth * aHeight), aWidth, aHeight, aWidth, 
+				RGB_MODEL.getMasks(), null);
+		BufferedImage image = new BufferedImage(RGB_MODEL, raster, false, null);
+		
+		ByteArrayOutputStream out = new ByteArrayOutputStream(aWidth * aHeight / 4 + 1024);
+		if (!ImageIO.write(image, "png", out))
+			throw new IOException("No PNG image writer available");
+		return out.toByteArray();
+	}
+	
+	
+	
+	private static byte[] encodeRawRgb(int[] aPixels, int aNumPixels)
+	{
+		byte[] out = new byte[aNumPixels * 3];
+		for (int i=0, o=0; i<aNumPixels; ++i)
+		{
+			final int rgb = aPixels[i];
+			out[o++] = (byte)(rgb >> 16);
+			out[o++] = (byte)(rgb >> 8);
+			out[o++] = (byte)rgb;
+		}
+		return out;
+	}
+	
+	
+	
+	private static byte[] encodeRle(int[] aPixels, int aNumPixels)
+	{
+		// worst case is one run per pixel
+		byte[] out = new byte[aNumPixels * 4];
+		int o = 0;
+		int i = 0;
+		while (i < aNumPixels)
+		{
+			final int rgb = aPixels[i] & 0xFFFFFF;
+			int run = 1;
+			while (255 > run && i + run < aNumPixels && (aPixels[i + run] & 0xFFFFFF) == rgb)
+			{
+				++run;
+			}
+			out[o++] = (byte)run;
+			out[o++] = (byte)(rgb >> 16);
+			out[o++] = (byte)(rgb >> 8);
+			out[o++] = (byte)rgb;
+			i += run;
+		}
+		
+		byte[] ret = new byte[o];
+		System.arraycopy(out, 0, ret, 0, o);
+		return ret;
+	}
+}
@@ -0,0 +1,60 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.output;
+
+
+/**
+ * The formats which a {@link FrameSink} can encode frames in.
+ */
+public enum FrameFormat
+{
+	/**
+	 * PNG image.
+	 */
+	PNG("png"),
+	/**
+	 * Uncompressed pixels, row by row, 3 bytes (red, green, blue) each.
+	 */
+	RAW_RGB("rgb"),
+	/**
+	 * Run-length encoded pixels, row by row, wrapping from one row to the 
+	 * next. Each run is 4 bytes: the no. of pixels in the run (1-255) 
+	 * followed by their red, green and blue values.
+	 */
+	RLE("rle");
+	
+	
+	private String iExtension = null;
+	
+	
+	/**
+	 * Constructor.
+	 * @param aExtension the file extension for the format.
+	 */
+	FrameFormat(String aExtension)
+	{
+		iExtension = aExtension;
+	}
+	
+	
+	/**
+	 * Get the file extension for this format.
+	 * @return extension, without the leading dot.
+	 */
+	public String extension()
+	{
+		return iExtension;
+	}
+}
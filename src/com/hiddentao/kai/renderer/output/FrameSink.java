@@ -0,0 +1,315 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.output;
+
+import java.io.IOException;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hiddentao.kai.logging.Logger;
+
+
+/**
+ * Encodes and writes out a sequence of rendered frames in the background.
+ * 
+ * The renderer gets a pixel buffer from the sink, draws into it and hands 
+ * it back with {@link #submit(int[])}, or with {@link #discard(int[])} if 
+ * rendering failed. Frames are encoded in parallel on a 
+ * pool of encoder threads, after which each buffer goes back into the 
+ * pool for reuse, and are written out in order on a single writer thread. 
+ * Rendering of the next frame thus overlaps with encoding of the previous 
+ * ones. If the encoders fall behind then {@link #acquireBuffer()} blocks 
+ * until a buffer is free again.
+ * 
+ * <pre>
+ * FrameSink sink = new FrameSink(new FileSequenceWriter(dir, "frame-", FrameFormat.PNG), 
+ *         FrameFormat.PNG, width, height, 2);
+ * OffscreenRenderTarget target = new OffscreenRenderTarget(renderer, width, height);
+ * for (...)
+ * {
+ *     int[] pixels = sink.acquireBuffer();
+ *     if (target.render(scene, camera, pixels))
+ *         sink.submit(pixels);
+ *     else
+ *         sink.discard(pixels);
+ * }
+ * sink.close();
+ * </pre>
+ * 
+ * A sink must only be fed from one thread.
+ */
+public final class FrameSink
+{
+	private static Logger LOG = Logger.getLogger(FrameSink.class.getName());
+	
+	private static final AtomicInteger SINK_NUMBER = new AtomicInteger(0);
+	
+	private FrameWriter iWriter = null;
+	private FrameFormat iFormat = null;
+	private int iWidth = 0;
+	private int iHeight = 0;
+	
+	private FrameBufferPool iBufferPool = null;
+	private ExecutorService iEncoders = null;
+	private ExecutorService iWriterThread = null;
+	
+	private int iNextFrameNumber = 0;
+	/** The first error raised by an encoder or the writer. */
+	private volatile Throwable iError = null;
+	private boolean iClosed = false;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * 
+	 * Uses two buffers per encoder thread, so that each encoder can have 
+	 * a frame waiting whilst the renderer draws the next one.
+	 * 
+	 * @param aWriter where to write the encoded frames.
+	 * @param aFormat the format to encode frames in.
+	 * @param aWidth the frame width.
+	 * @param aHeight the frame height.
+	 * @param aNumEncoders the no. of encoder threads. Must be >= 1.
+	 */
+	public FrameSink(FrameWriter aWriter, FrameFormat aFormat, int aWidth, int aHeight, int aNumEncoders)
+	{
+		this(aWriter, aFormat, aWidth, aHeight, aNumEncoders, 2 * aNumEncoders + 1);
+	}
+	
+	
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param aWriter where to write the encoded frames.
+	 * @param aFormat the format to encode frames in.
+	 * @param aWidth the frame width.
+	 * @param aHeight the frame height.
+	 * @param aNumEncoders the no. of encoder threads. Must be >= 1.
+	 * @param aNumBuffers the max. no. of frame buffers, i.e. the max. no. 
+	 * of frames which can be in flight. Must be >= 1.
+	 */
+	public FrameSink(FrameWriter aWriter, FrameFormat aFormat, int aWidth, int aHeight, 
+			int aNumEncoders, int aNumBuffers)
+	{
+		if (0 >= aWidth || 0 >= aHeight)
+			throw new IllegalArgumentException("Invalid size: " + aWidth + "x" + aHeight);
+		if (1 > aNumEncoders || 1 > aNumBuffers)
+			throw new IllegalArgumentException("Invalid encoder/buffer count: " + aNumEncoders + "/" + aNumBuffers);
+		
+		iWriter = aWriter;
+		iFormat = aFormat;
+		iWidth = aWidth;
+		iHeight = aHeight;
+		iBufferPool = new FrameBufferPool(aWidth * aHeight, aNumBuffers);
+		
+		final String name = "kai-frames-" + SINK_NUMBER.incrementAndGet();
+		iEncoders = Executors.newFixedThreadPool(aNumEncoders, new NamedThreadFactory(name + "-encoder-"));
+		iWriterThread = Executors.newSingleThreadExecutor(new NamedThreadFactory(name + "-writer-"));
+	}
+	
+	
+	
+	public int getWidth()
+	{
+		return iWidth;
+	}
+	
+	
+	public int getHeight()
+	{
+		return iHeight;
+	}
+	
+	
+	
+	/**
+	 * Get a buffer to render the next frame into, waiting for one to be 
+	 * freed up if necessary.
+	 * 
+	 * @return an array of <code>width x height</code> pixels. Its contents 
+	 * are undefined.
+	 * @throws InterruptedException if interrupted whilst waiting.
+	 * @throws IOException if an earlier frame failed to be encoded or 
+	 * written.
+	 */
+	public int[] acquireBuffer() throws InterruptedException, IOException
+	{
+		checkError();
+		return iBufferPool.acquire();
+	}
+	
+	
+	
+	/**
+	 * Queue a rendered frame for encoding and writing.
+	 * 
+	 * The buffer must not be touched again by the caller.
+	 * 
+	 * @param aPixels a buffer obtained from {@link #acquireBuffer()}.
+	 * @throws IOException if an earlier frame failed to be encoded or 
+	 * written.
+	 */
+	public void submit(final int[] aPixels) throws IOException
+	{
+		if (iClosed)
+			throw new IllegalStateException("Sink has been closed");
+		checkError();
+		
+		final int frameNumber = iNextFrameNumber++;
+		
+		final Future<byte[]> encoded = iEncoders.submit(new Callable<byte[]>()
+		{
+			public byte[] call() throws Exception
+			{
+				try
+				{
+					return FrameEncoder.encode(iFormat, aPixels, iWidth, iHeight);
+				}
+				finally
+				{
+					iBufferPool.release(aPixels);
+				}
+			}
+		});
+		
+		// the writer thread runs these one at a time, in submission order
+		iWriterThread.execute(new Runnable()
+		{
+			public void run()
+			{
+				if (null != iError)
+					return;
+				
+				try
+				{
+					iWriter.write(frameNumber, encoded.get());
+				}
+				catch (ExecutionException e)
+				{
+					setError(e.getCause());
+				}
+				catch (Throwable e)
+				{
+					setError(e);
+				}
+			}
+		});
+	}
+	
+	
+	
+	/**
+	 * Hand back a buffer without queueing it as a frame, e.g. because 
+	 * rendering into it failed.
+	 * 
+	 * The buffer must not be touched again by the caller.
+	 * 
+	 * @param aPixels a buffer obtained from {@link #acquireBuffer()}.
+	 */
+	public void discard(int[] aPixels)
+	{
+		iBufferPool.release(aPixels);
+	}
+	
+	
+	
+	/**
+	 * Wait for all submitted frames to be written, then close the writer 
+	 * and stop the background threads.
+	 * 
+	 * @throws IOException if any frame failed to be encoded or written, or 
+	 * if the writer failed to close.
+	 * @throws InterruptedException if interrupted whilst waiting.
+	 */
+	public void close() throws IOException, InterruptedException
+	{
+		if (iClosed)
+			return;
+		iClosed = true;
+		
+		iEncoders.shutdown();
+		iWriterThread.shutdown();
+		iWriterThread.awaitTermination(Long.MAX_VALUE, TimeUnit.MILLISECONDS);
+		
+		iWriter.close();
+		
+		LOG.debug("Frame sink closed after " + iNextFrameNumber + " frames");
+		
+		checkError();
+	}
+	
+	
+	
+	/**
+	 * Record an error, if it's the first one.
+	 */
+	private synchronized void setError(Throwable aError)
+	{
+		if (null == iError)
+		{
+			iError = aError;
+			LOG.error("Error outputting frame", aError);
+		}
+	}
+	
+	
+	
+	/**
+	 * Throw the first error raised by an encoder or the writer, if any.
+	 */
+	private void checkError() throws IOException
+	{
+		Throwable error = iError;
+		if (null != error)
+		{
+			if (error instanceof IOException)
+				throw (IOException)error;
+			IOException e = new IOException("Error outputting frame: " + error);
+			e.initCause(error);
+			throw e;
+		}
+	}
+	
+	
+	
+	/**
+	 * Creates numbered daemon threads.
+	 */
+	private static final class NamedThreadFactory implements ThreadFactory
+	{
+		private final String iPrefix;
+		private final AtomicInteger iThreadNumber = new AtomicInteger(0);
+		
+		NamedThreadFactory(String aPrefix)
+		{
+			iPrefix = aPrefix;
+		}
+		
+		public Thread newThread(Runnable aRunnable)
+		{
+			Thread t = new Thread(aRunnable, iPrefix + iThreadNumber.incrementAndGet());
+			t.setDaemon(true);
+			return t;
+		}
+	}
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.output;
+
+import java.io.IOException;
+
+
+/**
+ * Receives encoded frames from a {@link FrameSink}.
+ * 
+ * Methods are always called from the sink's writer thread, one at a time, 
+ * with frames in the order in which they were submitted.
+ */
+public interface FrameWriter
+{
+	/**
+	 * Write an encoded frame.
+	 * 
+	 * @param aFrameNumber the frame's index in the sequence, starting at 0.
+	 * @param aData the encoded frame.
+	 * @throws IOException if writing fails.
+	 */
+	public void write(int aFrameNumber, byte[] aData) throws IOException;
+	
+	
+	/**
+	 * Called once all frames have been written.
+	 * @throws IOException if closing fails.
+	 */
+	public void close() throws IOException;
+}
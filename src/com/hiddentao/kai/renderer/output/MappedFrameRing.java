@@ -0,0 +1,277 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.output;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.IntBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+
+/**
+ * A ring of frame buffers in a memory-mapped file, for handing frames to 
+ * another process on the same machine without copying them.
+ * 
+ * The renderer draws straight into the mapped memory (see 
+ * {@link com.hiddentao.kai.renderer.OffscreenRenderTarget#render(com.hiddentao.kai.nodes.Node, com.hiddentao.kai.renderer.Camera, IntBuffer)}) 
+ * and the consumer maps the same file and reads the pixels in place.
+ * 
+ * <pre>
+ * IntBuffer pixels = ring.beginFrame();
+ * if (target.render(scene, camera, pixels))
+ *     ring.endFrame();
+ * else
+ *     ring.abortFrame();
+ * </pre>
+ * 
+ * File layout (all values little-endian):
+ * 
+ * <pre>
+ * header (64 bytes):
+ *   0   int   magic (0x4B414946, "KAIF")
+ *   4   int   version (1)
+ *   8   int   frame width
+ *   12  int   frame height
+ *   16  int   no. of slots
+ *   20  int   slot size in bytes, including the slot header
+ *   24  int   slot header size in bytes (16)
+ *   32  long  sequence no. of the latest complete frame (-1 if none)
+ * 
+ * slot i, at 64 + i * slot size:
+ *   0   long  sequence no. of the frame held in the slot; -1 whilst 
+ *             a frame is being drawn into it
+ *   8   long  time the frame was completed (ms since the epoch)
+ *   16  int[] pixels, row by row, as 0x??RRGGBB
+ * </pre>
+ * 
+ * Frame <i>n</i> is written into slot <i>n % no. of slots</i>. The writer 
+ * never waits for the consumer: a consumer should read the latest 
+ * sequence no. from the header and, after reading a slot, check that the 
+ * slot's sequence no. is still the one it expected, otherwise the frame 
+ * got overwritten whilst being read. This relies on the platform making 
+ * stores to shared memory visible in order (as x86 does).
+ * 
+ * A ring must only be written to from one thread.
+ */
+public final class MappedFrameRing
+{
+	public static final int MAGIC = 0x4B414946;
+	public static final int VERSION = 1;
+	public static final int HEADER_SIZE = 64;
+	public static final int SLOT_HEADER_SIZE = 16;
+	
+	private static final int LATEST_SEQUENCE_OFFSET = 32;
+	
+	private RandomAccessFile iFile = null;
+	private FileChannel iChannel = null;
+	private MappedByteBuffer iMap = null;
+	
+	private int iWidth = 0;
+	private int iHeight = 0;
+	private int iSlotSize = 0;
+	/** Pixel views for each slot. */
+	private IntBuffer[] iSlotPixels = null;
+	
+	private long iNextSequence = 0;
+	private boolean iFrameInProgress = false;
+	
+	
+	
+	/**
+	 * Constructor - creates (or overwrites) and maps the file.
+	 * 
+	 * @param aFile the file. A file on a memory-backed filesystem (e.g. 
+	 * <code>/dev/shm</code>) avoids any disk writes.
+	 * @param aWidth the frame width.
+	 * @param aHeight the frame height.
+	 * @param aNumSlots the no. of frames in the ring. Must be >= 2.
+	 * @throws IOException if the file couldn't be created or mapped.
+	 */
+	public MappedFrameRing(File aFile, int aWidth, int aHeight, int aNumSlots) throws IOException
+	{
+		if (0 >= aWidth || 0 >= aHeight)
+			throw new IllegalArgumentException("Invalid size: " + aWidth + "x" + aHeight);
+		if (2 > aNumSlots)
+			throw new IllegalArgumentException("Need atleast 2 slots: " + aNumSlots);
+		
+		final long slotSize = SLOT_HEADER_SIZE + 4L * aWidth * aHeight;
+		final long fileSize = HEADER_SIZE + slotSize * aNumSlots;
+		if (Integer.MAX_VALUE < fileSize)
+			throw new IllegalArgumentException("Ring too large to map: " + fileSize + " bytes");
+		
+		iWidth = aWidth;
+		iHeight = aHeight;
+		iSlotSize = (int)slotSize;
+		
+		iFile = new RandomAccessFile(aFile, "rw");
+		try
+		{
+			iFile.setLength(fileSize);
+			iChannel = iFile.getChannel();
+			iMap = iChannel.map(FileChannel.MapMode.READ_WRITE, 0, fileSize);
+		}
+		catch (IOException e)
+		{
+			iFile.close();
+			throw e;
+		}
+		iMap.order(ByteOrder.LITTLE_ENDIAN);
+		
+		iSlotPixels = new IntBuffer[aNumSlots];
+		for (int i=0; i<aNumSlots; ++i)
+		{
+			final int slotOffset = slotOffset(i);
+			iMap.putLong(slotOffset, -1);
+			iMap.putLong(slotOffset + 8, 0);
+			
+			ByteBuffer view = iMap.duplicate();
+			view.position(slotOffset + SLOT_HEADER_SIZE);
+			view.limit(slotOffset + iSlotSize);
+			iSlotPixels[i] = view.slice().order(ByteOrder.LITTLE_ENDIAN).asIntBuffer();
+		}
+		
+		iMap.putInt(4, VERSION);
+		iMap.putInt(8, aWidth);
+		iMap.putInt(12, aHeight);
+		iMap.putInt(16, aNumSlots);
+		iMap.putInt(20, iSlotSize);
+		iMap.putInt(24, SLOT_HEADER_SIZE);
+		iMap.putLong(LATEST_SEQUENCE_OFFSET, -1);
+		// written last, so a consumer which sees it sees a valid header
+		iMap.putInt(0, MAGIC);
+	}
+	
+	
+	
+	public int getWidth()
+	{
+		return iWidth;
+	}
+	
+	
+	public int getHeight()
+	{
+		return iHeight;
+	}
+	
+	
+	public int getNumSlots()
+	{
+		return iSlotPixels.length;
+	}
+	
+	
+	
+	/**
+	 * Get the sequence no. which the next frame will be given.
+	 * @return a non-negative number.
+	 */
+	public long getNextSequence()
+	{
+		return iNextSequence;
+	}
+	
+	
+	
+	/**
+	 * Start a frame.
+	 * 
+	 * This marks the next slot as being written to and returns its pixels.
+	 * 
+	 * @return the slot's pixels, <code>width x height</code> of them 
+	 * starting at position 0. Its contents are undefined.
+	 */
+	public IntBuffer beginFrame()
+	{
+		if (iFrameInProgress)
+			throw new IllegalStateException("Previous frame has not been ended");
+		
+		final int slot = (int)(iNextSequence % iSlotPixels.length);
+		iMap.putLong(slotOffset(slot), -1);
+		iFrameInProgress = true;
+		
+		return iSlotPixels[slot];
+	}
+	
+	
+	
+	/**
+	 * Finish the frame started by {@link #beginFrame()} and publish it to 
+	 * consumers.
+	 */
+	public void endFrame()
+	{
+		if (!iFrameInProgress)
+			throw new IllegalStateException("No frame has been begun");
+		
+		final int slotOffset = slotOffset((int)(iNextSequence % iSlotPixels.length));
+		iMap.putLong(slotOffset + 8, System.currentTimeMillis());
+		iMap.putLong(slotOffset, iNextSequence);
+		iMap.putLong(LATEST_SEQUENCE_OFFSET, iNextSequence);
+		
+		++iNextSequence;
+		iFrameInProgress = false;
+	}
+	
+	
+	
+	/**
+	 * Abandon the frame started by {@link #beginFrame()}, e.g. because 
+	 * rendering into it failed.
+	 * 
+	 * Consumers never see it; its slot gets reused for the next frame and 
+	 * stays marked as being written to until then.
+	 */
+	public void abortFrame()
+	{
+		if (!iFrameInProgress)
+			throw new IllegalStateException("No frame has been begun");
+		
+		iFrameInProgress = false;
+	}
+	
+	
+	
+	/**
+	 * Close the file.
+	 * 
+	 * The mapping itself only goes away once this object has been garbage 
+	 * collected, so none of the buffers returned by {@link #beginFrame()} 
+	 * may be used after this.
+	 * 
+	 * @throws IOException if closing fails.
+	 */
+	public void close() throws IOException
+	{
+		iSlotPixels = null;
+		iMap = null;
+		iChannel.close();
+		iFile.close();
+	}
+	
+	
+	
+	/**
+	 * Get the file offset of a slot.
+	 */
+	private int slotOffset(int aSlot)
+	{
+		return HEADER_SIZE + aSlot * iSlotSize;
+	}
+}
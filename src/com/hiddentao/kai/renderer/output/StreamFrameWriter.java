@@ -0,0 +1,51 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.output;
+
+import java.io.IOException;
+import java.io.OutputStream;
+
+
+/**
+ * Writes frames back to back onto a single stream, e.g. a pipe into a 
+ * video encoder.
+ */
+public final class StreamFrameWriter implements FrameWriter
+{
+	private OutputStream iStream = null;
+	
+	
+	/**
+	 * Constructor.
+	 * @param aStream the stream to write to. Gets closed once all frames 
+	 * have been written.
+	 */
+	public StreamFrameWriter(OutputStream aStream)
+	{
+		iStream = aStream;
+	}
+	
+	
+	public void write(int aFrameNumber, byte[] aData) throws IOException
+	{
+		iStream.write(aData);
+	}
+	
+	
+	public void close() throws IOException
+	{
+		iStream.close();
+	}
+}
@@ -0,0 +1,200 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.software;
+
+
+/**
+ * The parts of the viewport which need redrawing this frame, as a small 
+ * set of non-overlapping rectangles.
+ * 
+ * Rectangles which overlap get merged into their bounding rectangle. If 
+ * there end up being too many of them they all get merged into one, since 
+ * past that point the cost of drawing triangles once per rectangle 
+ * outweighs the area saved.
+ */
+final class DirtyRegion
+{
+	/** Max. no. of separate rectangles. */
+	private static final int MAX_RECTS = 8;
+	
+	private int iWidth = 0;
+	private int iHeight = 0;
+	
+	/* rectangle bounds, in pixels (inclusive) */
+	private int[] iLeft = new int[MAX_RECTS + 1];
+	private int[] iTop = new int[MAX_RECTS + 1];
+	private int[] iRight = new int[MAX_RECTS + 1];
+	private int[] iBottom = new int[MAX_RECTS + 1];
+	private int iNumRects = 0;
+	
+	
+	
+	/**
+	 * Empty the region.
+	 * @param aWidth the viewport width. Rectangles get clipped to this.
+	 * @param aHeight the viewport height. Rectangles get clipped to this.
+	 */
+	public void reset(int aWidth, int aHeight)
+	{
+		iWidth = aWidth;
+		iHeight = aHeight;
+		iNumRects = 0;
+	}
+	
+	
+	
+	/**
+	 * Set the region to be the whole viewport.
+	 */
+	public void setAll()
+	{
+		iNumRects = 0;
+		add(0, 0, iWidth - 1, iHeight - 1);
+	}
+	
+	
+	
+	/**
+	 * Add a rectangle to the region.
+	 * 
+	 * @param aLeft left edge (inclusive).
+	 * @param aTop top edge (inclusive).
+	 * @param aRight right edge (inclusive). If less than aLeft then the 
+	 * rectangle is empty and gets ignored.
+	 * @param aBottom bottom edge (inclusive). If less than aTop then the 
+	 * rectangle is empty and gets ignored.
+	 */
+	public void add(int aLeft, int aTop, int aRight, int aBottom)
+	{
+		// clip to viewport
+		if (0 > aLeft) aLeft = 0;
+		if (0 > aTop) aTop = 0;
+		if (iWidth <= aRight) aRight = iWidth - 1;
+		if (iHeight <= aBottom) aBottom = iHeight - 1;
+		if (aLeft > aRight || aTop > aBottom)
+			return;
+		
+		// keep merging with whatever it overlaps until it overlaps nothing
+		int i = 0;
+		while (i < iNumRects)
+		{
+			if (aLeft <= iRight[i] && iLeft[i] <= aRight && aTop <= iBottom[i] && iTop[i] <= aBottom)
+			{
+				if (iLeft[i] < aLeft) aLeft = iLeft[i];
+				if (iTop[i] < aTop) aTop = iTop[i];
+				if (iRight[i] > aRight) aRight = iRight[i];
+				if (iBottom[i] > aBottom) aBottom = iBottom[i];
+				
+				// remove it and start again, since the bigger rectangle may 
+				// now overlap ones already checked
+				remove(i);
+				i = 0;
+			}
+			else
+			{
+				++i;
+			}
+		}
+		
+		iLeft[iNumRects] = aLeft;
+		iTop[iNumRects] = aTop;
+		iRight[iNumRects] = aRight;
+		iBottom[iNumRects] = aBottom;
+		++iNumRects;
+		
+		if (MAX_RECTS < iNumRects)
+		{
+			mergeAll();
+		}
+	}
+	
+	
+	
+	/**
+	 * Get the no. of rectangles in the region.
+	 * @return 0 if nothing needs redrawing.
+	 */
+	public int size()
+	{
+		return iNumRects;
+	}
+	
+	
+	public int left(int aIndex)
+	{
+		return iLeft[aIndex];
+	}
+	
+	public int top(int aIndex)
+	{
+		return iTop[aIndex];
+	}
+	
+	public int right(int aIndex)
+	{
+		return iRight[aIndex];
+	}
+	
+	public int bottom(int aIndex)
+	{
+		return iBottom[aIndex];
+	}
+	
+	
+	
+	/**
+	 * Get the total no. of pixels in the region.
+	 */
+	public int area()
+	{
+		int area = 0;
+		for (int i=0; i<iNumRects; ++i)
+		{
+			area += (iRight[i] - iLeft[i] + 1) * (iBottom[i] - iTop[i] + 1);
+		}
+		return area;
+	}
+	
+	
+	
+	/**
+	 * Replace all the rectangles with their bounding rectangle.
+	 */
+	private void mergeAll()
+	{
+		for (int i=1; i<iNumRects; ++i)
+		{
+			if (iLeft[i] < iLeft[0]) iLeft[0] = iLeft[i];
+			if (iTop[i] < iTop[0]) iTop[0] = iTop[i];
+			if (iRight[i] > iRight[0]) iRight[0] = iRight[i];
+			if (iBottom[i] > iBottom[0]) iBottom[0] = iBottom[i];
+		}
+		iNumRects = 1;
+	}
+	
+	
+	
+	/**
+	 * Remove a rectangle.
+	 */
+	private void remove(int aIndex)
+	{
+		--iNumRects;
+		iLeft[aIndex] = iLeft[iNumRects];
+		iTop[aIndex] = iTop[iNumRects];
+		iRight[aIndex] = iRight[iNumRects];
+		iBottom[aIndex] = iBottom[iNumRects];
+	}
+}
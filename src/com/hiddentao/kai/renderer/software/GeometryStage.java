@@ -0,0 +1,499 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.software;
+
+import java.awt.Color;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import com.hiddentao.kai.geometry.Frustum;
+import com.hiddentao.kai.geometry.Mat4;
+import com.hiddentao.kai.geometry.Triangle3D;
+import com.hiddentao.kai.geometry.Vec4;
+import com.hiddentao.kai.geometry.VectorComponents;
+import com.hiddentao.kai.logging.Logger;
+import com.hiddentao.kai.renderer.RenderProbe;
+
+
+
+/**
+ * The geometry stage of the software rendering pipeline.
+ * 
+ * This transforms, frustum-culls, backface-culls and lights the triangles 
+ * of a list of {@link MeshWorkItem}s. Large workloads are split into 
+ * contiguous runs of work items (balanced by triangle count) which are 
+ * processed in parallel on a pool of worker threads, each with its own 
+ * scratch buffers. The calling thread always processes the first run 
+ * itself.
+ * 
+ * Output is written back into each work item so the order in which 
+ * triangles get rasterised is the same regardless of the no. of threads 
+ * used.
+ */
+final class GeometryStage implements VectorComponents
+{
+	private final static Logger LOG = Logger.getLogger(GeometryStage.class.getName());
+	
+	/**
+	 * Don't bother handing a run of work to another thread unless it has 
+	 * at least this many triangles in it.
+	 */
+	private static final int MIN_TRIANGLES_PER_TASK = 1024;
+	
+	private static final AtomicInteger POOL_NUMBER = new AtomicInteger(0);
+	
+	/** The no. of threads requested (applied at the start of the next frame). */
+	private volatile int iRequestedThreadCount = 1;
+	
+	private int iThreadCount = 0;
+	private ExecutorService iExecutor = null;
+	private Worker[] iWorkers = null;
+	private Future<?>[] iFutures = null;
+	
+	/* per-frame settings */
+	private Mat4 iViewportMat = null;
+	private Frustum iFrustum = null;
+	private boolean iBackfaceCullingEnabled = true;
+	private Vec4 iCameraDirection = null;
+	private RenderProbe iProbe = null;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * @param aThreadCount the no. of threads to use.
+	 */
+	public GeometryStage(int aThreadCount)
+	{
+		setThreadCount(aThreadCount);
+	}
+	
+	
+	
+	/**
+	 * Set the maximum no. of threads to use, including the calling thread. 
+	 * 
+	 * This takes effect from the next call to {@link #process(ArrayList, int)}.
+	 * 
+	 * @param aThreadCount a value >= 1. Values below 1 are treated as 1.
+	 */
+	public void setThreadCount(int aThreadCount)
+	{
+		iRequestedThreadCount = (1 > aThreadCount ? 1 : aThreadCount);
+	}
+	
+	
+	/**
+	 * Get the maximum no. of threads used.
+	 * @return a value >= 1.
+	 */
+	public int getThreadCount()
+	{
+		return iRequestedThreadCount;
+	}
+	
+	
+	
+	/**
+	 * Setup the settings for the next call to {@link #process(ArrayList, int)}.
+	 * 
+	 * The given objects must not be modified until processing is complete.
+	 * 
+	 * @param aViewportMat the projection-to-screen transformation matrix.
+	 * @param aFrustum the camera frustum.
+	 * @param aBackfaceCullingEnabled whether backface culling is enabled.
+	 * @param aCameraDirection the normalised camera direction vector in 
+	 * camera space.
+	 * @param aProbe the probe to report each mesh to. May be null.
+	 */
+	public void setup(Mat4 aViewportMat, Frustum aFrustum, 
+			boolean aBackfaceCullingEnabled, Vec4 aCameraDirection, 
+			RenderProbe aProbe)
+	{
+		iViewportMat = aViewportMat;
+		iFrustum = aFrustum;
+		iBackfaceCullingEnabled = aBackfaceCullingEnabled;
+		iCameraDirection = aCameraDirection;
+		iProbe = aProbe;
+	}
+	
+	
+	
+	/**
+	 * Process the given work items.
+	 * 
+	 * This returns once all items have been processed.
+	 * 
+	 * @param aItems the work items.
+	 * @param aNumItems the no. of items in the list to process, starting 
+	 * from the first one.
+	 */
+	public void process(ArrayList<MeshWorkItem> aItems, int aNumItems)
+	{
+		configureThreads();
+		
+		// work out how many triangles there are in total
+		int totalTriangles = 0;
+		for (int i=0; i<aNumItems; ++i)
+		{
+			MeshWorkItem item = aItems.get(i);
+			item.ensureCapacity(item.iMesh.numberOfPolygons());
+			totalTriangles += item.iMesh.numberOfPolygons();
+		}
+		
+		int numTasks = totalTriangles / MIN_TRIANGLES_PER_TASK;
+		if (numTasks > iThreadCount)
+			numTasks = iThreadCount;
+		if (numTasks > aNumItems)
+			numTasks = aNumItems;
+		
+		// not worth going parallel?
+		if (1 >= numTasks)
+		{
+			iWorkers[0].process(aItems, 0, aNumItems);
+			return;
+		}
+		
+		// split into runs of roughly equal no. of triangles
+		final int trianglesPerTask = totalTriangles / numTasks;
+		int task = 0, start = 0, count = 0;
+		for (int i=0; i<aNumItems && task < numTasks-1; ++i)
+		{
+			count += aItems.get(i).iMesh.numberOfPolygons();
+			if (count >= trianglesPerTask)
+			{
+				iWorkers[task].setRange(aItems, start, i+1);
+				++task;
+				start = i+1;
+				count = 0;
+			}
+		}
+		iWorkers[task].setRange(aItems, start, aNumItems);
+		numTasks = task + 1;
+		
+		// hand off all but the first run
+		for (int t=1; t<numTasks; ++t)
+		{
+			iFutures[t] = iExecutor.submit(iWorkers[t]);
+		}
+		
+		// do the first run on this thread, then wait for the others - even 
+		// if it fails, as they're still working on the shared items
+		boolean ranFirst = false;
+		try
+		{
+			iWorkers[0].run();
+			ranFirst = true;
+		}
+		finally
+		{
+			RuntimeException workerError = waitForWorkers(numTasks);
+			// an error on this thread takes precedence
+			if (ranFirst && null != workerError)
+				throw workerError;
+		}
+	}
+	
+	
+	
+	/**
+	 * Wait for all the handed off runs to finish.
+	 * 
+	 * @param aNumTasks the no. of runs, including the first one.
+	 * @return the first error encountered, or null if there was none.
+	 */
+	private RuntimeException waitForWorkers(int aNumTasks)
+	{
+		RuntimeException error = null;
+		boolean interrupted = false;
+		for (int t=1; t<aNumTasks; ++t)
+		{
+			while (null != iFutures[t])
+			{
+				try
+				{
+					iFutures[t].get();
+					iFutures[t] = null;
+				}
+				catch (ExecutionException e)
+				{
+					iFutures[t] = null;
+					if (null == error)
+						error = new RuntimeException("Error in geometry worker", e.getCause());
+				}
+				catch (InterruptedException e)
+				{
+					// keep waiting, the workers still need to finish
+					if (!interrupted)
+					{
+						interrupted = true;
+						if (null == error)
+							error = new RuntimeException("Interrupted whilst waiting for geometry workers", e);
+					}
+				}
+			}
+		}
+		if (interrupted)
+			Thread.currentThread().interrupt();
+		return error;
+	}
+	
+	
+	
+	/**
+	 * Shutdown the worker threads.
+	 * 
+	 * They will get recreated if {@link #process(ArrayList, int)} gets 
+	 * called again.
+	 */
+	public void shutdown()
+	{
+		if (null != iExecutor)
+		{
+			iExecutor.shutdown();
+			iExecutor = null;
+		}
+		iThreadCount = 0;
+	}
+	
+	
+	
+	/**
+	 * (Re)create the worker pool if the requested thread count has changed.
+	 */
+	private void configureThreads()
+	{
+		final int requested = iRequestedThreadCount;
+		if (requested == iThreadCount)
+			return;
+		
+		shutdown();
+		
+		iThreadCount = requested;
+		iWorkers = new Worker[iThreadCount];
+		iFutures = new Future<?>[iThreadCount];
+		for (int i=0; i<iThreadCount; ++i)
+		{
+			iWorkers[i] = new Worker();
+		}
+		
+		if (1 < iThreadCount)
+		{
+			final int poolNumber = POOL_NUMBER.incrementAndGet();
+			iExecutor = Executors.newFixedThreadPool(iThreadCount - 1, new ThreadFactory() 
+			{
+				private int iThreadNumber = 0;
+				
+				public Thread newThread(Runnable aRunnable)
+				{
+					Thread t = new Thread(aRunnable, "kai-geometry-" + poolNumber + "-" + (++iThreadNumber));
+					t.setDaemon(true);
+					return t;
+				}
+			});
+		}
+		
+		LOG.debug("Geometry threads: " + iThreadCount);
+	}
+	
+	
+	
+	
+	/**
+	 * Processes a run of work items using its own scratch buffers.
+	 */
+	private final class Worker implements Runnable
+	{
+		private Vec4[] iTransformedVectors = new Vec4[3];
+		private Vec4 iNormal = new Vec4();
+		private Vec4 iTempEdge1 = new Vec4();
+		private Vec4 iTempEdge2 = new Vec4();
+		
+		private ArrayList<MeshWorkItem> iItems = null;
+		private int iStart = 0;
+		private int iEnd = 0;
+		
+		
+		public Worker()
+		{
+			for (int i=0; i<3; ++i)
+			{
+				iTransformedVectors[i] = new Vec4();
+			}
+		}
+		
+		
+		/**
+		 * Set the run of work items to be processed by {@link #run()}.
+		 */
+		public void setRange(ArrayList<MeshWorkItem> aItems, int aStart, int aEnd)
+		{
+			iItems = aItems;
+			iStart = aStart;
+			iEnd = aEnd;
+		}
+		
+		
+		public void run()
+		{
+			process(iItems, iStart, iEnd);
+			iItems = null;
+		}
+		
+		
+		/**
+		 * Process work items.
+		 * 
+		 * @param aItems the work items.
+		 * @param aStart index of first item to process.
+		 * @param aEnd index after the last item to process.
+		 */
+		public void process(ArrayList<MeshWorkItem> aItems, int aStart, int aEnd)
+		{
+			final RenderProbe probe = iProbe;
+			for (int i=aStart; i<aEnd; ++i)
+			{
+				MeshWorkItem item = aItems.get(i);
+				if (null != probe)
+				{
+					probe.meshProcessBegin(item.iMesh);
+					process(item);
+					probe.meshProcessEnd(item.iMesh, 
+							item.iNumTriangles + item.iNumFrustumCulled + item.iNumBackfaceCulled, 
+							item.iNumFrustumCulled, item.iNumBackfaceCulled);
+				}
+				else
+				{
+					process(item);
+				}
+			}
+		}
+		
+		
+		/**
+		 * Process a work item.
+		 */
+		private void process(MeshWorkItem aItem)
+		{
+			final Mat4 transform = aItem.iTransform;
+			int numOutput = 0;
+			int numFrustumCulled = 0;
+			int numBackfaceCulled = 0;
+			
+			for (Iterator<Triangle3D> tris = aItem.iMesh.polygonIterator(); tris.hasNext(); )
+			{
+				// flag which indicates whether this triangle should be culled
+				boolean triangleCulled = false;
+				
+				// get next polygon
+				Triangle3D tri = tris.next();
+				
+				final int pointIndex = numOutput * 3;
+				
+				for (int i=0; i<3 && !triangleCulled; ++i)
+				{
+					Vec4 transformed = iTransformedVectors[i];
+					
+					// local-to-world-to-camera transformations
+					Mat4.transformVector(transform, tri.vertices[i].point, transformed);		
+					
+					// frustum-culling
+					if (	transformed.val[_Z_] > iFrustum.near 
+						||	transformed.val[_Z_] < iFrustum.far 
+							)
+					{
+						triangleCulled = true;
+						break;
+					}
+					
+					// divide by w (but ensure we keep value of z for depth sorting later on)
+					transformed.val[_X_] /= transformed.val[_W_];
+					transformed.val[_Y_] /= transformed.val[_W_];
+					transformed.val[_W_] = 1;
+					
+					// projection-to-screen transformations
+					Mat4.transformVector(iViewportMat, transformed, aItem.iScreenPoints[pointIndex + i]);
+					
+				} // end foreach vertex
+				
+				// if triangle has been frustum-culled then skip to next triangle
+				if (triangleCulled)
+				{
+					++numFrustumCulled;
+					continue;
+				}
+				
+				// recalculate the polygon normal
+				Vec4.calculateSurfaceNormal( 
+						iTransformedVectors[0], 
+						iTransformedVectors[1], 
+						iTransformedVectors[2],
+						iNormal, iTempEdge1, iTempEdge2
+						);
+				
+				// get dot product with camera direction vector
+				float dotProduct = iNormal.getDotProduct(iCameraDirection);
+				
+				// if backface culling is enabled
+				// (we could do this earlier if using orthographic projection but 
+				//   for code simplicity sake we're doing it here so that it 
+				//   doesn't matter what type of projection is active).
+				if (iBackfaceCullingEnabled)
+				{
+					// polygon is visible iff view direction vector and polygon 
+					// normal vector are heading in opposing directions 
+					if (0 < dotProduct)
+					{
+						++numBackfaceCulled;
+						continue;
+					}
+				} // end if backface culling enabled
+				
+				// lighting?
+				Color color = tri.color;
+				if (null != color)
+				{
+					// work out how bright tri should be
+					dotProduct = iNormal.getDotProduct(aItem.iLightVec);
+					if (0 > dotProduct)
+						dotProduct = -dotProduct;
+					
+					color = new Color(
+							(int) (color.getRed() * dotProduct),
+							(int) (color.getGreen() * dotProduct),
+							(int) (color.getBlue() * dotProduct)
+							);
+				}
+				
+				aItem.iTriangles[numOutput] = tri;
+				aItem.iColors[numOutput] = color;
+				++numOutput;
+				
+			} // end foreach triangle
+			
+			aItem.iNumTriangles = numOutput;
+			aItem.iNumFrustumCulled = numFrustumCulled;
+			aItem.iNumBackfaceCulled = numBackfaceCulled;
+			aItem.calculateBounds();
+		}
+	}
+	
+}
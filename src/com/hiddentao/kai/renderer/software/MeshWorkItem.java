@@ -0,0 +1,221 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.software;
+
+import java.awt.Color;
+
+import com.hiddentao.kai.geometry.Mat4;
+import com.hiddentao.kai.geometry.Triangle3D;
+import com.hiddentao.kai.geometry.Vec4;
+import com.hiddentao.kai.nodes.Mesh;
+
+
+/**
+ * A unit of work for the {@link GeometryStage}.
+ * 
+ * This holds a mesh along with the transformation matrix and lighting which 
+ * applied to it at the point it was reached in the scenegraph. Once 
+ * processed it also holds the mesh's visible triangles in screen space, 
+ * ready to be handed to the {@link Rasteriser}.
+ * 
+ * Work items are reused from frame to frame so the output arrays only ever 
+ * grow when a bigger mesh comes along. Since the item at a given position 
+ * in the traversal usually holds the same mesh each frame, it also 
+ * remembers what it held last frame, so that the renderer can tell which 
+ * parts of the screen need redrawing.
+ */
+final class MeshWorkItem
+{
+	/**
+	 * The mesh to process.
+	 */
+	public Mesh iMesh = null;
+	/**
+	 * The local-to-camera transformation matrix for the mesh.
+	 */
+	public Mat4 iTransform = new Mat4();
+	/**
+	 * The light direction vector which applies to the mesh.
+	 */
+	public Vec4 iLightVec = new Vec4();
+	
+	/**
+	 * The no. of visible triangles output by the geometry stage.
+	 */
+	public int iNumTriangles = 0;
+	/**
+	 * The no. of triangles discarded by the geometry stage for lying 
+	 * outside of the near/far planes.
+	 */
+	public int iNumFrustumCulled = 0;
+	/**
+	 * The no. of triangles discarded by the geometry stage for facing away 
+	 * from the camera.
+	 */
+	public int iNumBackfaceCulled = 0;
+	/**
+	 * The source triangle for each visible triangle.
+	 */
+	public Triangle3D[] iTriangles = new Triangle3D[0];
+	/**
+	 * The shaded colour of each visible triangle. May contain nulls.
+	 */
+	public Color[] iColors = new Color[0];
+	/**
+	 * The screen-space points of each visible triangle (3 per triangle).
+	 */
+	public Vec4[] iScreenPoints = new Vec4[0];
+	
+	/**
+	 * Whether the mesh, its version, transform or lighting differ from 
+	 * what this item held last frame.
+	 */
+	public boolean iChanged = true;
+	/**
+	 * Screen-space bounds of the visible triangles, in pixels (inclusive). 
+	 * Empty if {@link #iMinX} > {@link #iMaxX}.
+	 */
+	public int iMinX = 0, iMinY = 0, iMaxX = -1, iMaxY = -1;
+	/**
+	 * The bounds from last frame.
+	 */
+	public int iPrevMinX = 0, iPrevMinY = 0, iPrevMaxX = -1, iPrevMaxY = -1;
+	
+	/** Version of the mesh when it was last set. */
+	private int iMeshVersion = 0;
+	
+	
+	
+	/**
+	 * Prepare this item for a new frame.
+	 * 
+	 * @param aMesh the mesh to process.
+	 * @param aTransform the transformation matrix to apply (gets copied).
+	 * @param aLightVec the light direction vector (gets copied).
+	 */
+	public void set(Mesh aMesh, Mat4 aTransform, Vec4 aLightVec)
+	{
+		iChanged = (aMesh != iMesh 
+				|| aMesh.version() != iMeshVersion
+				|| !aTransform.equalTo(iTransform) 
+				|| !aLightVec.equalTo(iLightVec));
+		
+		iMesh = aMesh;
+		iMeshVersion = aMesh.version();
+		if (iChanged)
+		{
+			iTransform.set(aTransform);
+			iLightVec.set(aLightVec);
+		}
+		iNumTriangles = 0;
+		
+		iPrevMinX = iMinX;
+		iPrevMinY = iMinY;
+		iPrevMaxX = iMaxX;
+		iPrevMaxY = iMaxY;
+		iMinX = iMinY = 0;
+		iMaxX = iMaxY = -1;
+	}
+	
+	
+	
+	/**
+	 * Work out the screen-space bounds of the visible triangles.
+	 * 
+	 * The bounds are padded by a pixel on each side to allow for rounding 
+	 * in the rasteriser.
+	 */
+	public void calculateBounds()
+	{
+		if (0 == iNumTriangles)
+		{
+			iMinX = iMinY = 0;
+			iMaxX = iMaxY = -1;
+			return;
+		}
+		
+		float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+		float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+		for (int i = iNumTriangles * 3 - 1; i >= 0; --i)
+		{
+			final float x = iScreenPoints[i].val[0];
+			final float y = iScreenPoints[i].val[1];
+			if (x < minX) minX = x;
+			if (x > maxX) maxX = x;
+			if (y < minY) minY = y;
+			if (y > maxY) maxY = y;
+		}
+		
+		iMinX = (int)Math.floor(minX) - 1;
+		iMinY = (int)Math.floor(minY) - 1;
+		iMaxX = (int)Math.floor(maxX) + 1;
+		iMaxY = (int)Math.floor(maxY) + 1;
+	}
+	
+	
+	
+	/**
+	 * Ensure that the output arrays can hold the given no. of triangles.
+	 * 
+	 * @param aNumTriangles the required capacity.
+	 */
+	public void ensureCapacity(int aNumTriangles)
+	{
+		if (iTriangles.length >= aNumTriangles)
+			return;
+		
+		iTriangles = new Triangle3D[aNumTriangles];
+		iColors = new Color[aNumTriangles];
+		
+		Vec4[] points = new Vec4[aNumTriangles * 3];
+		System.arraycopy(iScreenPoints, 0, points, 0, iScreenPoints.length);
+		for (int i=iScreenPoints.length; i<points.length; ++i)
+		{
+			points[i] = new Vec4();
+		}
+		iScreenPoints = points;
+	}
+	
+	
+	
+	/**
+	 * Drop references to the triangles once the frame has been drawn.
+	 * 
+	 * The mesh itself is kept so that it can be compared against next frame.
+	 */
+	public void clear()
+	{
+		for (int i=0; i<iNumTriangles; ++i)
+		{
+			iTriangles[i] = null;
+			iColors[i] = null;
+		}
+		iNumTriangles = 0;
+	}
+	
+	
+	
+	/**
+	 * Forget everything, including the mesh and last frame's state.
+	 */
+	public void reset()
+	{
+		clear();
+		iMesh = null;
+		iChanged = true;
+		iMinX = iMinY = iPrevMinX = iPrevMinY = 0;
+		iMaxX = iMaxY = iPrevMaxX = iPrevMaxY = -1;
+	}
+}
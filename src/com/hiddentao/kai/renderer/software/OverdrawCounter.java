@@ -0,0 +1,189 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.renderer.software;
+
+import java.awt.Color;
+import java.nio.IntBuffer;
+import java.util.Arrays;
+
+
+/**
+ * Counts how many times each pixel gets drawn (or depth-tested) during a 
+ * frame, and draws the counts as a heatmap.
+ * 
+ * The rasteriser adds to the counts whenever 
+ * {@link RasterSettings#iOverdrawCounter} is set.
+ */
+final class OverdrawCounter
+{
+	/** Heatmap colours, indexed by {@link #level(int)}. */
+	private static final int[] RAMP = new int[] {
+		0x000000,	// not drawn
+		0x000080,	// 1
+		0x0000ff,	// 2
+		0x00c0ff,	// 3
+		0x00ff00,	// 4-7
+		0xffff00,	// 8-15
+		0xff8000,	// 16-31
+		0xff0000,	// 32-63
+		0xffffff	// 64+
+	};
+	
+	/** Whether to count pixels which fail the depth test as well as those drawn. */
+	boolean iCountDepthTests = false;
+	
+	/** Per-pixel counts, row by row. */
+	private int[] iCounts = null;
+	private int iWidth = 0;
+	
+	
+	
+	/**
+	 * Set all the counts to 0.
+	 * @param aWidth the viewport width.
+	 * @param aHeight the viewport height.
+	 */
+	void reset(int aWidth, int aHeight)
+	{
+		final int size = aWidth * aHeight;
+		if (null == iCounts || iCounts.length < size)
+		{
+			iCounts = new int[size];
+		}
+		else
+		{
+			Arrays.fill(iCounts, 0, size, 0);
+		}
+		iWidth = aWidth;
+	}
+	
+	
+	
+	/**
+	 * Count a horizontal run of pixels.
+	 * 
+	 * @param aSettings the settings, for the clipping rectangle.
+	 * @param x1 the x-coordinate of one end.
+	 * @param x2 the x-coordinate of the other end.
+	 * @param y the y-coordinate. Must lie within the clipping rectangle.
+	 */
+	void addSpan(RasterSettings aSettings, int x1, int x2, int y)
+	{
+		final int left = Math.max(aSettings.iClipLeft, Math.min(x1, x2));
+		final int right = Math.min(aSettings.iClipRight, Math.max(x1, x2));
+		for (int i = y * iWidth + left, end = y * iWidth + right; i <= end; ++i)
+		{
+			++iCounts[i];
+		}
+	}
+	
+	
+	/**
+	 * Count a vertical run of pixels.
+	 * 
+	 * @param aSettings the settings, for the clipping rectangle.
+	 * @param y1 the y-coordinate of one end.
+	 * @param y2 the y-coordinate of the other end.
+	 * @param x the x-coordinate. Must lie within the clipping rectangle.
+	 */
+	void addColumn(RasterSettings aSettings, int y1, int y2, int x)
+	{
+		final int top = Math.max(aSettings.iClipTop, Math.min(y1, y2));
+		final int bottom = Math.min(aSettings.iClipBottom, Math.max(y1, y2));
+		for (int i = top * iWidth + x, end = bottom * iWidth + x; i <= end; i += iWidth)
+		{
+			++iCounts[i];
+		}
+	}
+	
+	
+	
+	/**
+	 * Draw the counts within the clipping rectangle as a heatmap, replacing 
+	 * what's there.
+	 * 
+	 * @param aSettings the settings, for the clipping rectangle and where 
+	 * to draw.
+	 * @return the no. of pixels within the clipping rectangle which were 
+	 * counted at least once.
+	 */
+	long draw(RasterSettings aSettings)
+	{
+		long covered = 0;
+		
+		for (int y=aSettings.iClipTop; y<=aSettings.iClipBottom; ++y)
+		{
+			final int rowStart = y * iWidth;
+			
+			// one run of the same colour at a time
+			int x = aSettings.iClipLeft;
+			while (x <= aSettings.iClipRight)
+			{
+				final int level = level(iCounts[rowStart + x]);
+				final int runStart = x;
+				do
+				{
+					++x;
+				}
+				while (x <= aSettings.iClipRight && level(iCounts[rowStart + x]) == level);
+				
+				if (0 < level)
+					covered += x - runStart;
+				
+				fill(aSettings, runStart, x - 1, y, RAMP[level]);
+			}
+		}
+		
+		return covered;
+	}
+	
+	
+	/**
+	 * Get the heatmap colour index for a count. Counts above 3 are 
+	 * bucketed by powers of 2.
+	 */
+	private static int level(int aCount)
+	{
+		if (4 > aCount)
+			return aCount;
+		return Math.min(RAMP.length - 1, 2 + (31 - Integer.numberOfLeadingZeros(aCount)));
+	}
+	
+	
+	/**
+	 * Fill a horizontal run of pixels with the given colour.
+	 */
+	private void fill(RasterSettings aSettings, int x1, int x2, int y, int aRGB)
+	{
+		if (null != aSettings.iGraphics)
+		{
+			aSettings.iGraphics.setColor(new Color(aRGB));
+			aSettings.iGraphics.drawLine(x1, y, x2, y);
+		}
+		else if (null != aSettings.iPixels)
+		{
+			Arrays.fill(aSettings.iPixels, y * iWidth + x1, y * iWidth + x2 + 1, aRGB);
+		}
+		else
+		{
+			final IntBuffer pixels = aSettings.iPixelBuffer;
+			for (int i = y * iWidth + x1, end = y * iWidth + x2; i <= end; ++i)
+			{
+				pixels.put(i, aRGB);
+			}
+		}
+	}
+}
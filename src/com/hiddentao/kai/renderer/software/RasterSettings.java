@@ -15,6 +15,7 @@
 package com.hiddentao.kai.renderer.software;
 
 import java.awt.Graphics2D;
+import java.nio.IntBuffer;
 
 import com.hiddentao.kai.geometry.Dimensions2D;
 
@@ -39,5 +40,44 @@ class RasterSettings
 	 * The graphics device context to use
 	 */
 	public Graphics2D iGraphics = null;
+	/**
+	 * The pixels to draw into instead of {@link #iGraphics}, if not null. 
+	 * These are stored row by row, {@link #iViewportDimensions} wide.
+	 */
+	public int[] iPixels = null;
+	/**
+	 * The pixels to draw into if neither {@link #iGraphics} nor 
+	 * {@link #iPixels} is set. Laid out the same as {@link #iPixels}, 
+	 * starting at index 0.
+	 */
+	public IntBuffer iPixelBuffer = null;
+	/**
+	 * The RGB value of the current drawing color, when drawing into 
+	 * {@link #iPixels} or {@link #iPixelBuffer}.
+	 */
+	public int iColorRGB = 0;
+	/**
+	 * If not null then every pixel drawn (and, depending on its settings, 
+	 * every pixel depth-tested) gets counted by this.
+	 */
+	public OverdrawCounter iOverdrawCounter = null;
+	/**
+	 * The rectangle outside of which nothing gets drawn, in pixels 
+	 * (inclusive). This must lie within the viewport.
+	 */
+	public int iClipLeft = 0, iClipTop = 0, iClipRight = -1, iClipBottom = -1;
+	
+	
+	
+	/**
+	 * Set the clipping rectangle to cover the whole viewport.
+	 */
+	public void resetClip()
+	{
+		iClipLeft = 0;
+		iClipTop = 0;
+		iClipRight = iViewportDimensions.width - 1;
+		iClipBottom = iViewportDimensions.height - 1;
+	}
 }
 
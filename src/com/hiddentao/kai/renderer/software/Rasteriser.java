@@ -15,24 +15,28 @@
 package com.hiddentao.kai.renderer.software;
 
 import java.awt.Color;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 
 import com.hiddentao.kai.geometry.Vec4;
 import com.hiddentao.kai.geometry.VectorComponents;
 import com.hiddentao.kai.logging.Logger;
-import com.hiddentao.kai.utils.HasStaticData;
-import com.hiddentao.kai.utils.StaticDataManager;
+import com.hiddentao.kai.renderer.FrameStats;
 
 
 
 /**
  * Class responsible for drawing stuff onto the viewport.
+ * 
+ * Each instance has its own Z-buffer and must only be used by one thread 
+ * at a time.
+ * 
+ * @see RenderContext
  */
-final class Rasteriser implements HasStaticData, VectorComponents
+final class Rasteriser implements VectorComponents
 {
 	private final static Logger LOG = Logger.getLogger(Rasteriser.class.getName());
 	
-	private static Rasteriser iInstance = null;
-	
 	private int iFrameNumber = 0;
 	
 	private Vec4 iTempVec1 = new Vec4();
@@ -44,19 +48,17 @@ final class Rasteriser implements HasStaticData, VectorComponents
 	private int iTempInt = -1;
 	private float iTempFloat = -1;
 	
-
-	private Rasteriser()
-	{
-		StaticDataManager.register(this);
-	}
+	/** Span and pixel counts get added to this. */
+	private final FrameStats iStats;
 	
-	public static Rasteriser getInstance()
+
+	/**
+	 * Constructor.
+	 * @param aStats the statistics to add span and pixel counts to.
+	 */
+	Rasteriser(FrameStats aStats)
 	{
-		if (null == iInstance)
-		{
-			iInstance = new Rasteriser();
-		}
-		return iInstance;
+		iStats = aStats;
 	}
 	
 	
@@ -127,7 +129,10 @@ final class Rasteriser implements HasStaticData, VectorComponents
 	{
 		if (null != aTriangleColor)
 		{
-			aSettings.iGraphics.setColor(aTriangleColor);
+			if (null != aSettings.iGraphics)
+				aSettings.iGraphics.setColor(aTriangleColor);
+			else
+				aSettings.iColorRGB = aTriangleColor.getRGB();
 		}
 		
 		// point 1 and 2 lie on same horizontal line
@@ -557,7 +562,7 @@ final class Rasteriser implements HasStaticData, VectorComponents
 			int y)
 	{
 		// check that it's visible
-		if (0 > y || aSettings.iViewportDimensions.height <= y)
+		if (aSettings.iClipTop > y || aSettings.iClipBottom < y)
 			return;
 		
 		// if z-buffer is enabled
@@ -575,78 +580,193 @@ final class Rasteriser implements HasStaticData, VectorComponents
 			}
 			
 			// work out z-increment (use 0 if the line is actually just a dot)
-			float z_inc = (x1 < x2) ? (z2 - z1) / (x2 - x1) : 0;
+			final float z_inc = (x1 < x2) ? (z2 - z1) / (x2 - x1) : 0;
+			
+			/*
+			 * NOTE: z is worked out from the start of the line for every 
+			 * pixel rather than accumulated, so that a pixel gets the same 
+			 * depth no matter where the line has been clipped.
+			 */
+			final int x0 = x1;
+			final float z0 = z1;
 
-			// clip to viewport boundaries
-			if (0 > x1)
+			// clip to clipping rectangle (the viewport, unless only part 
+			// of it is being redrawn)
+			if (aSettings.iClipLeft > x1)
 			{
-			    if (0 > x2)
+			    if (aSettings.iClipLeft > x2)
 			        return;
 			    
-				z1 = z1 + (-x1) * z_inc;
-				x1 = 0;
+				x1 = aSettings.iClipLeft;
 			}
-			if (aSettings.iViewportDimensions.width <= x2)
+			if (aSettings.iClipRight < x2)
 			{
-	            if (aSettings.iViewportDimensions.width <= x1)
+	            if (aSettings.iClipRight < x1)
 	                return;
 	            
-	            z2 = z2 - (x2-aSettings.iViewportDimensions.width-1) * z_inc;
-				x2 = aSettings.iViewportDimensions.width-1;
+				x2 = aSettings.iClipRight;
 			}
 
 			int x = x1;
-			float z = z1;
 			
 			while (x <= x2)
 			{
-				// iterate past visible pixels until we hit one that's 
-				// occluded or until we pass the last pixel
+				// iterate past visible pixels, updating the z-buffer, until 
+				// we hit one that's occluded or until we pass the last pixel
+				x1 = x;
+				float z = z0 + (x - x0) * z_inc;
 				while (x <= x2 && (iZBufferFrameNumber[x][y] != iFrameNumber || z > iZBuffer[x][y]) )
 				{
-					++x; z += z_inc;
-					continue;
+					iZBuffer[x][y] = z;
+					iZBufferFrameNumber[x][y] = iFrameNumber;
+					++x; 
+					z = z0 + (x - x0) * z_inc;
 				}
 				
-				/*
-				 * NOTE: if we've passed the last pixel (i.e. x > x2) then it
-				 * means that the rest of the line is visible
-				 */
-				
-				// draw a line up until the occluded pixel and update the
-				// z-buffer and start points
+				// draw a line up until the occluded pixel
 				if (x > x1)
 				{
-					aSettings.iGraphics.drawLine(x1,y,x-1,y);
-					
-					z = z1;
-					for (int i=x1; i<x; ++i)
-					{
-						iZBuffer[i][y] = z;
-						iZBufferFrameNumber[i][y] = iFrameNumber;
-						z += z_inc;
-					}
-					// restore value of z to what it should be
-					z += z_inc;
+					drawSpan(aSettings, x1, x-1, y);
 				}
 				
 				// iterate past occluded pixels until we hit one that's 
 				// visible or until we pass the last pixel
+				final int occludedStart = x;
 				while (x <= x2 && (iZBufferFrameNumber[x][y] == iFrameNumber && z <= iZBuffer[x][y]) )
 				{
-					++x; z += z_inc;
-					continue;
+					++x; 
+					z = z0 + (x - x0) * z_inc;
+				}
+				iStats.pixelsDepthRejected += x - occludedStart;
+				if (x > occludedStart && null != aSettings.iOverdrawCounter 
+						&& aSettings.iOverdrawCounter.iCountDepthTests)
+				{
+					aSettings.iOverdrawCounter.addSpan(aSettings, occludedStart, x-1, y);
 				}
-				
-				// next set of visible pixels start at this point
-				x1 = x;
-				z1 = z;
 			}
 		}
 		// if z-buffer is off
 		else
+		{
+			drawSpan(aSettings, x1, x2, y);
+		}
+	}
+	
+	
+	
+	/**
+	 * Fill a horizontal run of pixels with the current color.
+	 * 
+	 * @param aSettings
+	 * @param x1 the x-coordinate of one end.
+	 * @param x2 the x-coordinate of the other end.
+	 * @param y the y-coordinate. Must lie within the clipping rectangle.
+	 */
+	private void drawSpan(RasterSettings aSettings, int x1, int x2, int y)
+	{
+		if (x1 > x2)
+		{
+			iTempInt = x1;
+			x1 = x2;
+			x2 = iTempInt;
+		}
+		
+		// clip to clipping rectangle, whatever we're drawing onto
+		if (aSettings.iClipLeft > x1)
+			x1 = aSettings.iClipLeft;
+		if (aSettings.iClipRight < x2)
+			x2 = aSettings.iClipRight;
+		if (x1 > x2)
+			return;
+		
+		if (null != aSettings.iOverdrawCounter)
+		{
+			aSettings.iOverdrawCounter.addSpan(aSettings, x1, x2, y);
+		}
+		
+		++iStats.spans;
+		iStats.pixelsWritten += x2 - x1 + 1;
+		
+		if (null != aSettings.iGraphics)
 		{
 			aSettings.iGraphics.drawLine(x1,y,x2,y);
+			return;
+		}
+		
+		final int rowStart = y * aSettings.iViewportDimensions.width;
+		if (null != aSettings.iPixels)
+		{
+			Arrays.fill(aSettings.iPixels, rowStart + x1, rowStart + x2 + 1, aSettings.iColorRGB);
+		}
+		else
+		{
+			final IntBuffer pixels = aSettings.iPixelBuffer;
+			final int rgb = aSettings.iColorRGB;
+			for (int i = rowStart + x1, end = rowStart + x2; i <= end; ++i)
+			{
+				pixels.put(i, rgb);
+			}
+		}
+	}
+	
+	
+	
+	/**
+	 * Fill a vertical run of pixels with the current color.
+	 * 
+	 * @param aSettings
+	 * @param y1 the y-coordinate of one end.
+	 * @param y2 the y-coordinate of the other end.
+	 * @param x the x-coordinate. Must lie within the clipping rectangle.
+	 */
+	private void drawColumn(RasterSettings aSettings, int y1, int y2, int x)
+	{
+		if (y1 > y2)
+		{
+			iTempInt = y1;
+			y1 = y2;
+			y2 = iTempInt;
+		}
+		
+		// clip to clipping rectangle, whatever we're drawing onto
+		if (aSettings.iClipTop > y1)
+			y1 = aSettings.iClipTop;
+		if (aSettings.iClipBottom < y2)
+			y2 = aSettings.iClipBottom;
+		if (y1 > y2)
+			return;
+		
+		if (null != aSettings.iOverdrawCounter)
+		{
+			aSettings.iOverdrawCounter.addColumn(aSettings, y1, y2, x);
+		}
+		
+		++iStats.spans;
+		iStats.pixelsWritten += y2 - y1 + 1;
+		
+		if (null != aSettings.iGraphics)
+		{
+			aSettings.iGraphics.drawLine(x,y1,x,y2);
+			return;
+		}
+		
+		final int width = aSettings.iViewportDimensions.width;
+		final int rgb = aSettings.iColorRGB;
+		if (null != aSettings.iPixels)
+		{
+			final int[] pixels = aSettings.iPixels;
+			for (int i = y1 * width + x, end = y2 * width + x; i <= end; i += width)
+			{
+				pixels[i] = rgb;
+			}
+		}
+		else
+		{
+			final IntBuffer pixels = aSettings.iPixelBuffer;
+			for (int i = y1 * width + x, end = y2 * width + x; i <= end; i += width)
+			{
+				pixels.put(i, rgb);
+			}
 		}
 	}
 	
@@ -673,7 +793,7 @@ final class Rasteriser implements HasStaticData, VectorComponents
 			int x)
 	{
 		// check that it's visible
-		if (0 > x || aSettings.iViewportDimensions.width <= x)
+		if (aSettings.iClipLeft > x || aSettings.iClipRight < x)
 			return;
 		
 		
@@ -692,84 +812,73 @@ final class Rasteriser implements HasStaticData, VectorComponents
 			}
 			
 			// work out z-increment (use 0 if the line is actually just a dot)
-			float z_inc = (y1 < y2) ? (z2 - z1) / (y2 - y1) : 0;
+			final float z_inc = (y1 < y2) ? (z2 - z1) / (y2 - y1) : 0;
+			
+			// z is worked out from the start of the line for every pixel 
+			// (see drawHorizontalLine())
+			final int y0 = y1;
+			final float z0 = z1;
 			
-			// clip to viewport boundaries
-			if (0 > y1)
+			// clip to clipping rectangle
+			if (aSettings.iClipTop > y1)
 			{
-	            if (0 > y2)
+	            if (aSettings.iClipTop > y2)
 	                return;
 
-	            z1 = z1 + (-y1) * z_inc;
-				y1 = 0;
+				y1 = aSettings.iClipTop;
 			}
-			if (aSettings.iViewportDimensions.width <= y2)
+			if (aSettings.iClipBottom < y2)
 			{	    
-			    if (aSettings.iViewportDimensions.width <= y1)
+			    if (aSettings.iClipBottom < y1)
 			        return;
 			    
-				z2 = z2 - (y2-aSettings.iViewportDimensions.width-1) * z_inc;
-				y2 = aSettings.iViewportDimensions.height-1;
+				y2 = aSettings.iClipBottom;
 			}
 			
 			int y = y1;
-			float z = z1;
 			
 			while (y <= y2)
 			{
-				// iterate past visible pixels until we hit one that's 
-				// occluded or until we pass the last pixel
+				// iterate past visible pixels, updating the z-buffer, until 
+				// we hit one that's occluded or until we pass the last pixel
+				y1 = y;
+				float z = z0 + (y - y0) * z_inc;
 				while (y <= y2 && (iZBufferFrameNumber[x][y] != iFrameNumber || z > iZBuffer[x][y]) )
 				{
-					++y; z += z_inc;
-					continue;
+					iZBuffer[x][y] = z;
+					iZBufferFrameNumber[x][y] = iFrameNumber;
+					++y; 
+					z = z0 + (y - y0) * z_inc;
 				}
 				
-				/*
-				 * NOTE: if we've passed the last pixel (i.e. x > x2) then it
-				 * means that the rest of the line is visible
-				 */
-				
-				// draw a line up until the occluded pixel and update the
-				// z-buffer and start points
+				// draw a line up until the occluded pixel
 				if (y > y1)
 				{
-					aSettings.iGraphics.drawLine(x,y1,x,y-1);
-					z = z1;
-					for (int i=y1; i<y; ++i)
-					{
-						iZBuffer[x][i] = z;
-						iZBufferFrameNumber[x][i] = iFrameNumber;
-						z += z_inc;
-					}
-					// restore value of z to what it should be
-					z += z_inc;
+					drawColumn(aSettings, y1, y-1, x);
 				}
 				
 				// iterate past occluded pixels until we hit one that's 
 				// visible or until we pass the last pixel
+				final int occludedStart = y;
 				while (y <= y2 && (iZBufferFrameNumber[x][y] == iFrameNumber && z <= iZBuffer[x][y]) )
 				{
-					++y; z += z_inc;
-					continue;
+					++y; 
+					z = z0 + (y - y0) * z_inc;
+				}
+				iStats.pixelsDepthRejected += y - occludedStart;
+				if (y > occludedStart && null != aSettings.iOverdrawCounter 
+						&& aSettings.iOverdrawCounter.iCountDepthTests)
+				{
+					aSettings.iOverdrawCounter.addColumn(aSettings, occludedStart, y-1, x);
 				}
-				
-				// next set of visible pixels start at this point
-				y1 = y;
-				z1 = z;
 			}
 		}
 		// if z-buffer is off
 		else
 		{
-			aSettings.iGraphics.drawLine(x,y1,x,y2);
+			drawColumn(aSettings, y1, y2, x);
 		}
 	}
-	
-	public void resetStaticData()
-	{
-		iInstance = null;
-	}
 }
 
 
@@ -0,0 +1,94 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.renderer.software;
+
+import java.util.ArrayList;
+
+import com.hiddentao.kai.geometry.util.MatrixStack;
+import com.hiddentao.kai.renderer.FrameStats;
+
+
+/**
+ * The per-frame working state of a {@link SoftwareRenderer}.
+ * 
+ * Each renderer owns its own context, so separate renderers share nothing 
+ * and can render concurrently on different threads.
+ */
+final class RenderContext
+{
+	/**
+	 * Rasteriser settings.
+	 */
+	public final RasterSettings iRasterSettings = new RasterSettings();
+	/**
+	 * Statistics for the frame being (or last) rendered.
+	 */
+	public final FrameStats iFrameStats = new FrameStats();
+	/**
+	 * Draws triangles, and holds the Z-buffer.
+	 */
+	public final Rasteriser iRasteriser = new Rasteriser(iFrameStats);
+	/**
+	 * Saves transformation matrices during scene traversal.
+	 */
+	public final MatrixStack iMatrixStack = new MatrixStack();
+	/** 
+	 * Meshes gathered during scene traversal, in traversal order. Only the 
+	 * first {@link #iNumWorkItems} are in use. 
+	 */
+	public final ArrayList<MeshWorkItem> iWorkItems = new ArrayList<MeshWorkItem>();
+	/**
+	 * No. of work items in use this frame.
+	 */
+	public int iNumWorkItems = 0;
+	/**
+	 * No. of work items which were in use last frame.
+	 */
+	public int iPrevNumWorkItems = 0;
+	/**
+	 * The parts of the viewport being redrawn this frame.
+	 */
+	public final DirtyRegion iDirtyRegion = new DirtyRegion();
+	
+	
+	
+	/**
+	 * Get ready to draw the next frame.
+	 */
+	public void resetForNextFrame()
+	{
+		iMatrixStack.clear();
+		iFrameStats.reset();
+		iPrevNumWorkItems = iNumWorkItems;
+		iNumWorkItems = 0;
+		iRasterSettings.resetClip();
+		iRasteriser.resetForNextFrame(iRasterSettings);
+	}
+	
+	
+	
+	/**
+	 * Get the next unused work item, creating it if needed.
+	 * @return a non-null work item.
+	 */
+	public MeshWorkItem nextWorkItem()
+	{
+		if (iWorkItems.size() <= iNumWorkItems)
+		{
+			iWorkItems.add(new MeshWorkItem());
+		}
+		return iWorkItems.get(iNumWorkItems++);
+	}
+}
@@ -31,5 +31,11 @@ public final class SoftwareRenderSystem implements RenderingSystem
 	{
 		return iRenderer;
 	}
+	
+	
+	public Renderer createRenderer()
+	{
+		return new SoftwareRenderer();
+	}
 
 }
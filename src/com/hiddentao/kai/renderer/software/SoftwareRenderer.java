@@ -16,7 +16,13 @@ package com.hiddentao.kai.renderer.software;
 
 import java.awt.Color;
 import java.awt.Graphics2D;
+import java.nio.IntBuffer;
+import java.util.Arrays;
 import java.util.Iterator;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import javax.management.ObjectName;
 
 import com.hiddentao.kai.geometry.Dimensions2D;
 import com.hiddentao.kai.geometry.Frustum;
@@ -24,22 +30,46 @@ import com.hiddentao.kai.geometry.Mat4;
 import com.hiddentao.kai.geometry.Triangle3D;
 import com.hiddentao.kai.geometry.Vec4;
 import com.hiddentao.kai.geometry.VectorComponents;
-import com.hiddentao.kai.geometry.util.MatrixStack;
 import com.hiddentao.kai.geometry.util.MatrixStack.MatrixStackException;
 import com.hiddentao.kai.logging.Logger;
 import com.hiddentao.kai.nodes.Mesh;
 import com.hiddentao.kai.nodes.Node;
 import com.hiddentao.kai.renderer.Camera;
+import com.hiddentao.kai.renderer.DebugView;
+import com.hiddentao.kai.renderer.FrameStats;
+import com.hiddentao.kai.renderer.FrameTimeMonitor;
 import com.hiddentao.kai.renderer.Renderer;
+import com.hiddentao.kai.renderer.RendererMBeanImpl;
+import com.hiddentao.kai.renderer.RenderProbe;
+import com.hiddentao.kai.renderer.RenderProbes;
 
+/**
+ * Renders scenes in software.
+ * 
+ * All per-frame state lives in a {@link RenderContext} owned by the 
+ * renderer, so separate instances can render concurrently. Each instance 
+ * must only be used by one thread at a time, although its settings may be 
+ * changed from other threads (e.g. through JMX). Such changes take effect 
+ * from the next frame.
+ * 
+ * When rendering into the same pixels as last frame, only the parts of 
+ * the viewport covered by meshes which have moved, changed, appeared or 
+ * disappeared get cleared and redrawn (see 
+ * {@link #enableIncrementalRendering(boolean)}).
+ */
 final class SoftwareRenderer extends Renderer implements VectorComponents
 {
 	private final static Logger LOG = Logger.getLogger(SoftwareRenderer.class.getName());
 
+	/** Per-frame working state. */
+	private RenderContext iContext = null;
 	private RasterSettings iRasterSettings = null;
 	
-	private boolean iBackfaceCullingEnabled = true;
-	private Color iBgColor = Color.BLACK;
+	/* settings, which may be changed from other threads */
+	private volatile boolean iBackfaceCullingEnabled = true;
+	private volatile boolean iWireframeModeEnabled = false;
+	private volatile boolean iZBufferEnabled = false;
+	private volatile Color iBgColor = Color.BLACK;
 	private Mat4 iViewportMat = new Mat4();
 	private Mat4 iCameraMat = new Mat4();
 	private Mat4 iProjectionMat = new Mat4();
@@ -48,8 +78,8 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	private float iAspectRatio = 1;
 	private Frustum iCameraFrustum = null;
 	
-	private Vec4[] iTransformedVectors1 = new Vec4[3];
-	private Vec4[] iTransformedVectors2 = new Vec4[3];
+	/** Transforms, culls and lights the gathered meshes. */
+	private GeometryStage iGeometryStage = null;
 	
 	/** Vector used in backface culling algorithm. */
 	private Vec4 iCameraDirection = new Vec4();
@@ -63,27 +93,54 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	/** Whether perspective projection is enabled. */
 	private boolean iPerspectiveProjectionEnabled = false;
 	
-	private Vec4 iTempVec1 = new Vec4();
 	private Mat4 iTempMat1 = new Mat4();
 	private StringBuilder iTempStr = new StringBuilder(24);
-	private Color iTempCol1 = new Color(0);
 	private Vec4 iLightVec = new Vec4();
 	
+	/* incremental rendering */
+	private volatile boolean iIncrementalRenderingEnabled = true;
+	private volatile DebugView iDebugView = DebugView.NONE;
+	/** Created when a debug view is first needed. */
+	private OverdrawCounter iOverdrawCounter = null;
+	private final AtomicBoolean iFullRedrawRequested = new AtomicBoolean(true);
+	private final AtomicInteger iSettingsVersion = new AtomicInteger(0);
+	/** What was drawn into last frame, if it can be redrawn incrementally. */
+	private Object iPrevTarget = null;
+	private int iPrevWidth = 0;
+	private int iPrevHeight = 0;
+	private Mat4 iPrevViewMat = new Mat4();
+	private float iPrevNear = 0;
+	private float iPrevFar = 0;
+	
+	/* scissor rectangle (inclusive) */
+	private boolean iScissorEnabled = false;
+	private int iScissorLeft, iScissorTop, iScissorRight, iScissorBottom;
+	
+	private final FrameTimeMonitor iFrameTimes = new FrameTimeMonitor();
+	/** Copy of the last completed frame's statistics, guarded by itself. */
+	private final FrameStats iLastFrameStats = new FrameStats();
+	
+	private Exception iLastRenderError = null;
+	
+	/** Whether the work items hold a scene prepared by {@link #prepareRegions(Node)}. */
+	private boolean iRegionsPrepared = false;
+	private OverdrawCounter iRegionsOverdrawCounter = null;
+	
+	/** What this is registered as in the platform MBean server. */
+	private ObjectName iMBeanName = null;
+	
 	
 	public SoftwareRenderer()
 	{
-		// initialise array to hold a transformed triangle's vectors
-		for (int i=0; i<3; ++i)
-		{
-			iTransformedVectors1[i] = new Vec4();
-			iTransformedVectors2[i] = new Vec4();
-		}
-
-		iRasterSettings = new RasterSettings();
+		iContext = new RenderContext();
+		iRasterSettings = iContext.iRasterSettings;
+		iGeometryStage = new GeometryStage(Runtime.getRuntime().availableProcessors());
 
 		enableBackfaceCulling(true);
 		enableWireframeMode(false);
 		enableZBuffer(true);
+		
+		iMBeanName = RendererMBeanImpl.register(this, "SoftwareRenderer");
 	}
 	
 	
@@ -91,47 +148,451 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	@Override
 	public void render(Node aRoot, Graphics2D aGraphics)
 	{
+		iLastRenderError = null;
 		try
 		{
 			final long startTime = System.nanoTime();
 
 			// rasteriser settings
+			iRasterSettings.iPixels = null;
+			iRasterSettings.iPixelBuffer = null;
 			iRasterSettings.iGraphics = aGraphics;
 			iRasterSettings.iGraphics.setBackground(iBgColor);
-			iRasterSettings.iGraphics.clearRect(
-					0, 0, 
-					iRasterSettings.iViewportDimensions.width,
-					iRasterSettings.iViewportDimensions.height
-					);
 			
-			// reset rasteriser
-			Rasteriser.getInstance().resetForNextFrame(iRasterSettings);
-		
-			// set initial transformation matrix
-			iTransformationMatrix.set(iProjectionMat).multEq(iCameraMat);
+			// we can't rely on the graphics context keeping last frame's 
+			// contents, so always redraw everything
+			renderScene(aRoot, null);
 			
-			// reset lighting
-			iLightVec.setZero();
+			// show fps, unless we may only draw within the scissor rectangle
+			if (!iScissorEnabled)
+			{
+				final long timeTakenInNanos = System.nanoTime() - startTime + 1;	// >0
+				iTempStr.setLength(0);
+				iTempStr.append(Math.round((1.0f / (timeTakenInNanos / 1000000000.0f))));
+				iTempStr.append(" fps");
+				iRasterSettings.iGraphics.setColor(Color.WHITE);
+				iRasterSettings.iGraphics.drawString(iTempStr.toString(), 5, 10);
+			}
+		}
+		catch (Exception e)
+		{
+			renderFailed(e);
+		}			
+	}
+
+	
+	
+	@Override
+	public void render(Node aRoot, int[] aPixels)
+	{
+		iLastRenderError = null;
+		try
+		{
+			// rasteriser settings
+			iRasterSettings.iGraphics = null;
+			iRasterSettings.iPixelBuffer = null;
+			iRasterSettings.iPixels = aPixels;
 			
-			// render the scene
-			visitScene(aRoot);
+			renderScene(aRoot, aPixels);
+		}
+		catch (Exception e)
+		{
+			renderFailed(e);
+		}
+		finally
+		{
+			iRasterSettings.iPixels = null;
+		}
+	}
+	
+	
+	
+	@Override
+	public void render(Node aRoot, IntBuffer aPixels)
+	{
+		iLastRenderError = null;
+		try
+		{
+			// rasteriser settings
+			iRasterSettings.iGraphics = null;
+			iRasterSettings.iPixels = null;
+			iRasterSettings.iPixelBuffer = aPixels.slice();
 			
-			// show fps
-			final long timeTakenInNanos = System.nanoTime() - startTime + 1;	// >0
-			iTempStr.setLength(0);
-			iTempStr.append(Math.round((1.0f / (timeTakenInNanos / 1000000000.0f))));
-			iTempStr.append(" fps");
-			iRasterSettings.iGraphics.setColor(Color.WHITE);
-			iRasterSettings.iGraphics.drawString(iTempStr.toString(), 5, 10);
+			renderScene(aRoot, aPixels);
 		}
 		catch (Exception e)
 		{
-			LOG.error("Error rendering frame", e);
-		}			
+			renderFailed(e);
+		}
+		finally
+		{
+			iRasterSettings.iPixelBuffer = null;
+		}
+	}
+	
+	
+	
+	/**
+	 * Handle an error which stopped a frame from being rendered.
+	 */
+	private void renderFailed(Exception aError)
+	{
+		LOG.error("Error rendering frame", aError);
+		iLastRenderError = aError;
+		// whatever got retained is only partly drawn
+		iFullRedrawRequested.set(true);
+	}
+	
+	
+	
+	/**
+	 * Draw the scene onto the render target set in the rasteriser settings.
+	 * 
+	 * @param aRoot the root node of the scenegraph. May be null.
+	 * @param aRetainedTarget the pixels being drawn into, if they still hold 
+	 * whatever got drawn into them last; null if the whole viewport must be 
+	 * redrawn.
+	 * @throws MatrixStackException 
+	 */
+	private void renderScene(Node aRoot, Object aRetainedTarget) throws MatrixStackException
+	{
+		// take the request before the settings, so that a change made after 
+		// this point triggers a full redraw next frame rather than being lost
+		final boolean redrawRequested = iFullRedrawRequested.getAndSet(false);
+		final DebugView debugView = iDebugView;
+		final boolean backfaceCullingEnabled = iBackfaceCullingEnabled;
+		iRasterSettings.iWireframeModeEnabled = iWireframeModeEnabled;
+		iRasterSettings.iZBufferEnabled = iZBufferEnabled;
+		
+		releaseRegions();
+		
+		// reset rasteriser, matrix stack, etc.
+		iContext.resetForNextFrame();
+		
+		final RenderProbe probe = RenderProbes.get();
+		if (null != probe)
+			probe.stageBegin(FrameTimeMonitor.Stage.FRAME);
+		
+		// set initial transformation matrix
+		iTransformationMatrix.set(iProjectionMat).multEq(iCameraMat);
+		
+		// can we get away with only redrawing what's changed?
+		final int width = iRasterSettings.iViewportDimensions.width;
+		final int height = iRasterSettings.iViewportDimensions.height;
+		boolean fullRedraw = (redrawRequested 
+				|| !iIncrementalRenderingEnabled
+				|| DebugView.NONE != debugView
+				|| null == aRetainedTarget 
+				|| aRetainedTarget != iPrevTarget
+				|| width != iPrevWidth || height != iPrevHeight
+				|| iCameraFrustum.near != iPrevNear || iCameraFrustum.far != iPrevFar
+				|| !iTransformationMatrix.equalTo(iPrevViewMat));
+		
+		iPrevTarget = aRetainedTarget;
+		iPrevWidth = width;
+		iPrevHeight = height;
+		iPrevNear = iCameraFrustum.near;
+		iPrevFar = iCameraFrustum.far;
+		iPrevViewMat.set(iTransformationMatrix);
+		
+		processScene(aRoot, backfaceCullingEnabled, probe);
+		
+		final FrameStats stats = iContext.iFrameStats;
+		final long rasterStart = System.nanoTime();
+		if (null != probe)
+			probe.stageBegin(FrameTimeMonitor.Stage.RASTER);
+		
+		// work out what to redraw
+		final DirtyRegion region = iContext.iDirtyRegion;
+		region.reset(width, height);
+		if (iScissorEnabled)
+		{
+			region.add(iScissorLeft, iScissorTop, iScissorRight, iScissorBottom);
+			// the rest of the target hasn't been drawn this frame
+			iFullRedrawRequested.set(true);
+		}
+		else if (fullRedraw)
+		{
+			region.setAll();
+		}
+		else
+		{
+			calculateDirtyRegion(region);
+			// not worth the per-rectangle overhead
+			if (region.area() * 2 > width * height)
+			{
+				region.setAll();
+			}
+		}
+		
+		// count pixel writes for the debug view?
+		final OverdrawCounter counter = resetOverdrawCounter(debugView, width, height);
+		iRasterSettings.iOverdrawCounter = counter;
+		
+		// draw them
+		for (int r=0; r<region.size(); ++r)
+		{
+			iRasterSettings.iClipLeft = region.left(r);
+			iRasterSettings.iClipTop = region.top(r);
+			iRasterSettings.iClipRight = region.right(r);
+			iRasterSettings.iClipBottom = region.bottom(r);
+			
+			clearClipRect();
+			rasteriseWorkItems(probe);
+			
+			if (null != counter)
+			{
+				stats.pixelsCovered += counter.draw(iRasterSettings);
+			}
+		}
+		iRasterSettings.resetClip();
+		iRasterSettings.iOverdrawCounter = null;
+		
+		stats.rasterNanos = System.nanoTime() - rasterStart;
+		if (null != probe)
+			probe.stageEnd(FrameTimeMonitor.Stage.RASTER, stats);
+		
+		// done with this frame's triangles
+		for (int i=0; i<iContext.iNumWorkItems; ++i)
+		{
+			MeshWorkItem item = iContext.iWorkItems.get(i);
+			stats.trianglesSubmitted += item.iNumTriangles + item.iNumFrustumCulled + item.iNumBackfaceCulled;
+			stats.trianglesFrustumCulled += item.iNumFrustumCulled;
+			stats.trianglesBackfaceCulled += item.iNumBackfaceCulled;
+			item.clear();
+		}
+		// forget meshes which are no longer in the scene
+		for (int i=iContext.iNumWorkItems; i<iContext.iPrevNumWorkItems; ++i)
+		{
+			iContext.iWorkItems.get(i).reset();
+		}
+		
+		// a scissored render is only part of a frame (e.g. a refinement 
+		// band), so it would skew the frame times and statistics
+		if (!iScissorEnabled)
+		{
+			iFrameTimes.record(stats);
+			synchronized (iLastFrameStats)
+			{
+				iLastFrameStats.set(stats);
+			}
+		}
+		if (null != probe)
+			probe.stageEnd(FrameTimeMonitor.Stage.FRAME, stats);
+	}
+	
+	
+	
+	/**
+	 * Gather the meshes in the scene, then transform, cull and light them 
+	 * into the work items.
+	 * 
+	 * @param aRoot the root node of the scenegraph. May be null.
+	 * @param aBackfaceCullingEnabled whether to cull back faces.
+	 * @param aProbe the probe to report stages to. May be null.
+	 * @throws MatrixStackException
+	 */
+	private void processScene(Node aRoot, boolean aBackfaceCullingEnabled, RenderProbe aProbe) 
+		throws MatrixStackException
+	{
+		// reset lighting
+		iLightVec.setZero();
+		
+		final FrameStats stats = iContext.iFrameStats;
+		final long traversalStart = System.nanoTime();
+		if (null != aProbe)
+			aProbe.stageBegin(FrameTimeMonitor.Stage.TRAVERSAL);
+		
+		// gather the meshes in the scene
+		visitScene(aRoot);
+		
+		final long transformStart = System.nanoTime();
+		stats.traversalNanos = transformStart - traversalStart;
+		if (null != aProbe)
+		{
+			aProbe.stageEnd(FrameTimeMonitor.Stage.TRAVERSAL, stats);
+			aProbe.stageBegin(FrameTimeMonitor.Stage.TRANSFORM);
+		}
+		
+		// transform, cull and light them
+		iGeometryStage.setup(iViewportMat, iCameraFrustum, 
+				aBackfaceCullingEnabled, iTransformedCameraDirection, aProbe);
+		iGeometryStage.process(iContext.iWorkItems, iContext.iNumWorkItems);
+		
+		stats.transformNanos = System.nanoTime() - transformStart;
+		if (null != aProbe)
+			aProbe.stageEnd(FrameTimeMonitor.Stage.TRANSFORM, stats);
+	}
+	
+	
+	
+	/**
+	 * Get the overdraw counter to use for the given debug view, reset for 
+	 * a new frame.
+	 * 
+	 * @return null if the debug view doesn't need one.
+	 */
+	private OverdrawCounter resetOverdrawCounter(DebugView aDebugView, int aWidth, int aHeight)
+	{
+		if (DebugView.NONE == aDebugView)
+			return null;
+		
+		if (null == iOverdrawCounter)
+			iOverdrawCounter = new OverdrawCounter();
+		iOverdrawCounter.reset(aWidth, aHeight);
+		iOverdrawCounter.iCountDepthTests = (DebugView.DEPTH_COMPLEXITY == aDebugView);
+		return iOverdrawCounter;
+	}
+	
+	
+	
+	/**
+	 * Forget the scene prepared by {@link #prepareRegions(Node)}, if any.
+	 */
+	private void releaseRegions()
+	{
+		if (!iRegionsPrepared)
+			return;
+		
+		iRegionsPrepared = false;
+		for (int i=0; i<iContext.iNumWorkItems; ++i)
+		{
+			iContext.iWorkItems.get(i).clear();
+		}
+	}
+	
+	
+	
+	/**
+	 * Add the screen areas covered by meshes which have changed since last 
+	 * frame (both where they were and where they are now) to the given 
+	 * region.
+	 */
+	private void calculateDirtyRegion(DirtyRegion aRegion)
+	{
+		for (int i=0; i<iContext.iNumWorkItems; ++i)
+		{
+			MeshWorkItem item = iContext.iWorkItems.get(i);
+			if (item.iChanged)
+			{
+				aRegion.add(item.iPrevMinX, item.iPrevMinY, item.iPrevMaxX, item.iPrevMaxY);
+				aRegion.add(item.iMinX, item.iMinY, item.iMaxX, item.iMaxY);
+			}
+		}
+		
+		// meshes which were drawn last frame but not this one
+		for (int i=iContext.iNumWorkItems; i<iContext.iPrevNumWorkItems; ++i)
+		{
+			MeshWorkItem item = iContext.iWorkItems.get(i);
+			aRegion.add(item.iMinX, item.iMinY, item.iMaxX, item.iMaxY);
+		}
+	}
+	
+	
+	
+	/**
+	 * Fill the current clipping rectangle with the background colour.
+	 */
+	private void clearClipRect()
+	{
+		final int left = iRasterSettings.iClipLeft;
+		final int top = iRasterSettings.iClipTop;
+		final int right = iRasterSettings.iClipRight;
+		final int bottom = iRasterSettings.iClipBottom;
+		final int width = iRasterSettings.iViewportDimensions.width;
+		
+		if (null != iRasterSettings.iGraphics)
+		{
+			iRasterSettings.iGraphics.clearRect(left, top, right - left + 1, bottom - top + 1);
+		}
+		else if (null != iRasterSettings.iPixels)
+		{
+			final int rgb = iBgColor.getRGB();
+			for (int y=top; y<=bottom; ++y)
+			{
+				Arrays.fill(iRasterSettings.iPixels, y * width + left, y * width + right + 1, rgb);
+			}
+		}
+		else
+		{
+			final IntBuffer pixels = iRasterSettings.iPixelBuffer;
+			final int rgb = iBgColor.getRGB();
+			for (int y=top; y<=bottom; ++y)
+			{
+				for (int i = y * width + left, end = y * width + right; i <= end; ++i)
+				{
+					pixels.put(i, rgb);
+				}
+			}
+		}
 	}
 
 	
 	
+	/**
+	 * Draw the visible triangles output by the geometry stage which overlap 
+	 * the current clipping rectangle, in the order in which their meshes 
+	 * were reached in the scenegraph.
+	 */
+	private void rasteriseWorkItems(RenderProbe aProbe)
+	{
+		final Rasteriser rasteriser = iContext.iRasteriser;
+		final float clipLeft = iRasterSettings.iClipLeft - 1;
+		final float clipTop = iRasterSettings.iClipTop - 1;
+		final float clipRight = iRasterSettings.iClipRight + 1;
+		final float clipBottom = iRasterSettings.iClipBottom + 1;
+		
+		for (int i=0; i<iContext.iNumWorkItems; ++i)
+		{
+			MeshWorkItem item = iContext.iWorkItems.get(i);
+			
+			// entirely outside the clipping rectangle?
+			if (item.iMinX > clipRight || item.iMaxX < clipLeft 
+					|| item.iMinY > clipBottom || item.iMaxY < clipTop)
+				continue;
+			
+			int numDrawn = 0;
+			long pixelsBefore = 0;
+			if (null != aProbe)
+			{
+				pixelsBefore = iContext.iFrameStats.pixelsWritten;
+				aProbe.meshRasterBegin(item.iMesh);
+			}
+			
+			for (int t=0; t<item.iNumTriangles; ++t)
+			{
+				final int p = t * 3;
+				final Vec4 p1 = item.iScreenPoints[p];
+				final Vec4 p2 = item.iScreenPoints[p+1];
+				final Vec4 p3 = item.iScreenPoints[p+2];
+				
+				// skip triangles entirely outside the clipping rectangle
+				if ((p1.val[_X_] < clipLeft && p2.val[_X_] < clipLeft && p3.val[_X_] < clipLeft)
+						|| (p1.val[_X_] > clipRight && p2.val[_X_] > clipRight && p3.val[_X_] > clipRight)
+						|| (p1.val[_Y_] < clipTop && p2.val[_Y_] < clipTop && p3.val[_Y_] < clipTop)
+						|| (p1.val[_Y_] > clipBottom && p2.val[_Y_] > clipBottom && p3.val[_Y_] > clipBottom))
+					continue;
+				
+				++numDrawn;
+				Triangle3D tri = item.iTriangles[t];
+				rasteriser.drawTriangle(iRasterSettings, 
+						item.iColors[t],
+						p1, tri.vertices[0].normal, tri.vertices[0].color, 
+						p2, tri.vertices[1].normal, tri.vertices[1].color, 
+						p3, tri.vertices[2].normal, tri.vertices[2].color);
+			}
+			
+			iContext.iFrameStats.trianglesRasterised += numDrawn;
+			if (null != aProbe)
+			{
+				aProbe.meshRasterEnd(item.iMesh, numDrawn, 
+						iContext.iFrameStats.pixelsWritten - pixelsBefore);
+			}
+		}
+	}
+	
+	
+	
 	/**
 	 * Traverse down the scenegraph starting at the given node and processing 
 	 * all its kids.
@@ -148,14 +609,14 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 			{
 				// push current matrix if there is more than one kid
 				if (1 < NUM_KIDS)
-					MatrixStack.getInstance().push(iTransformationMatrix);
+					iContext.iMatrixStack.push(iTransformationMatrix);
 				
 				Node child = kids.next();
 				visitScene(child);
 				
 				// pop current matrix if there is more than one kid
 				if (1 < NUM_KIDS)
-					MatrixStack.getInstance().pop(iTransformationMatrix);
+					iContext.iMatrixStack.pop(iTransformationMatrix);
 				
 			} // end foreach kid
 		} // end if node is not null
@@ -275,7 +736,8 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	@Override
 	public void process(Node aNode)
 	{
-		LOG.trace("Processing node: " + aNode);
+		if (Logger.TRACE_COMPILED && LOG.isTraceEnabled())
+			LOG.trace("Processing node: " + aNode);
 	}
 	
 	
@@ -283,100 +745,11 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	@Override
 	public void process(Mesh aMesh)
 	{
-		LOG.trace("Processing mesh: " + aMesh);
+		if (Logger.TRACE_COMPILED && LOG.isTraceEnabled())
+			LOG.trace("Processing mesh: " + aMesh);
 		
-		for (Iterator<Triangle3D> tris = aMesh.polygonIterator(); tris.hasNext(); )
-		{
-			// flag which indicates whether this triangle should be culled
-			boolean triangleCulled = false;
-
-			// get next polygon
-			Triangle3D tri = tris.next();
-			
-
-			for (int i=0; i<3 && !triangleCulled; ++i)
-			{
-				// local-to-world-to-camera transformations
-				Mat4.transformVector(iTransformationMatrix, tri.vertices[i].point, iTransformedVectors1[i]);		
-				
-				// frustum-culling
-				if (	iTransformedVectors1[i].val[_Z_] > iCameraFrustum.near 
-					||	iTransformedVectors1[i].val[_Z_] < iCameraFrustum.far 
-						)
-				{
-					triangleCulled = true;
-					break;
-				}
-				
-				// divide by w (but ensure we keep value of z for depth sorting later on)
-				iTransformedVectors1[i].val[_X_] /= iTransformedVectors1[i].val[_W_];
-				iTransformedVectors1[i].val[_Y_] /= iTransformedVectors1[i].val[_W_];
-				iTransformedVectors1[i].val[_W_] = 1;
-				
-				// projection-to-screen transformations
-				Mat4.transformVector(iViewportMat, iTransformedVectors1[i], iTransformedVectors2[i]);
-				
-			} // end foreach vertex
-			
-			// if triangle has been frustum-culled then skip to next triangle
-            if (triangleCulled)
-                continue;
-
-            // recalculate the polygon normal
-            Vec4.calculateSurfaceNormal( 
-                    iTransformedVectors1[0], 
-                    iTransformedVectors1[1], 
-                    iTransformedVectors1[2],
-                    iTempVec1
-                    );
-
-            // get dot product with camera direction vector
-            float dotProduct = iTempVec1.getDotProduct(iTransformedCameraDirection);
-
-            // if backface culling is enabled
-            // (we could do this earlier if using orthographic projection but 
-            //   for code simplicity sake we're doing it here so that it 
-            //   doesn't matter what type of projection is active).
-            if (iBackfaceCullingEnabled)
-            {
-                // polygon is visible iff view direction vector and polygon 
-                // normal vector are heading in opposing directions 
-                if (0 < dotProduct)
-                {
-                    continue;
-                }
-            } // end if backface culling enabled
-
-            // get absolute dot product
-            if (0 > dotProduct)
-            	dotProduct = -dotProduct;
-            
-            // lighting?
-            if (null != tri.color)
-            {
-            	// work out how bright tri should be
-                dotProduct = iTempVec1.getDotProduct(iLightVec);
-                if (0 > dotProduct)
-                	dotProduct = -dotProduct;
-                
-                iTempCol1 = new Color(
-                		(int) (tri.color.getRed() * dotProduct),
-                		(int) (tri.color.getGreen() * dotProduct),
-                		(int) (tri.color.getBlue() * dotProduct)
-                		);
-            }
-            else
-            {
-            	iTempCol1 = tri.color;
-            }
-            
-			Rasteriser.getInstance().drawTriangle(iRasterSettings, 
-					iTempCol1,
-					iTransformedVectors2[0], tri.vertices[0].normal, tri.vertices[0].color, 
-					iTransformedVectors2[1], tri.vertices[1].normal, tri.vertices[1].color, 
-					iTransformedVectors2[2], tri.vertices[2].normal, tri.vertices[2].color);
-			
-		} // end foreach triangle
+		// queue it up for the geometry stage
+		iContext.nextWorkItem().set(aMesh, iTransformationMatrix, iLightVec);
 	}
 
 	
@@ -385,7 +758,8 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	@Override
 	public void processTranslation(float ax, float ay, float az)
 	{
-		LOG.trace("processTranslation: x=" + ax + ", y=" + ay + ", z=" + az);
+		if (Logger.TRACE_COMPILED && LOG.isTraceEnabled())
+			LOG.trace("processTranslation: x=" + ax + ", y=" + ay + ", z=" + az);
 		
 		// construct a translation matrix
 		iTempMat1.setIdentity();
@@ -402,7 +776,8 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	@Override
 	public void processRotation(float ax, float ay, float az)
 	{
-		LOG.trace("processRotation: ax=" + ax + ", ay=" + ay + ", az=" + az);
+		if (Logger.TRACE_COMPILED && LOG.isTraceEnabled())
+			LOG.trace("processRotation: ax=" + ax + ", ay=" + ay + ", az=" + az);
 		
 		// X rotation
 		iTempMat1.setIdentity();
@@ -444,6 +819,8 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	public void setBackgroundColor(Color aColor)
 	{
 		iBgColor = aColor;
+		iFullRedrawRequested.set(true);
+		iSettingsVersion.incrementAndGet();
 	}
 
 
@@ -452,6 +829,8 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	public void enableBackfaceCulling(boolean val)
 	{
 		iBackfaceCullingEnabled = val;
+		iFullRedrawRequested.set(true);
+		iSettingsVersion.incrementAndGet();
 		LOG.info("Backface culling enabled: " + val);
 	}
 
@@ -466,7 +845,9 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	@Override
 	public void enableWireframeMode(boolean val)
 	{
-		iRasterSettings.iWireframeModeEnabled = val;
+		iWireframeModeEnabled = val;
+		iFullRedrawRequested.set(true);
+		iSettingsVersion.incrementAndGet();
 		LOG.info("Wireframe mode enabled: " + val);
 	}
 
@@ -474,7 +855,7 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	@Override
 	public boolean isWireframeModeEnabled()
 	{
-		return iRasterSettings.iWireframeModeEnabled;
+		return iWireframeModeEnabled;
 	}
 
 
@@ -482,7 +863,9 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	@Override
 	public void enableZBuffer(boolean val)
 	{
-		iRasterSettings.iZBufferEnabled = val;
+		iZBufferEnabled = val;
+		iFullRedrawRequested.set(true);
+		iSettingsVersion.incrementAndGet();
 		LOG.info("Z-buffer enabled: " + val);
 	}
 
@@ -490,7 +873,222 @@ final class SoftwareRenderer extends Renderer implements VectorComponents
 	@Override
 	public boolean isZBufferEnabled()
 	{
-		return iRasterSettings.iZBufferEnabled;
+		return iZBufferEnabled;
+	}
+
+
+
+	@Override
+	public void setGeometryThreadCount(int aCount)
+	{
+		iGeometryStage.setThreadCount(aCount);
+		LOG.info("Geometry threads: " + iGeometryStage.getThreadCount());
+	}
+
+
+	@Override
+	public int getGeometryThreadCount()
+	{
+		return iGeometryStage.getThreadCount();
+	}
+
+
+
+	@Override
+	public void enableIncrementalRendering(boolean aVal)
+	{
+		iIncrementalRenderingEnabled = aVal;
+		iFullRedrawRequested.set(true);
+		LOG.info("Incremental rendering enabled: " + aVal);
+	}
+
+
+	@Override
+	public boolean isIncrementalRenderingEnabled()
+	{
+		return iIncrementalRenderingEnabled;
+	}
+
+
+	@Override
+	public void setDebugView(DebugView aView)
+	{
+		iDebugView = (null == aView) ? DebugView.NONE : aView;
+		iFullRedrawRequested.set(true);
+		iSettingsVersion.incrementAndGet();
+		LOG.info("Debug view: " + iDebugView);
+	}
+
+
+	@Override
+	public DebugView getDebugView()
+	{
+		return iDebugView;
+	}
+
+
+	@Override
+	public void invalidate()
+	{
+		iFullRedrawRequested.set(true);
+		iSettingsVersion.incrementAndGet();
+	}
+
+
+	@Override
+	public FrameStats getFrameStats()
+	{
+		return iContext.iFrameStats;
+	}
+
+
+	@Override
+	public void copyLastFrameStats(FrameStats aStats)
+	{
+		synchronized (iLastFrameStats)
+		{
+			aStats.set(iLastFrameStats);
+		}
+	}
+
+
+	@Override
+	public boolean prepareRegions(Node aRoot)
+	{
+		iLastRenderError = null;
+		try
+		{
+			final boolean backfaceCullingEnabled = iBackfaceCullingEnabled;
+			iRasterSettings.iWireframeModeEnabled = iWireframeModeEnabled;
+			iRasterSettings.iZBufferEnabled = iZBufferEnabled;
+			
+			releaseRegions();
+			iContext.resetForNextFrame();
+			
+			iTransformationMatrix.set(iProjectionMat).multEq(iCameraMat);
+			processScene(aRoot, backfaceCullingEnabled, null);
+			
+			iRegionsOverdrawCounter = resetOverdrawCounter(iDebugView, 
+					iRasterSettings.iViewportDimensions.width, 
+					iRasterSettings.iViewportDimensions.height);
+			iRegionsPrepared = true;
+		}
+		catch (Exception e)
+		{
+			renderFailed(e);
+		}
+		
+		// the work items no longer describe what the last frame drew
+		iFullRedrawRequested.set(true);
+		return iRegionsPrepared;
+	}
+	
+	
+	
+	@Override
+	public boolean renderRegion(int[] aPixels, int aLeft, int aTop, int aWidth, int aHeight)
+	{
+		if (!iRegionsPrepared)
+			return false;
+		
+		iLastRenderError = null;
+		try
+		{
+			iRasterSettings.iGraphics = null;
+			iRasterSettings.iPixelBuffer = null;
+			iRasterSettings.iPixels = aPixels;
+			
+			iRasterSettings.iClipLeft = Math.max(iRasterSettings.iClipLeft, aLeft);
+			iRasterSettings.iClipTop = Math.max(iRasterSettings.iClipTop, aTop);
+			iRasterSettings.iClipRight = Math.min(iRasterSettings.iClipRight, aLeft + aWidth - 1);
+			iRasterSettings.iClipBottom = Math.min(iRasterSettings.iClipBottom, aTop + aHeight - 1);
+			if (iRasterSettings.iClipLeft <= iRasterSettings.iClipRight
+					&& iRasterSettings.iClipTop <= iRasterSettings.iClipBottom)
+			{
+				iRasterSettings.iOverdrawCounter = iRegionsOverdrawCounter;
+				clearClipRect();
+				rasteriseWorkItems(null);
+				if (null != iRegionsOverdrawCounter)
+				{
+					iContext.iFrameStats.pixelsCovered += iRegionsOverdrawCounter.draw(iRasterSettings);
+				}
+			}
+			return true;
+		}
+		catch (Exception e)
+		{
+			renderFailed(e);
+			releaseRegions();
+			return false;
+		}
+		finally
+		{
+			iRasterSettings.resetClip();
+			iRasterSettings.iOverdrawCounter = null;
+			iRasterSettings.iPixels = null;
+		}
+	}
+
+
+	@Override
+	public Exception getLastRenderError()
+	{
+		return iLastRenderError;
+	}
+
+
+	@Override
+	public void framePresented(long aNanos)
+	{
+		iContext.iFrameStats.presentNanos = aNanos;
+		iFrameTimes.record(FrameTimeMonitor.Stage.PRESENT, aNanos);
+		synchronized (iLastFrameStats)
+		{
+			iLastFrameStats.presentNanos = aNanos;
+		}
+	}
+
+
+	@Override
+	public FrameTimeMonitor getFrameTimes()
+	{
+		return iFrameTimes;
+	}
+
+
+	@Override
+	public int getSettingsVersion()
+	{
+		return iSettingsVersion.get();
+	}
+
+
+	@Override
+	public void setScissor(int aLeft, int aTop, int aWidth, int aHeight)
+	{
+		iScissorEnabled = true;
+		iScissorLeft = aLeft;
+		iScissorTop = aTop;
+		iScissorRight = aLeft + aWidth - 1;
+		iScissorBottom = aTop + aHeight - 1;
+	}
+
+
+	@Override
+	public void clearScissor()
+	{
+		iScissorEnabled = false;
+	}
+
+
+
+	@Override
+	public void dispose()
+	{
+		iGeometryStage.shutdown();
+		
+		RendererMBeanImpl.unregister(iMBeanName);
+		iMBeanName = null;
 	}
 
 
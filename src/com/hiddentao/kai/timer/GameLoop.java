@@ -0,0 +1,202 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.timer;
+
+import com.hiddentao.kai.logging.Logger;
+import com.hiddentao.kai.nodes.Node;
+import com.hiddentao.kai.renderer.RenderingSurface;
+
+
+/**
+ * A fixed time step game loop.
+ * 
+ * The loop runs at display rate on the {@link TimerControl} thread. On each 
+ * frame it advances its {@link Simulation} by as many fixed steps as are 
+ * needed to catch up with real time, interpolates the renderable state 
+ * between the last two steps and then asks the rendering surface to 
+ * repaint. This decouples the simulation rate from the rendering rate 
+ * whilst keeping motion smooth.
+ * 
+ * If the simulation falls too far behind (more than the maximum no. of 
+ * steps per frame, or more than a frame's worth of time spent stepping) 
+ * then the backlog is dropped, so that the simulation slows down rather 
+ * than spiralling.
+ */
+public final class GameLoop implements TimerEvent
+{
+	private static Logger LOG = Logger.getLogger(GameLoop.class.getName());
+	
+	/**
+	 * The default maximum no. of simulation steps to run per frame.
+	 */
+	public static final int DEFAULT_MAX_STEPS_PER_FRAME = 5;
+	
+	private Simulation iSimulation = null;
+	private RenderingSurface iSurface = null;
+	private Node iScene = null;
+	
+	private long iStepNanos = 0;
+	private float iStepSeconds = 0;
+	private int iFrameMillis = 0;
+	private long iFrameNanos = 0;
+	private int iMaxStepsPerFrame = DEFAULT_MAX_STEPS_PER_FRAME;
+	
+	private long iLastTime = 0;
+	private long iAccumulator = 0;
+	private boolean iRunning = false;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param aSimulation the simulation to advance.
+	 * @param aSurface the surface to repaint after each frame. May be null.
+	 * @param aStepMillis the length of each simulation step in 
+	 * milliseconds. Must be > 0.
+	 * @param aFrameMillis the interval between displayed frames in 
+	 * milliseconds. Must be > 0.
+	 */
+	public GameLoop(Simulation aSimulation, RenderingSurface aSurface, 
+			int aStepMillis, int aFrameMillis)
+	{
+		this(aSimulation, aSurface, null, aStepMillis, aFrameMillis);
+	}
+	
+	
+	
+	/**
+	 * Constructor.
+	 * 
+	 * @param aSimulation the simulation to advance.
+	 * @param aSurface the surface to repaint after each frame. May be null.
+	 * @param aScene the part of the scenegraph which the simulation updates. 
+	 * If set then the surface is only repainted while it's showing this 
+	 * node. May be null.
+	 * @param aStepMillis the length of each simulation step in 
+	 * milliseconds. Must be > 0.
+	 * @param aFrameMillis the interval between displayed frames in 
+	 * milliseconds. Must be > 0.
+	 */
+	public GameLoop(Simulation aSimulation, RenderingSurface aSurface, Node aScene, 
+			int aStepMillis, int aFrameMillis)
+	{
+		if (0 >= aStepMillis || 0 >= aFrameMillis)
+		{
+			throw new IllegalArgumentException("Step and frame intervals must be > 0");
+		}
+		
+		iSimulation = aSimulation;
+		iSurface = aSurface;
+		iScene = aScene;
+		iStepNanos = aStepMillis * 1000000L;
+		iStepSeconds = aStepMillis / 1000.0f;
+		iFrameMillis = aFrameMillis;
+		iFrameNanos = aFrameMillis * 1000000L;
+	}
+	
+	
+	
+	/**
+	 * Set the maximum no. of simulation steps to run per displayed frame.
+	 * @param aMaxSteps a value >= 1.
+	 */
+	public void setMaxStepsPerFrame(int aMaxSteps)
+	{
+		iMaxStepsPerFrame = (1 > aMaxSteps ? 1 : aMaxSteps);
+	}
+	
+	
+	
+	/**
+	 * Start the loop.
+	 */
+	public synchronized void start()
+	{
+		if (!iRunning)
+		{
+			iRunning = true;
+			iLastTime = 0;
+			iAccumulator = 0;
+			TimerControl.getInstance().add(this, iFrameMillis);
+		}
+	}
+	
+	
+	
+	/**
+	 * Stop the loop.
+	 */
+	public synchronized void stop()
+	{
+		if (iRunning)
+		{
+			iRunning = false;
+			TimerControl.getInstance().remove(this);
+		}
+	}
+	
+	
+	
+	public void doTimerEvent()
+	{
+		final long frameStart = System.nanoTime();
+		
+		// first frame?
+		if (0 == iLastTime)
+		{
+			iLastTime = frameStart;
+		}
+		
+		iAccumulator += frameStart - iLastTime;
+		iLastTime = frameStart;
+		
+		// catch up with real time
+		int steps = 0;
+		while (iAccumulator >= iStepNanos)
+		{
+			iSimulation.step(iStepSeconds);
+			iAccumulator -= iStepNanos;
+			
+			// over budget?
+			if (++steps >= iMaxStepsPerFrame || System.nanoTime() - frameStart > iFrameNanos)
+			{
+				if (iAccumulator >= iStepNanos)
+				{
+					LOG.debug("Simulation running behind, dropping " + (iAccumulator / iStepNanos) + " steps");
+					iAccumulator %= iStepNanos;
+				}
+				break;
+			}
+		}
+		
+		// update renderable state
+		iSimulation.interpolate((float)iAccumulator / (float)iStepNanos);
+		
+		if (null != iSurface)
+		{
+			if (null != iScene)
+				iSurface.refresh(iScene);
+			else
+				iSurface.refresh();
+		}
+	}
+	
+	
+	public String getTimerEventDescription()
+	{
+		return "Game loop";
+	}
+}
@@ -0,0 +1,44 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+package com.hiddentao.kai.timer;
+
+
+/**
+ * Something which is advanced in fixed time steps by a {@link GameLoop}.
+ * 
+ * The simulation should keep its state for the previous and the current 
+ * step so that renderable state can be interpolated between the two.
+ */
+public interface Simulation
+{
+	/**
+	 * Advance the simulation by one fixed time step.
+	 * 
+	 * @param aStepSeconds the length of the time step, in seconds.
+	 */
+	public void step(float aStepSeconds);
+	
+	/**
+	 * Update renderable state to lie between the previous step and the 
+	 * current step.
+	 * 
+	 * This gets called once per displayed frame, after any calls to 
+	 * {@link #step(float)}.
+	 * 
+	 * @param aAlpha how far between the previous step (0) and the current 
+	 * step (1) the displayed frame lies. 
+	 */
+	public void interpolate(float aAlpha);
+}
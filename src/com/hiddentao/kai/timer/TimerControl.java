@@ -14,7 +14,12 @@
 
 package com.hiddentao.kai.timer;
 
-import java.util.Hashtable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
 
 import com.hiddentao.kai.logging.Logger;
 import com.hiddentao.kai.utils.HasStaticDataImpl;
@@ -22,6 +27,11 @@ import com.hiddentao.kai.utils.HasStaticDataImpl;
 
 /**
  * The timer control.
+ * 
+ * Events are run on a single scheduler thread which sleeps until the next 
+ * event is due, so an idle timer costs nothing. Events may be added and 
+ * removed from any thread, including from within a running event, without 
+ * blocking the scheduler.
  */
 public final class TimerControl extends HasStaticDataImpl
 {
@@ -29,11 +39,9 @@ public final class TimerControl extends HasStaticDataImpl
 	
 	private static TimerControl iInstance = null;
 	
-	private volatile static boolean iTimerThreadActive = false;
-	
-	private volatile Hashtable<TimerEvent, ScheduledEvent> iEvents = new Hashtable<TimerEvent, ScheduledEvent>();
+	private ConcurrentHashMap<TimerEvent, ScheduledFuture<?>> iEvents = new ConcurrentHashMap<TimerEvent, ScheduledFuture<?>>();
 	
-	private Thread iTimerThread = null;
+	private ScheduledExecutorService iScheduler = null;
 	
 	
 	private TimerControl()
@@ -51,7 +59,15 @@ public final class TimerControl extends HasStaticDataImpl
 	
 	public void resetStaticData()
 	{
-		iTimerThreadActive = false;
+		synchronized(this)
+		{
+			if (null != iScheduler)
+			{
+				iScheduler.shutdownNow();
+				iScheduler = null;
+			}
+		}
+		iEvents.clear();
 		iInstance = null;
 	}	
 	
@@ -64,11 +80,12 @@ public final class TimerControl extends HasStaticDataImpl
 	 */
 	public void remove(TimerEvent aEvent)
 	{
-		synchronized(iEvents)
+		if (null != aEvent)
 		{
-			if (null != aEvent && iEvents.containsKey(aEvent))
+			ScheduledFuture<?> scheduled = iEvents.remove(aEvent);
+			if (null != scheduled)
 			{
-				iEvents.remove(aEvent);
+				scheduled.cancel(false);
 				LOG.debug("Removed timer event: " + aEvent.getTimerEventDescription());				
 			}
 		}
@@ -89,59 +106,70 @@ public final class TimerControl extends HasStaticDataImpl
 	{
 		if (null != aEvent && 0 < aMillisecondInterval)
 		{
-			synchronized(iEvents)
+			ScheduledFuture<?> scheduled = getScheduler().scheduleWithFixedDelay(
+					new ScheduledEvent(aEvent), 
+					aMillisecondInterval, aMillisecondInterval, TimeUnit.MILLISECONDS
+					);
+			
+			ScheduledFuture<?> previous = iEvents.put(aEvent, scheduled);
+			if (null != previous)
 			{
-				iEvents.put(aEvent, new ScheduledEvent(aEvent, aMillisecondInterval));
-				LOG.debug("Added timer event: " + aEvent.getTimerEventDescription());
-				if (null == iTimerThread)
+				previous.cancel(false);
+			}
+			
+			LOG.debug("Added timer event: " + aEvent.getTimerEventDescription());
+		}
+	}
+	
+	
+	
+	/**
+	 * Get the scheduler, starting it if necessary.
+	 * @return a non-null scheduler.
+	 */
+	private synchronized ScheduledExecutorService getScheduler()
+	{
+		if (null == iScheduler)
+		{
+			iScheduler = Executors.newSingleThreadScheduledExecutor(new ThreadFactory()
+			{
+				public Thread newThread(Runnable aRunnable)
 				{
-					iTimerThreadActive = true;
-					iTimerThread = new Thread(new TimerThread());
-					iTimerThread.setDaemon(true);
-					iTimerThread.start();
+					Thread t = new Thread(aRunnable, "kai-timer");
+					t.setDaemon(true);
+					return t;
 				}
-			}			
+			});
 		}
+		return iScheduler;
 	}
 	
 
 	/**
 	 * Represents a scheduled timer event.
+	 * 
+	 * This stops an exception thrown by one run of the event from 
+	 * cancelling all future runs.
 	 */
-	private class ScheduledEvent
+	private class ScheduledEvent implements Runnable
 	{
-		public TimerEvent iEvent;
-		public int iMillisecondInterval;
-		public long iLastRunTime = 0;
+		private TimerEvent iEvent;
 
-		public ScheduledEvent(TimerEvent aEvent, int aMillisecondInterval)
+		public ScheduledEvent(TimerEvent aEvent)
 		{
 			iEvent = aEvent;
-			iMillisecondInterval = aMillisecondInterval;
 		}
-	}
-	
-	
-	
-	private class TimerThread implements Runnable
-	{
+		
 		public void run()
 		{
-			while (iTimerThreadActive)
+			try
 			{
-				synchronized(iEvents)
-				{
-					for (TimerEvent timerEvent : iEvents.keySet())
-					{
-						ScheduledEvent scheduledEvent = iEvents.get(timerEvent);
-						if (scheduledEvent.iMillisecondInterval < System.currentTimeMillis() - scheduledEvent.iLastRunTime)
-						{
-							timerEvent.doTimerEvent();
-							scheduledEvent.iLastRunTime = System.currentTimeMillis();
-						}
-					} // for each timer event
-				} // mutex on iEvents
-			} // while thread active
+				iEvent.doTimerEvent();
+			}
+			catch (Throwable t)
+			{
+				LOG.error("Error in timer event: " + iEvent.getTimerEventDescription(), t);
+			}
 		}
 	}
 	
@@ -0,0 +1,201 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.utils;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A fixed-size histogram of non-negative values (e.g. durations in 
+ * nanoseconds) with log-linear buckets.
+ * 
+ * Values below {@link #SUB_BUCKETS} get a bucket each. Above that, each 
+ * power-of-two range is split into {@link #SUB_BUCKETS}/2 equal buckets, so 
+ * values are recorded to within about 3% no matter how large they are. 
+ * Values above {@link #MAX_VALUE} are recorded as {@link #MAX_VALUE}.
+ * 
+ * Recording is lock-free and never allocates, so it may be done on one 
+ * thread whilst others read.
+ */
+public final class Histogram
+{
+	/** log2 of {@link #SUB_BUCKETS}. */
+	private static final int SUB_BUCKET_BITS = 6;
+	
+	/** The no. of buckets for values below this, and twice the no. per power of two above it. */
+	public static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	
+	/** The largest value which can be told apart from larger ones (about 18 minutes in nanoseconds). */
+	public static final long MAX_VALUE = (1L << 40) - 1;
+	
+	/** The no. of buckets needed to cover values up to {@link #MAX_VALUE}. */
+	static final int NUM_BUCKETS = bucketIndex(MAX_VALUE) + 1;
+	
+	private final AtomicLongArray iCounts = new AtomicLongArray(NUM_BUCKETS);
+	private final AtomicLong iTotalCount = new AtomicLong(0);
+	private final AtomicLong iMax = new AtomicLong(0);
+	
+	
+	
+	/**
+	 * Record a value.
+	 * @param aValue the value. Negative values are recorded as 0.
+	 */
+	public void record(long aValue)
+	{
+		if (0 > aValue)
+			aValue = 0;
+		else if (MAX_VALUE < aValue)
+			aValue = MAX_VALUE;
+		
+		iCounts.incrementAndGet(bucketIndex(aValue));
+		iTotalCount.incrementAndGet();
+		
+		long max = iMax.get();
+		while (aValue > max && !iMax.compareAndSet(max, aValue))
+		{
+			max = iMax.get();
+		}
+	}
+	
+	
+	
+	/**
+	 * Forget all recorded values.
+	 * 
+	 * Values recorded by other threads while this is in progress may or may 
+	 * not be kept.
+	 */
+	public void reset()
+	{
+		for (int i=0; i<NUM_BUCKETS; ++i)
+		{
+			iCounts.set(i, 0);
+		}
+		iTotalCount.set(0);
+		iMax.set(0);
+	}
+	
+	
+	
+	/**
+	 * Get the no. of values recorded.
+	 * @return a value >= 0.
+	 */
+	public long getCount()
+	{
+		return iTotalCount.get();
+	}
+	
+	
+	/**
+	 * Get the largest value recorded.
+	 * @return the exact largest value; 0 if nothing has been recorded.
+	 */
+	public long getMax()
+	{
+		return iMax.get();
+	}
+	
+	
+	/**
+	 * Get the no. of values recorded in a bucket.
+	 * @param aIndex the bucket index.
+	 * @return a value >= 0.
+	 */
+	long getBucketCount(int aIndex)
+	{
+		return iCounts.get(aIndex);
+	}
+	
+	
+	
+	/**
+	 * Get the value below which the given percentage of recorded values lie.
+	 * 
+	 * @param aPercentile the percentage, between 0 and 100.
+	 * @return the largest value which falls in the same bucket as the value 
+	 * at that percentile, capped at {@link #getMax()}; 0 if nothing has 
+	 * been recorded.
+	 */
+	public long getValueAtPercentile(double aPercentile)
+	{
+		final long count = getCount();
+		if (0 == count)
+			return 0;
+		
+		final long target = countAtPercentile(aPercentile, count);
+		long seen = 0;
+		for (int i=0; i<NUM_BUCKETS; ++i)
+		{
+			seen += iCounts.get(i);
+			if (seen >= target)
+			{
+				return Math.min(highestValueInBucket(i), getMax());
+			}
+		}
+		return getMax();
+	}
+	
+	
+	
+	/**
+	 * Get the no. of values at or below the given percentile.
+	 * @param aPercentile the percentage, between 0 and 100.
+	 * @param aCount the total no. of values.
+	 * @return a value between 1 and aCount.
+	 */
+	static long countAtPercentile(double aPercentile, long aCount)
+	{
+		final double p = Math.max(0.0, Math.min(100.0, aPercentile));
+		return Math.max(1, (long)Math.ceil(p / 100.0 * aCount));
+	}
+	
+	
+	
+	/**
+	 * Get the index of the bucket which holds the given value.
+	 * @param aValue a value between 0 and {@link #MAX_VALUE}.
+	 * @return the bucket index.
+	 */
+	static int bucketIndex(long aValue)
+	{
+		if (SUB_BUCKETS > aValue)
+			return (int)aValue;
+		
+		// keep the top SUB_BUCKET_BITS bits
+		final int shift = (63 - Long.numberOfLeadingZeros(aValue)) - SUB_BUCKET_BITS + 1;
+		return (int)(shift * (SUB_BUCKETS >> 1) + (aValue >> shift));
+	}
+	
+	
+	
+	/**
+	 * Get the largest value which falls in the given bucket.
+	 * @param aIndex the bucket index.
+	 * @return the value.
+	 */
+	static long highestValueInBucket(int aIndex)
+	{
+		if (SUB_BUCKETS > aIndex)
+			return aIndex;
+		
+		final int shift = aIndex / (SUB_BUCKETS >> 1) - 1;
+		final long mantissa = aIndex - shift * (SUB_BUCKETS >> 1);
+		return ((mantissa + 1) << shift) - 1;
+	}
+}
@@ -0,0 +1,184 @@
+/**
+ * Copyright (C) 2010 Ramesh Nair (www.hiddentao.com)
+ * 
+ * This is free software: you can redistribute it and/or modify it under the 
+ * terms of the GNU Lesser General Public License as published by the Free 
+ * Software Foundation, either version 3 of the License, or (at your option) any later version.
+ * 
+ * This is distributed in the hope that it will  be useful, but WITHOUT ANY 
+ * WARRANTY; without even the implied warranty of MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU Lesser General Public License for more details.
+ * 
+ * You should have received a copy of the GNU Lesser General Public License
+ * along with this.  If not, see <http://www.gnu.org/licenses/>.
+ */
+
+
+package com.hiddentao.kai.utils;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+
+/**
+ * A {@link Histogram} of the values recorded within a recent period of time.
+ * 
+ * The period is split into a fixed no. of slots, each with its own 
+ * histogram, which get reused in rotation. Queries cover the slots which 
+ * are still within the period, so values drop out a slot at a time.
+ * 
+ * Values should only be recorded by one thread at a time, but may be 
+ * queried from any thread.
+ */
+public final class RollingHistogram
+{
+	private final Histogram[] iSlots;
+	/** The time period each slot currently holds values for. */
+	private final AtomicLongArray iSlotPeriods;
+	private final long iSlotNanos;
+	
+	
+	
+	/**
+	 * Constructor.
+	 * @param aWindowMillis the length of the period to keep values for.
+	 * @param aNumSlots the no. of pieces to split the period into. More 
+	 * slots mean values drop out more smoothly.
+	 */
+	public RollingHistogram(long aWindowMillis, int aNumSlots)
+	{
+		final int numSlots = Math.max(1, aNumSlots);
+		iSlots = new Histogram[numSlots];
+		iSlotPeriods = new AtomicLongArray(numSlots);
+		for (int i=0; i<numSlots; ++i)
+		{
+			iSlots[i] = new Histogram();
+			iSlotPeriods.set(i, -1);
+		}
+		iSlotNanos = Math.max(1, aWindowMillis * 1000000L / numSlots);
+	}
+	
+	
+	
+	/**
+	 * Record a value.
+	 * @param aValue the value.
+	 */
+	public void record(long aValue)
+	{
+		final long period = System.nanoTime() / iSlotNanos;
+		final int slot = (int)(period % iSlots.length);
+		
+		// slot last used a whole window ago?
+		if (iSlotPeriods.get(slot) != period)
+		{
+			iSlots[slot].reset();
+			iSlotPeriods.set(slot, period);
+		}
+		
+		iSlots[slot].record(aValue);
+	}
+	
+	
+	
+	/**
+	 * Forget all recorded values.
+	 */
+	public void reset()
+	{
+		for (int i=0; i<iSlots.length; ++i)
+		{
+			iSlotPeriods.set(i, -1);
+			iSlots[i].reset();
+		}
+	}
+	
+	
+	
+	/**
+	 * Get whether a slot holds values from within the window.
+	 */
+	private boolean isCurrent(int aSlot, long aPeriod)
+	{
+		return aPeriod - iSlotPeriods.get(aSlot) < iSlots.length;
+	}
+	
+	
+	
+	/**
+	 * Get the no. of values recorded within the window.
+	 * @return a value >= 0.
+	 */
+	public long getCount()
+	{
+		final long period = System.nanoTime() / iSlotNanos;
+		long count = 0;
+		for (int s=0; s<iSlots.length; ++s)
+		{
+			if (isCurrent(s, period))
+				count += iSlots[s].getCount();
+		}
+		return count;
+	}
+	
+	
+	
+	/**
+	 * Get the largest value recorded within the window.
+	 * @return the value; 0 if nothing has been recorded.
+	 */
+	public long getMax()
+	{
+		final long period = System.nanoTime() / iSlotNanos;
+		long max = 0;
+		for (int s=0; s<iSlots.length; ++s)
+		{
+			if (isCurrent(s, period))
+				max = Math.max(max, iSlots[s].getMax());
+		}
+		return max;
+	}
+	
+	
+	
+	/**
+	 * Get the value below which the given percentage of the values recorded 
+	 * within the window lie.
+	 * 
+	 * @param aPercentile the percentage, between 0 and 100.
+	 * @return the value, to within the histogram's precision; 0 if nothing 
+	 * has been recorded.
+	 * @see Histogram#getValueAtPercentile(double)
+	 */
+	public long getValueAtPercentile(double aPercentile)
+	{
+		final long period = System.nanoTime() / iSlotNanos;
+		
+		long count = 0;
+		long max = 0;
+		for (int s=0; s<iSlots.length; ++s)
+		{
+			if (isCurrent(s, period))
+			{
+				count += iSlots[s].getCount();
+				max = Math.max(max, iSlots[s].getMax());
+			}
+		}
+		if (0 == count)
+			return 0;
+		
+		final long target = Histogram.countAtPercentile(aPercentile, count);
+		long seen = 0;
+		for (int i=0; i<Histogram.NUM_BUCKETS; ++i)
+		{
+			for (int s=0; s<iSlots.length; ++s)
+			{
+				if (isCurrent(s, period))
+					seen += iSlots[s].getBucketCount(i);
+			}
+			if (seen >= target)
+			{
+				return Math.min(Histogram.highestValueInBucket(i), max);
+			}
+		}
+		return max;
+	}
+}